@@ -3,11 +3,49 @@ package com.bgguardianlink.app;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.PowerManager;
+import android.util.Log;
 
+import androidx.core.content.ContextCompat;
+
+/**
+ * Fires the heartbeat in {@link BackgroundService#SCHEDULER_ALARM} mode. The exact alarm wakes the
+ * device; a partial wakelock then keeps the CPU up until the service has fetched, evaluated and
+ * alerted, and is released once the next alarm is set and the tick's readings have been through
+ * the evaluate and alert stages.
+ */
 public class AlarmReceiver extends BroadcastReceiver {
 
+    static final String ACTION_HEARTBEAT = "com.bgguardianlink.app.HEARTBEAT";
+    /** Safety net in case the heartbeat never releases the lock. */
+    private static final long WAKELOCK_TIMEOUT_MS = BackgroundService.HEARTBEAT_BUDGET_MS + 10_000;
+
+    private static PowerManager.WakeLock wakeLock;
+
     @Override
     public void onReceive(Context context, Intent intent) {
-        // This receiver is no longer used. The background service now manages its own execution.
+        if (!ACTION_HEARTBEAT.equals(intent.getAction())) return;
+        acquireWakeLock(context);
+        Intent heartbeat = new Intent(context, BackgroundService.class).setAction(ACTION_HEARTBEAT);
+        try {
+            ContextCompat.startForegroundService(context, heartbeat);
+        } catch (RuntimeException e) {
+            Log.e("Monitor", "Cannot start monitor for heartbeat", e);
+            releaseWakeLock();
+        }
+    }
+
+    static synchronized void acquireWakeLock(Context context) {
+        if (wakeLock == null) {
+            PowerManager pm = (PowerManager) context.getApplicationContext().getSystemService(Context.POWER_SERVICE);
+            wakeLock = pm.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "BGGuardian:heartbeat");
+            wakeLock.setReferenceCounted(false);
+        }
+        wakeLock.acquire(WAKELOCK_TIMEOUT_MS);
+    }
+
+    /** Releases the heartbeat wakelock if held; safe to call in either scheduler mode. */
+    static synchronized void releaseWakeLock() {
+        if (wakeLock != null && wakeLock.isHeld()) wakeLock.release();
     }
 }
@@ -0,0 +1,353 @@
+package com.bgguardianlink.app;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioManager;
+import android.media.MediaPlayer;
+import android.media.RingtoneManager;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.speech.tts.TextToSpeech;
+import android.speech.tts.UtteranceProgressListener;
+import android.util.Log;
+
+import com.bgguardianlink.monitor.AlertPayload;
+import com.bgguardianlink.monitor.AlertPhrase;
+import com.bgguardianlink.monitor.MonitorMetrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Speaks alerts from audio rendered ahead of time. Each alert's lead ("Hey Sam, your blood sugar is
+ * low. Current reading is") is rendered with {@link TextToSpeech#synthesizeToFile} once per user
+ * name, engine and locale, and plays on the alarm stream the moment an alert fires. The short tail
+ * with the reading is rendered while the lead plays. Anything not rendered yet is spoken live, and
+ * an alert raised before the engine is ready is held and spoken once it is. If the engine never comes
+ * up, alerts sound the default alarm tone instead.
+ *
+ * <p>All state is confined to the main thread; public methods may be called from any thread.
+ */
+public final class AlertAudio extends UtteranceProgressListener {
+
+    /** Tails rendered for past readings are kept, up to this many files. */
+    static final int MAX_TAILS = 48;
+
+    private static final String RENDER_PREFIX = "render:";
+    private static final String LIVE_ID = "BG_ALERT_ID";
+
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private final Context context;
+    private final File leadDir;
+    private final File tailDir;
+    private final MonitorMetrics metrics;
+    private final AudioAttributes attributes = new AudioAttributes.Builder()
+            .setUsage(AudioAttributes.USAGE_ALARM)
+            .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+            .build();
+
+    private TextToSpeech tts;
+    private String engine;
+    private String locale;
+    private final Set<String> userNames = new HashSet<>();
+    /** Render utterance id to the text being rendered. */
+    private final Map<String, String> rendering = new HashMap<>();
+    private AlertPayload pending;
+    /** The engine failed to initialize; alerts sound the alarm tone. */
+    private boolean unavailable;
+    private MediaPlayer player;
+    /** Tail to play once the current lead finishes; null when none. */
+    private String queuedTail;
+    private float queuedVolume;
+    private boolean leadFinished;
+    private long requestedAt;
+
+    public AlertAudio(Context context, MonitorMetrics metrics) {
+        this.context = context.getApplicationContext();
+        File root = new File(context.getCacheDir(), "alert-audio");
+        this.leadDir = new File(root, "lead");
+        this.tailDir = new File(root, "tail");
+        this.metrics = metrics;
+    }
+
+    /** Call from {@link TextToSpeech.OnInitListener#onInit} once the language is set. */
+    public void onReady(TextToSpeech tts, Locale locale) {
+        main.post(() -> {
+            this.tts = tts;
+            this.engine = tts.getDefaultEngine();
+            this.locale = locale.toLanguageTag();
+            tts.setOnUtteranceProgressListener(this);
+            leadDir.mkdirs();
+            tailDir.mkdirs();
+            deleteTemporaries(leadDir);
+            deleteTemporaries(tailDir);
+            if (pending != null) {
+                AlertPayload payload = pending;
+                pending = null;
+                Log.d("Monitor", "Speaking alert held until TTS was ready.");
+                playNow(payload);
+            }
+            renderLeads();
+        });
+    }
+
+    /** Call from {@link TextToSpeech.OnInitListener#onInit} when the engine failed to initialize. */
+    public void onUnavailable() {
+        main.post(() -> {
+            unavailable = true;
+            if (pending != null) {
+                AlertPayload payload = pending;
+                pending = null;
+                Log.w("Monitor", "TTS unavailable, sounding the held alert as an alarm tone.");
+                playTone(payload.volume);
+            }
+        });
+    }
+
+    /**
+     * Renders the leads for each of {@code names} (one per monitored person), dropping those for
+     * names no longer in use. Cheap when nothing changed.
+     */
+    public void prepare(Collection<String> names) {
+        Set<String> copy = new HashSet<>(names);
+        main.post(() -> {
+            if (copy.equals(userNames)) return;
+            userNames.clear();
+            userNames.addAll(copy);
+            renderLeads();
+        });
+    }
+
+    public void play(AlertPayload payload) {
+        long now = System.nanoTime();
+        main.post(() -> {
+            requestedAt = now;
+            if (tts == null && unavailable) {
+                playTone(payload.volume);
+                return;
+            }
+            if (tts == null) {
+                // Only the newest alert matters; the notification for it is already up.
+                pending = payload;
+                Log.d("Monitor", "TTS not ready, holding alert.");
+                return;
+            }
+            playNow(payload);
+        });
+    }
+
+    /** Cuts off the alert being spoken, if any. */
+    public void stop() {
+        main.post(() -> {
+            stopPlayer();
+            pending = null;
+            if (tts != null) tts.stop();
+        });
+    }
+
+    public void release() {
+        main.post(() -> {
+            stopPlayer();
+            tts = null;
+            pending = null;
+        });
+    }
+
+    private void playNow(AlertPayload payload) {
+        stopPlayer();
+        File lead = payload.lead != null ? rendered(leadDir, payload.lead) : null;
+        if (lead == null || !startPlayer(lead, payload.volume)) {
+            speakLive(payload.message, payload.volume);
+            return;
+        }
+        queuedTail = payload.tail;
+        queuedVolume = payload.volume;
+        leadFinished = false;
+        if (rendered(tailDir, payload.tail) == null) render(tailDir, payload.tail);
+    }
+
+    private boolean startPlayer(File file, float volume) {
+        MediaPlayer mp = new MediaPlayer();
+        try {
+            mp.setAudioAttributes(attributes);
+            mp.setDataSource(file.getPath());
+            mp.setVolume(volume, volume);
+            mp.setOnCompletionListener(this::onPlayerDone);
+            mp.prepare();
+            mp.start();
+        } catch (IOException | RuntimeException e) {
+            Log.e("Monitor", "Cannot play " + file.getName(), e);
+            mp.release();
+            file.delete();
+            return false;
+        }
+        if (requestedAt != 0) {
+            metrics.recordMicros(MonitorMetrics.TTS_START, (System.nanoTime() - requestedAt) / 1000);
+            requestedAt = 0;
+        }
+        player = mp;
+        return true;
+    }
+
+    private void onPlayerDone(MediaPlayer mp) {
+        if (mp != player) return;
+        mp.release();
+        player = null;
+        leadFinished = true;
+        playTailIfReady();
+    }
+
+    /** The default alarm tone, played once on the alarm stream, for when there is no voice. */
+    private void playTone(float volume) {
+        stopPlayer();
+        Uri tone = RingtoneManager.getDefaultUri(RingtoneManager.TYPE_ALARM);
+        MediaPlayer mp = new MediaPlayer();
+        try {
+            mp.setAudioAttributes(new AudioAttributes.Builder()
+                    .setUsage(AudioAttributes.USAGE_ALARM)
+                    .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                    .build());
+            mp.setDataSource(context, tone);
+            mp.setVolume(volume, volume);
+            mp.setOnCompletionListener(this::onPlayerDone);
+            mp.prepare();
+            mp.start();
+        } catch (IOException | RuntimeException e) {
+            Log.e("Monitor", "Cannot play the alarm tone", e);
+            mp.release();
+            return;
+        }
+        player = mp;
+    }
+
+    private void playTailIfReady() {
+        String tail = queuedTail;
+        if (tail == null || !leadFinished) return;
+        File file = rendered(tailDir, tail);
+        if (file == null) {
+            if (rendering.containsValue(tail)) return; // played from onDone
+            queuedTail = null;
+            speakLive(tail, queuedVolume);
+            return;
+        }
+        queuedTail = null;
+        file.setLastModified(System.currentTimeMillis());
+        if (!startPlayer(file, queuedVolume)) speakLive(tail, queuedVolume);
+    }
+
+    private void speakLive(String text, float volume) {
+        Bundle params = new Bundle();
+        params.putInt(TextToSpeech.Engine.KEY_PARAM_STREAM, AudioManager.STREAM_ALARM);
+        params.putFloat(TextToSpeech.Engine.KEY_PARAM_VOLUME, volume);
+        // Jumps ahead of queued renders; any it flushes are queued again from onStop.
+        tts.speak(text, TextToSpeech.QUEUE_FLUSH, params, LIVE_ID);
+    }
+
+    private void stopPlayer() {
+        queuedTail = null;
+        if (player != null) {
+            player.release();
+            player = null;
+        }
+    }
+
+    private void renderLeads() {
+        if (tts == null || userNames.isEmpty()) return;
+        Set<String> wanted = new HashSet<>();
+        for (String userName : userNames) {
+            for (byte type : AlertPhrase.TYPES) {
+                String lead = AlertPhrase.lead(type, userName);
+                wanted.add(fileName(lead));
+                if (rendered(leadDir, lead) == null) render(leadDir, lead);
+            }
+        }
+        File[] files = leadDir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (f.getName().endsWith(".wav") && !wanted.contains(f.getName())) f.delete();
+        }
+    }
+
+    private void render(File dir, String text) {
+        String id = RENDER_PREFIX + dir.getName() + ":" + fileName(text);
+        if (rendering.containsKey(id)) return;
+        rendering.put(id, text);
+        int result = tts.synthesizeToFile(text, new Bundle(), new File(dir, fileName(text) + ".tmp"), id);
+        if (result != TextToSpeech.SUCCESS) rendering.remove(id);
+    }
+
+    /** The rendered file for {@code text}, or null if it has not been rendered for this engine yet. */
+    private File rendered(File dir, String text) {
+        File f = new File(dir, fileName(text));
+        return f.isFile() && f.length() > 0 ? f : null;
+    }
+
+    private String fileName(String text) {
+        return AlertPhrase.cacheKey(text, engine, locale) + ".wav";
+    }
+
+    private void onRendered(String id, boolean ok, boolean flushed) {
+        String text = rendering.remove(id);
+        if (text == null) return;
+        File dir = id.startsWith(RENDER_PREFIX + "lead:") ? leadDir : tailDir;
+        File tmp = new File(dir, fileName(text) + ".tmp");
+        if (ok && tmp.renameTo(new File(dir, fileName(text)))) {
+            if (dir == tailDir) trimTails();
+        } else {
+            tmp.delete();
+            if (!flushed) Log.e("Monitor", "Failed to render alert audio: " + text);
+        }
+        if (text.equals(queuedTail)) playTailIfReady();
+        if (flushed && dir == leadDir) renderLeads();
+    }
+
+    /** Removes renders left half-written by an earlier process. */
+    private static void deleteTemporaries(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(".tmp"));
+        if (files == null) return;
+        for (File f : files) f.delete();
+    }
+
+    private void trimTails() {
+        File[] files = tailDir.listFiles((d, name) -> name.endsWith(".wav"));
+        if (files == null || files.length <= MAX_TAILS) return;
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (int i = 0; i < files.length - MAX_TAILS; i++) files[i].delete();
+    }
+
+    @Override
+    public void onStart(String utteranceId) {
+        if (!LIVE_ID.equals(utteranceId)) return;
+        main.post(() -> {
+            if (requestedAt != 0) {
+                metrics.recordMicros(MonitorMetrics.TTS_START, (System.nanoTime() - requestedAt) / 1000);
+                requestedAt = 0;
+            }
+        });
+    }
+
+    @Override
+    public void onDone(String utteranceId) {
+        if (utteranceId.startsWith(RENDER_PREFIX)) main.post(() -> onRendered(utteranceId, true, false));
+    }
+
+    @Override
+    public void onError(String utteranceId) {
+        Log.e("Monitor", "TTS failed for " + utteranceId);
+        if (utteranceId.startsWith(RENDER_PREFIX)) main.post(() -> onRendered(utteranceId, false, false));
+    }
+
+    @Override
+    public void onStop(String utteranceId, boolean interrupted) {
+        if (utteranceId.startsWith(RENDER_PREFIX)) main.post(() -> onRendered(utteranceId, false, true));
+    }
+}
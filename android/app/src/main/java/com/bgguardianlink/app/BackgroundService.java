@@ -1,29 +1,65 @@
 package com.bgguardianlink.app;
 
+import android.app.AlarmManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.content.pm.ServiceInfo;
-import android.media.AudioManager;
 import android.os.Build;
-import android.os.Bundle;
 import android.os.IBinder;
+import android.os.SystemClock;
+import android.os.Trace;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.bgguardianlink.monitor.AlertPayload;
+import com.bgguardianlink.monitor.AlertSettings;
+import com.bgguardianlink.monitor.Glance;
+import com.bgguardianlink.monitor.LatencyRecorder;
+import com.bgguardianlink.monitor.MonitorBus;
+import com.bgguardianlink.monitor.MonitorMetrics;
+import com.bgguardianlink.monitor.MonitorSource;
+import com.bgguardianlink.monitor.PipelineStage;
+import com.bgguardianlink.monitor.PollPlanner;
+import com.bgguardianlink.monitor.PollScheduler;
+import com.bgguardianlink.monitor.ReadingBatch;
+import com.bgguardianlink.monitor.ReadingFrame;
+import com.bgguardianlink.monitor.ReadingHistory;
+import com.bgguardianlink.monitor.ReadingJournal;
+import com.bgguardianlink.monitor.ReadingStream;
+import com.bgguardianlink.monitor.ReplicaCaller;
+import com.bgguardianlink.monitor.ReadingSync;
+import com.bgguardianlink.monitor.ReadingWindow;
+import com.bgguardianlink.monitor.SingleFlight;
+import com.bgguardianlink.monitor.SourcePipeline;
+import com.bgguardianlink.monitor.StartupTimeline;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONException;
 
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -32,16 +68,133 @@ import okhttp3.Response;
 public class BackgroundService extends Service implements TextToSpeech.OnInitListener {
 
     public static final String CHANNEL_ID = "BackgroundServiceChannel";
-    public static final String ACTION_DATA_UPDATE = "com.bgguardianlink.app.DATA_UPDATE";
-    public static final String EXTRA_DATA = "com.bgguardianlink.app.EXTRA_DATA";
+    /** Notification actions for the alert, carrying {@link #EXTRA_ALERT_TYPE} and {@link #EXTRA_SOURCE_ID}. */
+    static final String ACTION_ACK_ALERT = "com.bgguardianlink.app.ACK_ALERT";
+    static final String ACTION_SNOOZE_ALERT = "com.bgguardianlink.app.SNOOZE_ALERT";
+    static final String EXTRA_ALERT_TYPE = "alertType";
+    static final String EXTRA_SOURCE_ID = "sourceId";
+    static final long SNOOZE_MS = 30 * 60_000L;
+    private static final int ALERT_NOTIFICATION_ID = 2;
+
+    /**
+     * How heartbeats are timed, from the {@link #PREF_SCHEDULER} preference. The executor mode keeps
+     * a thread timer, which Doze can stretch; the alarm mode sets an exact allow-while-idle alarm
+     * for each heartbeat and wakes through {@link AlarmReceiver}.
+     */
+    static final String SCHEDULER_EXECUTOR = "executor";
+    static final String SCHEDULER_ALARM = "alarm";
+    static final String PREFS = "monitor";
+    static final String PREF_SCHEDULER = "scheduler_mode";
+    /** The monitored sources as a JSON array, see {@link MonitorSource.Config}; unset means the built-in one. */
+    static final String PREF_SOURCES = "sources";
+    /** The primary source's last settings response, so a cold launch shows the right unit at once. */
+    static final String PREF_PRIMARY_SETTINGS = "primary_settings";
+    /** Id of the source {@link #PREF_PRIMARY_SETTINGS} came from. */
+    static final String PREF_PRIMARY_SETTINGS_SOURCE = "primary_settings_source";
+    /** Re-reads {@link #PREF_SCHEDULER} and {@link #PREF_SOURCES} and reschedules. */
+    static final String ACTION_RESCHEDULE = "com.bgguardianlink.app.RESCHEDULE";
+
+    private static final String API_BASE = "https://bg-guardian-production.up.railway.app/api";
+    private static final String READINGS_URL = API_BASE + "/readings";
+    /** Polls run on this many threads however many sources there are. */
+    static final int POLL_THREADS = 4;
+    private static final long SETTINGS_MAX_AGE_MS = 15 * 60_000L;
+    /** Hard cap on the network part of one source's poll, so a slow endpoint cannot hold up the next tick. */
+    static final long HEARTBEAT_BUDGET_MS = 20_000;
+    /** Settings are optional for a heartbeat: they get at most this much of the budget. */
+    static final long SETTINGS_BUDGET_MS = 5_000;
+    /** Waiting sources between the pipeline stages before an overflow is counted; see {@link PipelineStage}. */
+    static final int EVALUATE_QUEUE = 32;
+    static final int ALERT_QUEUE = 8;
+    /** How often the stale-data watchdog looks at each source, besides every heartbeat. */
+    static final long WATCHDOG_PERIOD_MS = 60_000;
+    /** Connections are opened this long before a scheduled poll. */
+    static final long WARM_UP_LEAD_MS = 3_000;
+    // Debug builds log one full response body every this many polls.
+    private static final int BODY_LOG_SAMPLE_EVERY = 12;
 
     private TextToSpeech tts;
+    private AlertAudio alertAudio;
+    /** Coordinates: ticks, scheduling, pushed events and source reloads all run here. */
     private ScheduledExecutorService scheduler;
-    private final OkHttpClient client = new OkHttpClient();
+    /**
+     * The pipeline. Fetch: polls and pushed events are merged on this bounded pool. Evaluate: the new
+     * readings are journaled, published and checked for alerts on a stage of its own. Alert: sound
+     * and notification on a third. The stale-data watchdog runs on its own timer, so a hung fetch
+     * stops none of the local safety checks.
+     */
+    private ScheduledExecutorService pollPool;
+    private PipelineStage<Fetched> evaluateStage;
+    private PipelineStage<AlertJob> alertStage;
+    private ScheduledExecutorService watchdogTimer;
+    /** The first source is the primary: it is streamed and shown in the UI. Replaced, never mutated. */
+    private volatile List<MonitorSource> sources = Collections.emptyList();
+    /** Polls still running, whichever tick started them; the heartbeat wakelock is kept while any are. */
+    private final AtomicInteger pollsInFlight = new AtomicInteger();
+    private volatile String schedulerMode = SCHEDULER_EXECUTOR;
+    private ScheduledFuture<?> pendingHeartbeat;
+    private ScheduledFuture<?> pendingWarmUp;
+    /** elapsedRealtime the next heartbeat is due; 0 when none is scheduled. */
+    private volatile long heartbeatDueAt;
+    private static volatile boolean running;
+    private OkHttpClient client;
+    private volatile ReadingStream readingStream;
+    /** The primary source, the one with a stream; static so the activity's glance view can read it. */
+    private static volatile MonitorSource streamedSource;
+    /**
+     * Sequence of published windows. Rehydration and the evaluate stage publish from different threads,
+     * and the bus and the plugin's dispatcher outlive this instance, so it is shared and atomic.
+     */
+    private static final AtomicLong windowSeq = new AtomicLong();
+    /** What the ongoing notification and widgets show; they are only redrawn when this changes. */
+    private volatile Glance shownGlance;
+
+    /**
+     * Polls of the primary source. The service's own schedule and the app's reads through
+     * {@link ReadingSourcePlugin} share them, so the two never fetch the same readings at once.
+     */
+    static final SingleFlight<Boolean> primaryPolls = new SingleFlight<>();
+    /** The running service, for reads that need a poll; null when not running. */
+    private static volatile BackgroundService instance;
+
+    /** The reading window, published in-process to the UI after every change. */
+    static final MonitorBus<ReadingWindow> readingBus = new MonitorBus<>();
+
+    /** Reading timestamp to the alert being raised on the phone. */
+    static final LatencyRecorder readingToAlertLatency = new LatencyRecorder();
+    /** Reading timestamp to the phone first seeing it. */
+    static final LatencyRecorder readingToSeenLatency = new LatencyRecorder();
+    /** Window published by the service to the web UI acknowledging it. */
+    static final LatencyRecorder serviceToWebViewLatency = new LatencyRecorder();
+    /** Stage timings of the pipeline; see {@link #dump}. */
+    static final MonitorMetrics metrics = new MonitorMetrics(new MonitorMetrics.Tracer() {
+        @Override
+        public void begin(String section) {
+            Trace.beginSection(section);
+        }
+
+        @Override
+        public void end() {
+            Trace.endSection();
+        }
+    });
 
     @Override
     public void onCreate() {
         super.onCreate();
+        client = MonitorHttp.get(this);
+        alertAudio = new AlertAudio(this, metrics);
+        schedulerMode = schedulerMode(this);
+        running = true;
+        instance = this;
+        long now = SystemClock.elapsedRealtime();
+        // Started other than through MonitorStartup: by the system restarting it, or by the app directly.
+        MonitorStartup.timeline.requested(MonitorStartup.REASON_DIRECT, now);
+        MonitorStartup.timeline.mark(StartupTimeline.SERVICE_CREATED, now);
+        List<String> missing = MonitorStartup.missing(this);
+        if (!missing.isEmpty()) {
+            Log.w("Monitor", "Monitoring without " + missing + "; the app asks for them when opened.");
+        }
         tts = new TextToSpeech(this, this);
         createNotificationChannel();
         startHeartbeat();
@@ -49,16 +202,16 @@ public class BackgroundService extends Service implements TextToSpeech.OnInitLis
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("BG Guardian is running")
-                .setContentText("Monitoring your glucose levels.")
-                .setSmallIcon(R.mipmap.ic_launcher)
-                .build();
+        if (intent != null) {
+            handleAlertAction(intent);
+            handleSchedulerAction(intent);
+        }
+        Notification notification = GlanceViews.ongoing(this, shownGlance);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
-            startForeground(1, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_HEALTH);
+            startForeground(GlanceViews.ONGOING_NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_HEALTH);
         } else {
-            startForeground(1, notification);
+            startForeground(GlanceViews.ONGOING_NOTIFICATION_ID, notification);
         }
 
         return START_STICKY;
@@ -66,82 +219,660 @@ public class BackgroundService extends Service implements TextToSpeech.OnInitLis
 
     private void startHeartbeat() {
         scheduler = Executors.newSingleThreadScheduledExecutor();
-        // Runs every 5 minutes
-        scheduler.scheduleAtFixedRate(() -> {
-            Log.d("Monitor", "Heartbeat task started.");
+        pollPool = Executors.newScheduledThreadPool(POLL_THREADS);
+        evaluateStage = new PipelineStage<>("monitor-evaluate", EVALUATE_QUEUE, f -> f.source, Fetched::merge, this::evaluate);
+        alertStage = new PipelineStage<>("monitor-alert", ALERT_QUEUE, job -> job.source, AlertJob::merge, this::deliver);
+        evaluateStage.start();
+        alertStage.start();
+        watchdogTimer = Executors.newSingleThreadScheduledExecutor();
+        watchdogTimer.scheduleWithFixedDelay(this::checkStale, WATCHDOG_PERIOD_MS, WATCHDOG_PERIOD_MS,
+                TimeUnit.MILLISECONDS);
+        // Sources are built and rehydrated first; the single-thread scheduler keeps that ahead of the first tick.
+        scheduler.execute(this::reloadSources);
+        scheduler.execute(() -> scheduleHeartbeat(0));
+    }
+
+    static List<MonitorSource.Config> sourceConfigs(Context context) {
+        String json = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE).getString(PREF_SOURCES, null);
+        if (json != null) {
             try {
-                checkServerForUpdates();
-            } catch (Exception e) {
-                Log.e("Monitor", "Heartbeat failed", e);
+                List<MonitorSource.Config> configs = MonitorSource.Config.parseList(json);
+                if (!configs.isEmpty()) return configs;
+            } catch (JSONException e) {
+                Log.e("Monitor", "Ignoring bad source list", e);
             }
-        }, 0, 5, TimeUnit.MINUTES);
+        }
+        return Collections.singletonList(new MonitorSource.Config(MonitorSource.DEFAULT_ID, "Glucose Monitor", API_BASE));
     }
 
-    private void checkServerForUpdates() throws Exception {
-        Request request = new Request.Builder()
-                .url("https://bg-guardian-production.up.railway.app/api/readings")
-                .build();
+    /**
+     * Builds the source list from preferences, keeping the state of sources whose endpoint is
+     * unchanged. New sources are rehydrated from their journal; removed ones are closed.
+     */
+    private void reloadSources() {
+        List<MonitorSource> previous = sources;
+        List<MonitorSource> next = new ArrayList<>();
+        for (MonitorSource.Config config : sourceConfigs(this)) {
+            MonitorSource kept = null;
+            for (MonitorSource s : previous) {
+                if (s.matches(config)) kept = s;
+            }
+            next.add(kept != null ? kept : newSource(config, next.size()));
+        }
+        for (MonitorSource s : previous) {
+            if (!next.contains(s)) closeJournal(s);
+        }
+        sources = Collections.unmodifiableList(next);
+        if (streamedSource != next.get(0)) startStream(next.get(0));
+        Log.d("Monitor", "Monitoring " + next.size() + " source(s).");
+        noteIfAlertCapable(next.get(0));
+        // Renders the leads from the saved settings, so an offline start does not speak the first alert live.
+        alertAudio.prepare(userNames());
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (response.isSuccessful()) {
-                String jsonData = response.body().string();
-                Log.d("Monitor", "Received data: " + jsonData);
-
-                // Broadcast the data to the activity
-                Intent intent = new Intent(ACTION_DATA_UPDATE);
-                intent.putExtra(EXTRA_DATA, jsonData);
-                sendBroadcast(intent);
-
-                AlertPayload payload = parseAlertPayload(jsonData);
-                if (payload != null) {
-                    Log.d("Monitor", "Alert condition met. Triggering notification.");
-                    triggerAlert(payload.message, payload.volume);
-                }
+    private MonitorSource newSource(MonitorSource.Config config, int index) {
+        MonitorSource source = new MonitorSource(config, client);
+        source.sync.setMetrics(metrics);
+        if (BuildConfig.DEBUG) {
+            source.sync.setBodyLogger(body -> Log.d("Monitor", config.id + " received data: " + body), BODY_LOG_SAMPLE_EVERY);
+        }
+        // New sources start a stagger apart rather than all at once.
+        source.dueAt = SystemClock.elapsedRealtime() + index * PollPlanner.STAGGER_MS;
+        if (index == 0) {
+            // Until the first settings fetch; with the journal, alerts work at boot before the network does.
+            source.settings = savedPrimarySettings(this, config.id);
+        }
+        rehydrateFromJournal(source, index == 0);
+        return source;
+    }
+
+    /** Readings for the primary source are pushed over SSE; other sources are polled only. */
+    private void startStream(MonitorSource source) {
+        if (readingStream != null) readingStream.stop();
+        streamedSource = source;
+        readingStream = new ReadingStream(client, source.readingsUrl() + "/stream", source.sync::getCursor, scheduler,
+                new ReadingStream.Listener() {
+                    @Override
+                    public void onReadings(String json) {
+                        pollPool.execute(() -> onPushedReadings(source, json));
+                    }
+
+                    @Override
+                    public void onConnectionChanged(boolean connected) {
+                        Log.d("Monitor", connected ? "Reading stream connected." : "Reading stream down, polling.");
+                    }
+                });
+        readingStream.start();
+    }
+
+    /** Loads the newest journaled readings so the window, alerts and cadence start warm. */
+    private void rehydrateFromJournal(MonitorSource source, boolean primary) {
+        long start = System.nanoTime();
+        try {
+            ReadingJournal journal = new ReadingJournal(journalDir(this, source.id()));
+            int restored = journal.readLatest(ReadingSync.WINDOW_SIZE,
+                    (ts, mgdl, trend) -> SourcePipeline.restored(source, ts, mgdl, trend));
+            source.journal = journal;
+            source.watchdog.onReading(source.sync.getCursor());
+            if (restored > 0 && primary) {
+                publishWindow(source);
             }
+            int indexed = journal.readAll((ts, mgdl, trend) -> source.history.add(ts, mgdl));
+            Log.d("Monitor", "Restored " + restored + " reading(s) for " + source.id() + " from journal in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms, " + indexed + " into history");
+        } catch (IOException e) {
+            Log.e("Monitor", "Journal unavailable for " + source.id() + ", starting from the network", e);
+        }
+    }
+
+    private static void closeJournal(MonitorSource source) {
+        ReadingJournal journal = source.journal;
+        source.journal = null;
+        if (journal != null) {
+            try { journal.close(); } catch (IOException ignored) { }
         }
     }
 
-    private static class AlertPayload {
-        String message;
-        float volume;
+    private boolean isPrimary(MonitorSource source) {
+        return source == streamedSource;
+    }
+
+    /** The built-in source keeps the original journal directory; others get one each. */
+    static File journalDir(Context context, String sourceId) {
+        String name = MonitorSource.DEFAULT_ID.equals(sourceId) ? "journal" : "journal-" + sourceId;
+        return new File(context.getFilesDir(), name);
+    }
+
+    /** The primary source's newest journaled readings as a window, for a UI that comes up before the service. */
+    static ReadingWindow journalWindow(Context context) throws IOException {
+        ReadingSync restored = new ReadingSync(null, READINGS_URL);
+        ReadingJournal.readLatest(journalDir(context, sourceConfigs(context).get(0).id), ReadingSync.WINDOW_SIZE,
+                restored::restore);
+        return restored.window(0, SystemClock.elapsedRealtime());
+    }
 
-        AlertPayload(String message, float volume) {
-            this.message = message;
-            this.volume = volume;
+    /**
+     * The primary source's history: the running service's, or one built from its journal when the
+     * service is not up. Does I/O in the latter case.
+     */
+    static ReadingHistory history(Context context) throws IOException {
+        MonitorSource source = streamedSource;
+        if (source != null) return source.history;
+        ReadingHistory history = new ReadingHistory();
+        ReadingJournal.readAll(journalDir(context, sourceConfigs(context).get(0).id),
+                (ts, mgdl, trend) -> history.add(ts, mgdl));
+        return history;
+    }
+
+    /**
+     * The primary source's published window if the service holds it fresh: its stream is up, or it
+     * was fetched within {@code maxAgeMs}. Null otherwise.
+     */
+    static ReadingWindow freshPrimaryWindow(long maxAgeMs) {
+        BackgroundService service = instance;
+        MonitorSource source = streamedSource;
+        if (service == null || source == null) return null;
+        ReadingStream stream = service.readingStream;
+        long fetchedAt = source.fetchedAt;
+        boolean fresh = (stream != null && stream.isConnected())
+                || (fetchedAt != 0 && SystemClock.elapsedRealtime() - fetchedAt <= maxAgeMs);
+        ReadingWindow window = readingBus.snapshot();
+        return fresh && window != null && window.size() > 0 ? window : null;
+    }
+
+    /**
+     * Polls the primary source now, or joins the poll already running, and hands the resulting window
+     * to {@code callback} on a poll thread. A poll that got no successful response is an error, not
+     * the old window. False if the service is not running.
+     */
+    static boolean refreshPrimary(SingleFlight.Callback<ReadingWindow> callback) {
+        BackgroundService service = instance;
+        MonitorSource source = streamedSource;
+        if (service == null || source == null) return false;
+        primaryPolls.submit(source.id(), () -> service.checkServerForUpdates(source), service.pollPool,
+                (gotNewReading, error) -> {
+                    if (error == null && !source.sync.lastPollOk()) {
+                        int status = source.sync.lastPollStatus();
+                        error = new IOException(status != 0 ? "HTTP " + status : "no response");
+                    }
+                    callback.onResult(error == null ? source.sync.window(0, SystemClock.elapsedRealtime()) : null, error);
+                });
+        return true;
+    }
+
+    /** The primary source's glance from what the running service holds; null if it has no readings yet. */
+    static Glance glance() {
+        ReadingWindow window = readingBus.snapshot();
+        MonitorSource source = streamedSource;
+        if (window == null || window.size() == 0) return null;
+        return Glance.of(window, source != null ? source.settings : null, source != null ? source.shownAlert : null,
+                System.currentTimeMillis());
+    }
+
+    /** The glance from the journal and the saved settings, for a launch before the service has data. Does I/O. */
+    static Glance coldGlance(Context context) throws IOException {
+        return Glance.of(journalWindow(context), savedPrimarySettings(context, null), null, System.currentTimeMillis());
+    }
+
+    /** The primary source's last saved settings; null if none, or if {@code sourceId} is given and they are another source's. */
+    static AlertSettings savedPrimarySettings(Context context, String sourceId) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+        String json = prefs.getString(PREF_PRIMARY_SETTINGS, null);
+        if (json == null || (sourceId != null && !sourceId.equals(prefs.getString(PREF_PRIMARY_SETTINGS_SOURCE, null)))) {
+            return null;
+        }
+        try {
+            return AlertSettings.parse(json);
+        } catch (JSONException e) {
+            Log.e("Monitor", "Ignoring bad saved settings", e);
+            return null;
+        }
+    }
+
+    /** Stamps the start-up timeline once the primary source has both settings and a reading to judge. */
+    private void noteIfAlertCapable(MonitorSource source) {
+        if (isPrimary(source) && source.settings != null && source.watchdog.lastSeenMs() != Long.MIN_VALUE) {
+            noteStartup(StartupTimeline.ALERT_CAPABLE);
+        }
+    }
+
+    private static void noteStartup(int milestone) {
+        StartupTimeline timeline = MonitorStartup.timeline;
+        if (timeline.mark(milestone, SystemClock.elapsedRealtime())) {
+            Log.d("Monitor", StartupTimeline.NAMES[milestone] + " " + timeline.sinceRequest(milestone)
+                    + "ms after the start request; " + timeline);
+        }
+    }
+
+    private void publishWindow(MonitorSource source) {
+        readingBus.publish(source.sync.window(windowSeq.incrementAndGet(), SystemClock.elapsedRealtime()));
+        updateGlance();
+    }
+
+    /**
+     * Redraws the ongoing notification and any widgets from the primary source's state, if what they
+     * show changed: a new reading, a new minute of age, an alert raised or cleared.
+     */
+    private synchronized void updateGlance() {
+        Glance glance = glance();
+        if (glance == null || glance.equals(shownGlance)) return;
+        shownGlance = glance;
+        getSystemService(NotificationManager.class).notify(GlanceViews.ONGOING_NOTIFICATION_ID,
+                GlanceViews.ongoing(this, glance));
+        GlanceViews.updateWidgets(this, glance);
+    }
+
+    static String schedulerMode(Context context) {
+        String mode = context.getSharedPreferences(PREFS, Context.MODE_PRIVATE)
+                .getString(PREF_SCHEDULER, SCHEDULER_EXECUTOR);
+        return SCHEDULER_ALARM.equals(mode) ? SCHEDULER_ALARM : SCHEDULER_EXECUTOR;
+    }
+
+    static boolean isRunning() {
+        return running;
+    }
+
+    private void handleSchedulerAction(Intent intent) {
+        if (AlarmReceiver.ACTION_HEARTBEAT.equals(intent.getAction())) {
+            if (scheduler != null && !scheduler.isShutdown()) {
+                scheduler.execute(this::heartbeat);
+            } else {
+                AlarmReceiver.releaseWakeLock();
+            }
+        } else if (ACTION_RESCHEDULE.equals(intent.getAction()) && scheduler != null) {
+            String mode = schedulerMode(this);
+            scheduler.execute(() -> {
+                reloadSources();
+                if (!mode.equals(schedulerMode)) {
+                    Log.d("Monitor", "Heartbeat scheduler: " + schedulerMode + " -> " + mode);
+                    schedulerMode = mode;
+                }
+                // Replaces the pending tick, which passes over sources still polling.
+                scheduleHeartbeat(0);
+            });
+        }
+    }
+
+    /**
+     * One-shot schedule of the next tick, when the earliest source is due; each source's poll picks
+     * its own next due time from its {@link PollScheduler}. Replaces any tick already scheduled.
+     */
+    private void scheduleHeartbeat(long delayMs) {
+        if (scheduler.isShutdown()) return;
+        cancelScheduledHeartbeat();
+        heartbeatDueAt = SystemClock.elapsedRealtime() + delayMs;
+        if (SCHEDULER_ALARM.equals(schedulerMode) && delayMs > 0) {
+            // No separate warm-up in this mode: it would cost a second wakeup per heartbeat.
+            setHeartbeatAlarm(heartbeatDueAt);
+            return;
+        }
+        if (delayMs > 2 * WARM_UP_LEAD_MS) {
+            String warmUpUrl = sources.isEmpty() ? API_BASE + "/settings" : sources.get(0).settingsUrl();
+            pendingWarmUp = scheduler.schedule(() -> MonitorHttp.warmUp(client, warmUpUrl),
+                    delayMs - WARM_UP_LEAD_MS, TimeUnit.MILLISECONDS);
+        }
+        pendingHeartbeat = scheduler.schedule(this::heartbeat, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void setHeartbeatAlarm(long triggerAtElapsed) {
+        AlarmManager am = getSystemService(AlarmManager.class);
+        PendingIntent pi = heartbeatAlarmIntent();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !am.canScheduleExactAlarms()) {
+            Log.w("Monitor", "Exact alarms not allowed; heartbeat may be deferred by Doze.");
+            am.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtElapsed, pi);
+        } else {
+            am.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAtElapsed, pi);
+        }
+    }
+
+    private PendingIntent heartbeatAlarmIntent() {
+        Intent intent = new Intent(this, AlarmReceiver.class).setAction(AlarmReceiver.ACTION_HEARTBEAT);
+        return PendingIntent.getBroadcast(this, 0, intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private void cancelScheduledHeartbeat() {
+        if (pendingHeartbeat != null) pendingHeartbeat.cancel(false);
+        if (pendingWarmUp != null) pendingWarmUp.cancel(false);
+        pendingHeartbeat = null;
+        pendingWarmUp = null;
+        getSystemService(AlarmManager.class).cancel(heartbeatAlarmIntent());
+    }
+
+    /**
+     * A tick: polls every idle source that is due, or nearly so, on the poll pool. A source whose
+     * last poll is still running is left to finish; the others go ahead. Runs on the scheduler.
+     */
+    private void heartbeat() {
+        // Also on every wakeup, as Doze can hold back the watchdog's own timer.
+        watchdogTimer.execute(this::checkStale);
+        long dueAt = heartbeatDueAt;
+        if (dueAt != 0) {
+            metrics.recordMicros(MonitorMetrics.WAKEUP_DRIFT, Math.max(0, SystemClock.elapsedRealtime() - dueAt) * 1000);
+            heartbeatDueAt = 0;
+        }
+        List<MonitorSource> due = PollPlanner.due(sources, SystemClock.elapsedRealtime());
+        Log.d("Monitor", "Heartbeat: polling " + due.size() + " of " + sources.size() + " source(s), "
+                + pollsInFlight.get() + " still polling.");
+        for (int i = 0; i < due.size(); i++) {
+            MonitorSource source = due.get(i);
+            source.polling.set(true);
+            pollsInFlight.incrementAndGet();
+            pollPool.schedule(() -> pollSource(source), i * PollPlanner.STAGGER_MS, TimeUnit.MILLISECONDS);
         }
+        onTickDone();
     }
 
-    private AlertPayload parseAlertPayload(String jsonData) {
+    private void pollSource(MonitorSource source) {
+        long nextDelay = PollScheduler.DEFAULT_CADENCE_MS;
+        long start = metrics.begin(MonitorMetrics.HEARTBEAT);
         try {
-            JSONArray arr = new JSONArray(jsonData);
-            if (arr.length() > 0) {
-                JSONObject first = arr.getJSONObject(0);
-                if (first.optBoolean("alert", false)) {
-                    String msg = first.optString("alert_message", null);
-                    String message = (msg != null && !msg.isEmpty()) ? msg : "Urgent glucose alert!";
-                    double vol = first.optDouble("alert_volume", 1.0);
-                    float volume = (float) Math.max(0.0, Math.min(1.0, vol));
-                    return new AlertPayload(message, volume);
+            boolean gotNewReading = isPrimary(source)
+                    ? primaryPolls.call(source.id(), () -> checkServerForUpdates(source))
+                    : checkServerForUpdates(source);
+            // While the stream is up the poll is only a safety net.
+            nextDelay = source == streamedSource && readingStream.isConnected()
+                    ? PollScheduler.DEFAULT_CADENCE_MS
+                    : source.cadence.nextDelay(System.currentTimeMillis(), gotNewReading, source.settings);
+        } catch (Exception e) {
+            Log.e("Monitor", "Poll failed for " + source.id(), e);
+            nextDelay = source.cadence.afterFailure();
+        } finally {
+            metrics.end(MonitorMetrics.HEARTBEAT, start);
+            source.dueAt = SystemClock.elapsedRealtime() + nextDelay;
+            source.polling.set(false);
+            pollsInFlight.decrementAndGet();
+            // The source is due again; the next tick may now need to come sooner.
+            if (!scheduler.isShutdown()) scheduler.execute(this::onTickDone);
+        }
+    }
+
+    /** Schedules the next tick for the earliest idle source; runs after each tick and each finished poll. */
+    private void onTickDone() {
+        long nextDelay = PollPlanner.nextDelay(sources, SystemClock.elapsedRealtime());
+        Log.d("Monitor", "Next heartbeat in " + nextDelay / 1000 + "s");
+        scheduleHeartbeat(nextDelay);
+        if (pollsInFlight.get() == 0) releaseWakeLockWhenDrained();
+    }
+
+    /**
+     * Lets the CPU sleep again once what the polls found has been handled: after the stale check the
+     * tick queued, then everything waiting in the evaluate stage, then what that raised in the alert
+     * stage. A poll started meanwhile keeps the wakelock until it finishes.
+     */
+    private void releaseWakeLockWhenDrained() {
+        if (watchdogTimer.isShutdown()) return;
+        watchdogTimer.execute(() -> evaluateStage.afterQueued(() -> alertStage.afterQueued(() -> {
+            if (pollsInFlight.get() == 0) AlarmReceiver.releaseWakeLock();
+        })));
+    }
+
+    /** Returns true if the poll brought at least one new reading. Runs on the fetch stage. */
+    private boolean checkServerForUpdates(MonitorSource source) throws Exception {
+        long deadline = SystemClock.elapsedRealtime() + HEARTBEAT_BUDGET_MS;
+        refreshSettingsIfStale(source, SETTINGS_BUDGET_MS);
+        long remaining = deadline - SystemClock.elapsedRealtime();
+        ReadingBatch batch;
+        synchronized (source.fetchLock) {
+            boolean backfill = source.sync.getCursor() == Long.MIN_VALUE;
+            int added = source.sync.poll(Math.max(1, remaining));
+            if (source.sync.lastPollOk()) {
+                source.fetchedAt = SystemClock.elapsedRealtime();
+                if (isPrimary(source)) noteStartup(StartupTimeline.FIRST_POLL);
+            }
+            batch = onFetched(source, added, backfill);
+        }
+        return batch != null;
+    }
+
+    private void onPushedReadings(MonitorSource source, String json) {
+        try {
+            synchronized (source.fetchLock) {
+                boolean backfill = source.sync.getCursor() == Long.MIN_VALUE;
+                int added = source.sync.ingest(json);
+                source.fetchedAt = SystemClock.elapsedRealtime();
+                if (isPrimary(source)) noteStartup(StartupTimeline.FIRST_POLL);
+                onFetched(source, added, backfill);
+            }
+        } catch (Exception e) {
+            Log.e("Monitor", "Failed to handle pushed readings", e);
+        }
+    }
+
+    /**
+     * The fetch stage's share of new readings: copies them out, updates the poll cadence and the
+     * watchdog, and queues them for evaluation. Call holding the source's fetch lock. Null if none.
+     */
+    private ReadingBatch onFetched(MonitorSource source, int added, boolean backfill) {
+        long now = System.currentTimeMillis();
+        ReadingBatch batch = SourcePipeline.fetched(source, added, backfill, now, alerts);
+        if (batch == null) {
+            return null;
+        }
+        Log.d("Monitor", source.id() + ": " + added + " new reading(s), window " + source.sync.size());
+        noteIfAlertCapable(source);
+        ReadingFrame latest = batch.latest;
+        if (!backfill && latest.timestampMs != Long.MIN_VALUE) {
+            readingToSeenLatency.record(now - latest.timestampMs);
+        }
+        evaluateStage.offer(new Fetched(source, batch));
+        return batch;
+    }
+
+    /** The evaluate stage: journals, publishes and checks a batch for alerts. */
+    private void evaluate(Fetched fetched) {
+        MonitorSource source = fetched.source;
+        ReadingBatch batch = fetched.batch;
+        ReadingJournal journal = source.journal;
+        if (journal != null) {
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    journal.append(batch.timestamps[i], batch.glucose[i], batch.trends[i]);
+                }
+            } catch (IOException e) {
+                Log.e("Monitor", "Failed to journal readings", e);
+            }
+        }
+        for (int i = 0; i < batch.size(); i++) source.history.add(batch.timestamps[i], batch.glucose[i]);
+
+        if (isPrimary(source)) {
+            // Hand the merged window to the UI in-process; no broadcast, no Binder parcel.
+            publishWindow(source);
+        }
+
+        int outcome = SourcePipeline.evaluate(source, batch, System.currentTimeMillis(), alerts, metrics);
+        if (outcome == SourcePipeline.HELD) {
+            Log.d("Monitor", "Alert still active for " + source.id() + ", not repeating yet.");
+        }
+    }
+
+    /** The stale-data watchdog: needs nothing from the network, only each source's last-seen reading. */
+    private void checkStale() {
+        long now = System.currentTimeMillis();
+        for (MonitorSource s : sources) {
+            SourcePipeline.watchdog(s, now, alerts);
+        }
+        // Keeps the reading's age current; redraws only when the minute changes.
+        updateGlance();
+    }
+
+    /** Hands the pipeline's decisions to the alert stage. */
+    private final SourcePipeline.Alerts alerts = new SourcePipeline.Alerts() {
+        @Override
+        public void raise(MonitorSource source, AlertPayload payload, long readingTimestampMs) {
+            if (payload.type == ReadingFrame.ALERT_STALE) {
+                long ageMin = (System.currentTimeMillis() - source.watchdog.lastSeenMs()) / 60_000;
+                Log.w("Monitor", "No reading for " + source.id() + " in " + ageMin + " min. Raising stale-data alert.");
+            } else {
+                if (payload.minutesToLow >= 0) {
+                    Log.d("Monitor", "Predicted low in ~" + payload.minutesToLow + " min.");
+                }
+                Log.d("Monitor", "Alert condition met for " + source.id() + ". Triggering notification.");
+            }
+            alertStage.offer(new AlertJob(source, payload, readingTimestampMs));
+        }
+
+        @Override
+        public void clear(MonitorSource source) {
+            Log.d("Monitor", "Alert cleared for " + source.id() + ".");
+            alertStage.offer(new AlertJob(source, null, Long.MIN_VALUE));
+        }
+    };
+
+    /** The alert stage: sounds and shows an alert, or takes a cleared one down. */
+    private void deliver(AlertJob job) {
+        if (job.payload == null) {
+            if (job.source.shownAlert != null) cancelAlertNotification(job.source);
+            if (isPrimary(job.source)) updateGlance();
+            return;
+        }
+        triggerAlert(job.source, job.payload);
+        if (isPrimary(job.source)) updateGlance();
+        if (job.readingTimestampMs != Long.MIN_VALUE) {
+            long latency = System.currentTimeMillis() - job.readingTimestampMs;
+            readingToAlertLatency.record(latency);
+            metrics.recordMicros(MonitorMetrics.READING_TO_ALARM, latency * 1000);
+        }
+    }
+
+    /** New readings for one source, from the fetch stage to the evaluate stage. */
+    private static final class Fetched {
+        final MonitorSource source;
+        final ReadingBatch batch;
+
+        Fetched(MonitorSource source, ReadingBatch batch) {
+            this.source = source;
+            this.batch = batch;
+        }
+
+        /** Readings that arrived while the source's earlier ones waited are evaluated with them. */
+        static Fetched merge(Fetched older, Fetched newer) {
+            return new Fetched(newer.source, ReadingBatch.merge(older.batch, newer.batch));
+        }
+    }
+
+    /** An alert to raise, or with a null payload one to take down. */
+    private static final class AlertJob {
+        final MonitorSource source;
+        final AlertPayload payload;
+        /** The reading that raised it, for the reading-to-alarm latency; {@link Long#MIN_VALUE} if none. */
+        final long readingTimestampMs;
+
+        AlertJob(MonitorSource source, AlertPayload payload, long readingTimestampMs) {
+            this.source = source;
+            this.payload = payload;
+            this.readingTimestampMs = readingTimestampMs;
+        }
+
+        /**
+         * Merges a source's alert decisions while the stage is behind: the most severe raise not yet
+         * delivered is kept (see {@link AlertPayload#undelivered}); the other is logged, never silently lost.
+         */
+        static AlertJob merge(AlertJob older, AlertJob newer) {
+            AlertJob kept = AlertPayload.undelivered(older.payload, newer.payload) == newer.payload ? newer : older;
+            AlertJob passed = kept == newer ? older : newer;
+            Log.w("Monitor", "Alert stage behind for " + older.source.id() + ": kept " + describe(kept)
+                    + " over " + describe(passed));
+            return kept;
+        }
+
+        private static String describe(AlertJob job) {
+            return job.payload != null ? "alert \"" + job.payload.message + "\"" : "clear";
+        }
+    }
+
+    private void refreshSettingsIfStale(MonitorSource source, long budgetMs) {
+        if (source.settings != null && System.currentTimeMillis() - source.settingsFetchedAt < SETTINGS_MAX_AGE_MS) {
+            return;
+        }
+        Request request = new Request.Builder().url(source.settingsUrl()).build();
+        try (Response response = source.caller.execute(request, budgetMs)) {
+            if (response.isSuccessful()) {
+                String json = response.body().string();
+                source.settings = AlertSettings.parse(json);
+                source.settingsFetchedAt = System.currentTimeMillis();
+                if (isPrimary(source)) {
+                    getSharedPreferences(PREFS, Context.MODE_PRIVATE).edit()
+                            .putString(PREF_PRIMARY_SETTINGS, json)
+                            .putString(PREF_PRIMARY_SETTINGS_SOURCE, source.id())
+                            .apply();
+                    noteIfAlertCapable(source);
                 }
+                // Re-renders the alert leads if a name changed; a no-op otherwise.
+                alertAudio.prepare(userNames());
             }
         } catch (Exception e) {
-            Log.e("Monitor", "Failed to parse alert from JSON", e);
+            Log.e("Monitor", "Failed to refresh alert settings for " + source.id(), e);
         }
-        return null;
     }
 
-    private void triggerAlert(String message, float volume) {
-        if (tts != null) {
-            Bundle params = new Bundle();
-            params.putInt(TextToSpeech.Engine.KEY_PARAM_STREAM, AudioManager.STREAM_ALARM);
-            params.putFloat(TextToSpeech.Engine.KEY_PARAM_VOLUME, volume);
-            tts.speak(message, TextToSpeech.QUEUE_FLUSH, params, "BG_ALERT_ID");
+    private Set<String> userNames() {
+        Set<String> names = new HashSet<>();
+        for (MonitorSource s : sources) {
+            AlertSettings settings = s.settings;
+            if (settings != null) names.add(settings.userName);
         }
+        return names;
+    }
 
-        showNotification(message);
+    private void triggerAlert(MonitorSource source, AlertPayload payload) {
+        // Held by AlertAudio if TTS is still initializing, so an early alert is never dropped.
+        alertAudio.play(payload);
+
+        long notifyStart = metrics.begin(MonitorMetrics.NOTIFY);
+        showNotification(source, payload);
+        metrics.end(MonitorMetrics.NOTIFY, notifyStart);
     }
 
-    private void showNotification(String text) {
+    /** Acknowledges or snoozes an alert from its notification's action buttons. */
+    private void handleAlertAction(Intent intent) {
+        String action = intent.getAction();
+        if (!ACTION_ACK_ALERT.equals(action) && !ACTION_SNOOZE_ALERT.equals(action)) {
+            return;
+        }
+        int type = intent.getIntExtra(EXTRA_ALERT_TYPE, -1);
+        String sourceId = intent.getStringExtra(EXTRA_SOURCE_ID);
+        MonitorSource source = null;
+        for (MonitorSource s : sources) {
+            if (s.id().equals(sourceId)) source = s;
+        }
+        if (source == null) {
+            return;
+        }
+        boolean stale = type == ReadingFrame.ALERT_STALE;
+        if (ACTION_ACK_ALERT.equals(action)) {
+            if (stale) source.watchdog.acknowledge(); else source.tracker.acknowledge(type);
+            Log.d("Monitor", "Alert " + type + " acknowledged for " + sourceId + ".");
+        } else {
+            long now = System.currentTimeMillis();
+            if (stale) source.watchdog.snooze(now, SNOOZE_MS); else source.tracker.snooze(type, now, SNOOZE_MS);
+            Log.d("Monitor", "Alert " + type + " snoozed for " + sourceId + ".");
+        }
+        alertAudio.stop();
+        cancelAlertNotification(source);
+    }
+
+    /** The primary source keeps the original id; others get one derived from their source id. */
+    private static int alertNotificationId(MonitorSource source) {
+        return MonitorSource.DEFAULT_ID.equals(source.id())
+                ? ALERT_NOTIFICATION_ID : 0x10000 + (source.id().hashCode() & 0xFFFF);
+    }
+
+    private void cancelAlertNotification(MonitorSource source) {
+        source.shownAlert = null;
+        getSystemService(NotificationManager.class).cancel(alertNotificationId(source));
+    }
+
+    private PendingIntent alertAction(String action, MonitorSource source, byte type) {
+        Intent intent = new Intent(this, BackgroundService.class)
+                .setAction(action)
+                .putExtra(EXTRA_SOURCE_ID, source.id())
+                .putExtra(EXTRA_ALERT_TYPE, (int) type);
+        return PendingIntent.getService(this, 31 * (action.hashCode() + alertNotificationId(source)) + type, intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private void showNotification(MonitorSource source, AlertPayload payload) {
         NotificationManager nm = getSystemService(NotificationManager.class);
 
         Intent intent = new Intent(this, MainActivity.class);
@@ -153,22 +884,59 @@ public class BackgroundService extends Service implements TextToSpeech.OnInitLis
 
         Notification notification = new NotificationCompat.Builder(this, "MonitorChannel")
                 .setSmallIcon(R.mipmap.ic_launcher)
-                .setContentTitle("Glucose Monitor")
-                .setContentText(text)
+                .setContentTitle(sources.size() > 1 ? source.config.name : "Glucose Monitor")
+                .setContentText(payload.message)
                 .setPriority(NotificationCompat.PRIORITY_MAX)
                 .setCategory(NotificationCompat.CATEGORY_ALARM)
                 .setFullScreenIntent(pi, true)
                 .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
                 .setDefaults(Notification.DEFAULT_ALL)
+                .addAction(0, "Acknowledge", alertAction(ACTION_ACK_ALERT, source, payload.type))
+                .addAction(0, "Snooze 30 min", alertAction(ACTION_SNOOZE_ALERT, source, payload.type))
                 .build();
 
-        nm.notify(2, notification);
+        nm.notify(alertNotificationId(source), notification);
+        source.shownAlert = payload;
     }
 
     @Override
     public void onInit(int status) {
         if (status == TextToSpeech.SUCCESS) {
             tts.setLanguage(Locale.US);
+            alertAudio.onReady(tts, Locale.US);
+        } else {
+            Log.e("Monitor", "TTS init failed: " + status);
+            alertAudio.onUnavailable();
+        }
+    }
+
+    /** {@code adb shell dumpsys activity service com.bgguardianlink.app/.BackgroundService} */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        metrics.dump(writer);
+        writer.println(String.format(Locale.US, "Reading seen after: p50 %dms, p90 %dms (%d)",
+                readingToSeenLatency.median(), readingToSeenLatency.percentile(90), readingToSeenLatency.total()));
+        writer.println("Heartbeat scheduler: " + schedulerMode + ", stream "
+                + (readingStream != null && readingStream.isConnected() ? "connected" : "down"));
+        for (PipelineStage<?> stage : new PipelineStage<?>[] {evaluateStage, alertStage}) {
+            if (stage == null) continue;
+            writer.println(String.format(Locale.US, "Stage %s: queued %d, busy %dms, merged %d, overflowed %d, failed %d",
+                    stage.name(), stage.depth(), stage.busyMs(), stage.merged(), stage.overflowed(), stage.failed()));
+        }
+        long now = SystemClock.elapsedRealtime();
+        long wallNow = System.currentTimeMillis();
+        for (MonitorSource s : sources) {
+            writer.println(String.format(Locale.US, "Source %s: window %d, next poll in %ds, alerts held back %d",
+                    s.id(), s.sync.size(), Math.max(0, s.dueAt - now) / 1000, s.tracker.suppressed()));
+            long lastSeen = s.watchdog.lastSeenMs();
+            writer.println(String.format(Locale.US, "  last reading %s, stale alert %s",
+                    lastSeen == Long.MIN_VALUE ? "none" : (wallNow - lastSeen) / 1000 + "s ago",
+                    s.watchdog.isAlerting() ? "raised" : "clear"));
+            writer.println(String.format(Locale.US, "  hedges %d, retries %d", s.caller.hedges(), s.caller.retries()));
+            for (ReplicaCaller.Endpoint e : s.caller.endpoints()) {
+                writer.println(String.format(Locale.US, "  %s: breaker %s, p95 %dms (%d)", e.base,
+                        e.breaker, e.latency.percentile(95) / 1000, e.latency.count()));
+            }
         }
     }
 
@@ -180,8 +948,22 @@ public class BackgroundService extends Service implements TextToSpeech.OnInitLis
 
     @Override
     public void onDestroy() {
+        if (alertAudio != null) { alertAudio.release(); }
         if (tts != null) { tts.stop(); tts.shutdown(); }
+        if (readingStream != null) { readingStream.stop(); }
         if (scheduler != null) { scheduler.shutdownNow(); }
+        if (pollPool != null) { pollPool.shutdownNow(); }
+        if (watchdogTimer != null) { watchdogTimer.shutdownNow(); }
+        if (evaluateStage != null) { evaluateStage.stop(); }
+        if (alertStage != null) { alertStage.stop(); }
+        getSystemService(AlarmManager.class).cancel(heartbeatAlarmIntent());
+        AlarmReceiver.releaseWakeLock();
+        running = false;
+        instance = null;
+        streamedSource = null;
+        for (MonitorSource s : sources) {
+            closeJournal(s);
+        }
         super.onDestroy();
     }
 
@@ -1,17 +1,91 @@
 package com.bgguardianlink.app;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
 
+import com.bgguardianlink.monitor.Histogram;
+import com.bgguardianlink.monitor.MonitorMetrics;
+import com.bgguardianlink.monitor.MonitorSource;
+import com.bgguardianlink.monitor.ReadingHistory;
+import com.bgguardianlink.monitor.ReadingWindow;
+import com.bgguardianlink.monitor.StartupTimeline;
+import com.bgguardianlink.monitor.WebViewDispatcher;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
 
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.List;
+
 @CapacitorPlugin(name = "BackgroundService")
 public class BackgroundServicePlugin extends Plugin {
 
+    private WebViewDispatcher dispatcher;
+    private Runnable unsubscribe;
+
+    @Override
+    public void load() {
+        dispatcher = new WebViewDispatcher(this::deliver, SystemClock::elapsedRealtime,
+                message -> Log.d("Monitor", message), BackgroundService.serviceToWebViewLatency);
+        unsubscribe = BackgroundService.readingBus.subscribe(dispatcher::offer);
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (unsubscribe != null) unsubscribe.run();
+    }
+
+    /**
+     * Call after adding the "readings" listener. Sends the current window right away: the service's
+     * latest, or the journaled readings if the service has not published yet.
+     */
+    @PluginMethod
+    public void readingsReady(PluginCall call) {
+        dispatcher.uiReady(() -> {
+            ReadingWindow current = BackgroundService.readingBus.snapshot();
+            if (current != null) return current;
+            try {
+                ReadingWindow restored = BackgroundService.journalWindow(getContext());
+                return restored.size() > 0 ? restored : null;
+            } catch (Exception e) {
+                Log.e("Monitor", "Could not read journal", e);
+                return null;
+            }
+        });
+        call.resolve();
+    }
+
+    /** The UI has applied the "readings" event with this {@code seq}; the next one may be sent. */
+    @PluginMethod
+    public void ackReadings(PluginCall call) {
+        Long seq = call.getLong("seq");
+        if (seq != null) dispatcher.ack(seq);
+        call.resolve();
+    }
+
+    private void deliver(ReadingWindow window) {
+        JSArray readings = new JSArray();
+        for (int i = 0; i < window.size(); i++) {
+            try {
+                readings.put(new JSObject(window.jsonAt(i)));
+            } catch (JSONException e) {
+                Log.e("Monitor", "Skipping malformed reading", e);
+            }
+        }
+        JSObject data = new JSObject();
+        data.put("seq", window.seq);
+        data.put("readings", readings);
+        notifyListeners("readings", data);
+    }
+
     @PluginMethod
     public void startService(PluginCall call) {
         Intent serviceIntent = new Intent(getContext(), BackgroundService.class);
@@ -22,4 +96,189 @@ public class BackgroundServicePlugin extends Plugin {
         }
         call.resolve();
     }
+
+    /**
+     * Chooses how heartbeats are timed: {@code "executor"} (thread timer) or {@code "alarm"} (exact
+     * allow-while-idle alarms, which keep firing under Doze). Takes effect at once if the service is running.
+     */
+    @PluginMethod
+    public void setSchedulerMode(PluginCall call) {
+        String mode = call.getString("mode");
+        if (!BackgroundService.SCHEDULER_EXECUTOR.equals(mode) && !BackgroundService.SCHEDULER_ALARM.equals(mode)) {
+            call.reject("mode must be \"executor\" or \"alarm\"");
+            return;
+        }
+        getContext().getSharedPreferences(BackgroundService.PREFS, Context.MODE_PRIVATE)
+                .edit()
+                .putString(BackgroundService.PREF_SCHEDULER, mode)
+                .apply();
+        reschedule();
+        call.resolve();
+    }
+
+    /**
+     * Sets the people to monitor: {@code sources} is an array of {@code {id, name, url}}, where url is
+     * the API root of that person's server. An optional {@code replicas} array lists mirrors of that
+     * root to hedge and fail over to. The first source is the one shown in the app.
+     */
+    @PluginMethod
+    public void setSources(PluginCall call) {
+        JSArray array = call.getArray("sources");
+        if (array == null) {
+            call.reject("sources is required");
+            return;
+        }
+        List<MonitorSource.Config> configs;
+        try {
+            configs = MonitorSource.Config.parseList(array.toString());
+        } catch (JSONException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+        if (configs.isEmpty()) {
+            call.reject("at least one source is required");
+            return;
+        }
+        getContext().getSharedPreferences(BackgroundService.PREFS, Context.MODE_PRIVATE)
+                .edit()
+                .putString(BackgroundService.PREF_SOURCES, MonitorSource.Config.toJson(configs))
+                .apply();
+        reschedule();
+        call.resolve();
+    }
+
+    /** Has a running service pick up changed preferences. */
+    private void reschedule() {
+        if (BackgroundService.isRunning()) {
+            getContext().startService(new Intent(getContext(), BackgroundService.class)
+                    .setAction(BackgroundService.ACTION_RESCHEDULE));
+        }
+    }
+
+    /**
+     * The primary source's readings between {@code from} and {@code to} (epoch ms, inclusive) from
+     * the on-device history, oldest first, as columns: {@code t} (bucket start), {@code mean},
+     * {@code min}, {@code max} and {@code n} (readings in the bucket). {@code resolution} is
+     * {@code "raw"}, {@code "15m"}, {@code "1h"} or {@code "auto"} (the default: the finest that
+     * covers the range in a few hundred points). {@code timeInRange} counts the readings below,
+     * within and above the standard target range, {@link ReadingHistory#TIR_LOW_MGDL} to
+     * {@link ReadingHistory#TIR_HIGH_MGDL} mg/dL, whatever the user's alert thresholds; the range
+     * used is returned with it as {@code lowMgdl} and {@code highMgdl}.
+     */
+    @PluginMethod
+    public void getRange(PluginCall call) {
+        Long from = call.getLong("from");
+        Long to = call.getLong("to", System.currentTimeMillis());
+        if (from == null || to == null || from > to) {
+            call.reject("from is required and must not be after to");
+            return;
+        }
+        String name = call.getString("resolution", "auto");
+        ReadingHistory history;
+        try {
+            history = BackgroundService.history(getContext());
+        } catch (IOException e) {
+            call.reject("History unavailable: " + e.getMessage());
+            return;
+        }
+        int resolution = "auto".equals(name) ? history.autoResolution(from, to) : ReadingHistory.resolution(name);
+        if (resolution < 0) {
+            call.reject("resolution must be \"raw\", \"15m\", \"1h\" or \"auto\"");
+            return;
+        }
+        ReadingHistory.Range range = history.range(from, to, resolution);
+        JSArray t = new JSArray();
+        JSArray mean = new JSArray();
+        JSArray min = new JSArray();
+        JSArray max = new JSArray();
+        JSArray n = new JSArray();
+        try {
+            for (int i = 0; i < range.size; i++) {
+                t.put(range.start[i]);
+                mean.put(Math.round(range.mean[i] * 10) / 10.0);
+                min.put(range.min[i]);
+                max.put(range.max[i]);
+                n.put(range.count[i]);
+            }
+        } catch (JSONException e) {
+            call.reject(e.getMessage());
+            return;
+        }
+        JSObject tir = new JSObject();
+        tir.put("below", range.below);
+        tir.put("inRange", range.inRange);
+        tir.put("above", range.above);
+        tir.put("count", range.below + range.inRange + range.above);
+        tir.put("lowMgdl", ReadingHistory.TIR_LOW_MGDL);
+        tir.put("highMgdl", ReadingHistory.TIR_HIGH_MGDL);
+        JSObject result = new JSObject();
+        result.put("resolution", ReadingHistory.RESOLUTIONS[resolution]);
+        result.put("t", t);
+        result.put("mean", mean);
+        result.put("min", min);
+        result.put("max", max);
+        result.put("n", n);
+        result.put("timeInRange", tir);
+        call.resolve(result);
+    }
+
+    /** Per-stage pipeline timings in ms (boxed: JSObject has no put(String, double)): count, mean, p50, p90, p99 and max for each stage with samples. */
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        JSObject result = new JSObject();
+        for (int stage = 0; stage < MonitorMetrics.NAMES.length; stage++) {
+            Histogram h = BackgroundService.metrics.histogram(stage);
+            if (h.count() == 0) continue;
+            JSObject entry = new JSObject();
+            entry.put("count", h.count());
+            entry.put("meanMs", Double.valueOf(h.mean() / 1000));
+            entry.put("p50Ms", Double.valueOf(h.percentile(50) / 1000.0));
+            entry.put("p90Ms", Double.valueOf(h.percentile(90) / 1000.0));
+            entry.put("p99Ms", Double.valueOf(h.percentile(99) / 1000.0));
+            entry.put("maxMs", Double.valueOf(h.max() / 1000.0));
+            result.put(MonitorMetrics.NAMES[stage], entry);
+        }
+        result.put("schedulerMode", BackgroundService.schedulerMode(getContext()));
+        call.resolve(result);
+    }
+
+    /**
+     * How this process's monitor came up: {@code reason} (boot, package-replaced, process-start,
+     * activity or direct), each milestone reached in ms since boot (processStart, startRequested,
+     * serviceCreated, firstPoll, alertCapable) and {@code missing}, the permissions it runs without.
+     */
+    @PluginMethod
+    public void getStartup(PluginCall call) {
+        StartupTimeline timeline = MonitorStartup.timeline;
+        JSObject sinceBoot = new JSObject();
+        for (int m = 0; m < StartupTimeline.NAMES.length; m++) {
+            if (timeline.at(m) >= 0) sinceBoot.put(StartupTimeline.NAMES[m], timeline.at(m));
+        }
+        JSObject result = new JSObject();
+        result.put("reason", timeline.reason());
+        result.put("sinceBootMs", sinceBoot);
+        result.put("missing", new JSArray(MonitorStartup.missing(getContext())));
+        result.put("running", BackgroundService.isRunning());
+        call.resolve(result);
+    }
+
+    /**
+     * Observed latencies (ms) from a reading's timestamp to the phone seeing it and to the alert
+     * firing, and from the service publishing a window to the UI applying it.
+     */
+    @PluginMethod
+    public void getLatency(PluginCall call) {
+        JSObject result = new JSObject();
+        result.put("seenMedianMs", BackgroundService.readingToSeenLatency.median());
+        result.put("seenP90Ms", BackgroundService.readingToSeenLatency.percentile(90));
+        result.put("seenCount", BackgroundService.readingToSeenLatency.total());
+        result.put("alertMedianMs", BackgroundService.readingToAlertLatency.median());
+        result.put("alertP90Ms", BackgroundService.readingToAlertLatency.percentile(90));
+        result.put("alertCount", BackgroundService.readingToAlertLatency.total());
+        result.put("webViewMedianMs", BackgroundService.serviceToWebViewLatency.median());
+        result.put("webViewP90Ms", BackgroundService.serviceToWebViewLatency.percentile(90));
+        result.put("webViewCount", BackgroundService.serviceToWebViewLatency.total());
+        result.put("firstRenderMs", dispatcher.firstRenderMs());
+        call.resolve(result);
+    }
 }
@@ -0,0 +1,19 @@
+package com.bgguardianlink.app;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/** Starts monitoring after a reboot or an app update, before anyone opens the app. */
+public class BootReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
+            MonitorStartup.start(context, MonitorStartup.REASON_BOOT);
+        } else if (Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            MonitorStartup.start(context, MonitorStartup.REASON_PACKAGE_REPLACED);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bgguardianlink.app;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.TextView;
+
+import com.bgguardianlink.monitor.Glance;
+import com.bgguardianlink.monitor.MonitorMetrics;
+
+/**
+ * Native view over the WebView until the web UI reports ready: the newest reading, its trend and
+ * age, and the alert being raised. It is filled from what the service holds before the first frame,
+ * so an alert that opens the app shows the number at once; on a launch before the service has data it
+ * reads the journal off the main thread. Fades out on {@link #dismiss}. Main thread only.
+ */
+final class GlanceOverlay {
+
+    static final long FADE_MS = 200;
+
+    private final View root;
+    private final TextView value;
+    private final TextView trend;
+    private final TextView age;
+    private final TextView alert;
+    /** elapsedRealtime the launch is timed from. */
+    private final long launchedAt;
+    private Runnable unsubscribe;
+    private boolean dismissed;
+
+    private GlanceOverlay(Activity activity, long launchedAt) {
+        this.launchedAt = launchedAt;
+        root = activity.getLayoutInflater().inflate(R.layout.glance_overlay, null);
+        value = root.findViewById(R.id.glance_value);
+        trend = root.findViewById(R.id.glance_trend);
+        age = root.findViewById(R.id.glance_age);
+        alert = root.findViewById(R.id.glance_alert);
+        activity.addContentView(root, new ViewGroup.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    }
+
+    /** Shows the overlay on {@code activity}; call at the end of onCreate. */
+    static GlanceOverlay show(Activity activity, long launchedAt) {
+        GlanceOverlay overlay = new GlanceOverlay(activity, launchedAt);
+        Glance glance = BackgroundService.glance();
+        if (glance != null) {
+            overlay.bind(glance);
+        } else {
+            overlay.loadFromJournal(activity);
+        }
+        // Later windows from the service refresh it while it is up.
+        overlay.unsubscribe = BackgroundService.readingBus.subscribe(w -> overlay.root.post(overlay::refresh));
+        overlay.root.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                overlay.root.getViewTreeObserver().removeOnPreDrawListener(this);
+                overlay.record(MonitorMetrics.GLANCE_SHOWN);
+                return true;
+            }
+        });
+        return overlay;
+    }
+
+    private void loadFromJournal(Activity activity) {
+        new Thread(() -> {
+            try {
+                Glance glance = BackgroundService.coldGlance(activity.getApplicationContext());
+                root.post(() -> {
+                    if (BackgroundService.glance() == null && !dismissed) bind(glance);
+                });
+            } catch (Exception e) {
+                Log.e("Monitor", "Glance could not read the journal", e);
+            }
+        }, "glance-journal").start();
+    }
+
+    private void refresh() {
+        Glance glance = BackgroundService.glance();
+        if (glance != null && !dismissed) bind(glance);
+    }
+
+    private void bind(Glance glance) {
+        value.setText(glance.value);
+        trend.setText(glance.trend);
+        age.setText(glance.detail());
+        // A stale reading is dimmed, so an old number is never mistaken for a current one.
+        value.setAlpha(glance.stale ? 0.4f : 1f);
+        trend.setAlpha(glance.stale ? 0.4f : 1f);
+        alert.setText(glance.alert);
+        alert.setVisibility(glance.alert != null ? View.VISIBLE : View.GONE);
+    }
+
+    /** The web UI is up: fades the overlay out and removes it. */
+    void dismiss() {
+        if (dismissed) return;
+        dismissed = true;
+        record(MonitorMetrics.UI_READY);
+        release();
+        root.animate().alpha(0f).setDuration(FADE_MS).withEndAction(() -> {
+            ViewGroup parent = (ViewGroup) root.getParent();
+            if (parent != null) parent.removeView(root);
+        });
+    }
+
+    /** Drops the bus subscription without recording UI_READY; call when the activity goes away first. */
+    void release() {
+        dismissed = true;
+        if (unsubscribe != null) {
+            unsubscribe.run();
+            unsubscribe = null;
+        }
+    }
+
+    private void record(int stage) {
+        long ms = SystemClock.elapsedRealtime() - launchedAt;
+        BackgroundService.metrics.recordMicros(stage, ms * 1000);
+        Log.d("Monitor", MonitorMetrics.NAMES[stage] + " " + ms + "ms after launch");
+    }
+}
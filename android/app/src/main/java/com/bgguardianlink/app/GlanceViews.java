@@ -0,0 +1,87 @@
+package com.bgguardianlink.app;
+
+import android.app.Notification;
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+import android.widget.RemoteViews;
+
+import androidx.core.app.NotificationCompat;
+
+import com.bgguardianlink.monitor.Glance;
+
+/**
+ * The latest reading outside the app: the service's ongoing notification and the home-screen
+ * widget, both as {@link RemoteViews} filled from a {@link Glance}. Building them touches no
+ * WebView and no network, so keeping them current costs next to nothing.
+ */
+final class GlanceViews {
+
+    static final int ONGOING_NOTIFICATION_ID = 1;
+
+    private GlanceViews() {
+    }
+
+    /** The foreground notification; {@code glance} is null until the service has a reading. */
+    static Notification ongoing(Context context, Glance glance) {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, BackgroundService.CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentIntent(openApp(context))
+                .setOngoing(true)
+                .setOnlyAlertOnce(true)
+                .setShowWhen(false)
+                .setCategory(NotificationCompat.CATEGORY_STATUS);
+        if (glance == null) {
+            return builder.setContentTitle("BG Guardian is running")
+                    .setContentText("Monitoring your glucose levels.")
+                    .build();
+        }
+        // The plain title and text are what accessibility services and the lock screen read.
+        return builder.setContentTitle(glance.value + " " + glance.unit + " " + glance.trend)
+                .setContentText(glance.alert != null ? glance.alert : glance.age)
+                .setCustomContentView(views(context, R.layout.notification_reading, glance))
+                .setStyle(new NotificationCompat.DecoratedCustomViewStyle())
+                .build();
+    }
+
+    /** Redraws every placed widget; a no-op without any. */
+    static void updateWidgets(Context context, Glance glance) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        ComponentName widget = new ComponentName(context, ReadingWidget.class);
+        if (manager == null || manager.getAppWidgetIds(widget).length == 0) return;
+        manager.updateAppWidget(widget, widgetViews(context, glance));
+    }
+
+    static RemoteViews widgetViews(Context context, Glance glance) {
+        RemoteViews views = views(context, R.layout.widget_reading, glance);
+        views.setOnClickPendingIntent(R.id.reading_widget, openApp(context));
+        return views;
+    }
+
+    private static RemoteViews views(Context context, int layout, Glance glance) {
+        RemoteViews views = new RemoteViews(context.getPackageName(), layout);
+        if (glance == null) return views;
+        views.setTextViewText(R.id.reading_value, glance.value);
+        views.setTextViewText(R.id.reading_trend, glance.trend);
+        views.setTextViewText(R.id.reading_age, glance.detail());
+        // A stale reading is dimmed, as in the app's glance view.
+        float alpha = glance.stale ? 0.4f : 1f;
+        views.setFloat(R.id.reading_value, "setAlpha", alpha);
+        views.setFloat(R.id.reading_trend, "setAlpha", alpha);
+        views.setTextViewText(R.id.reading_alert, glance.alert);
+        views.setViewVisibility(R.id.reading_alert, glance.alert != null ? View.VISIBLE : View.GONE);
+        return views;
+    }
+
+    private static PendingIntent openApp(Context context) {
+        Intent intent = new Intent(context, MainActivity.class)
+                .setAction(Intent.ACTION_MAIN)
+                .addCategory(Intent.CATEGORY_LAUNCHER)
+                .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        return PendingIntent.getActivity(context, 1, intent,
+                PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
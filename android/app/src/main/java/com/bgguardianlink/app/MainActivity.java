@@ -1,35 +1,31 @@
 package com.bgguardianlink.app;
 
-import androidx.core.content.ContextCompat;
-import android.app.AlarmManager;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
-import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.provider.Settings;
 import android.view.ViewGroup;
 import android.webkit.WebView;
 import android.webkit.WebSettings;
 
 import androidx.core.app.ActivityCompat;
-import androidx.core.content.ContextCompat;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import com.getcapacitor.BridgeActivity;
-import org.json.JSONObject;
 
-import java.util.ArrayList;
 
 public class MainActivity extends BridgeActivity {
 
@@ -37,38 +33,19 @@ public class MainActivity extends BridgeActivity {
     public static final String MONITOR_CHANNEL_ID = "MonitorChannel";
     private static final int NOTIFICATION_PERMISSION_REQUEST_CODE = 101;
     private static MainActivity instance;
-    private boolean serviceStarted = false;
     private boolean isUiReady = false;
-    private ArrayList<String> pendingDataUpdates = new ArrayList<>();
-
-    private BroadcastReceiver dataUpdateReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            final String jsonData = intent.getStringExtra(BackgroundService.EXTRA_DATA);
-            if (jsonData != null) {
-                if (isUiReady) {
-                    dispatchDataToWebView(jsonData);
-                } else {
-                    pendingDataUpdates.add(jsonData);
-                }
-            }
-        }
-    };
+    private GlanceOverlay glance;
 
+    /** Readings reach the UI through BackgroundServicePlugin; this only signals a resume and drops the glance view. */
     public void processPendingDataUpdates() {
         isUiReady = true;
-        for (String jsonData : pendingDataUpdates) {
-            dispatchDataToWebView(jsonData);
-        }
-        pendingDataUpdates.clear();
         dispatchAppResume();
-    }
-
-    private void dispatchDataToWebView(String jsonData) {
-        final WebView webView = getBridge().getWebView();
-        webView.post(() -> {
-            String script = "window.dispatchEvent(new CustomEvent('bgg-data-update', { detail: " + JSONObject.quote(jsonData) + " }));";
-            webView.evaluateJavascript(script, null);
+        runOnUiThread(() -> {
+            if (glance != null) {
+                glance.dismiss();
+                glance = null;
+                reportFullyDrawn();
+            }
         });
     }
 
@@ -85,6 +62,9 @@ public class MainActivity extends BridgeActivity {
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        // A launch that started the process is timed from process start; others from here.
+        long launchedAt = savedInstanceState == null && !BackgroundService.isRunning()
+                ? Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
         super.onCreate(savedInstanceState);
         instance = this;
         registerPlugin(MyUiReadyPlugin.class);
@@ -93,8 +73,7 @@ public class MainActivity extends BridgeActivity {
         WebSettings settings = this.bridge.getWebView().getSettings();
         settings.setMixedContentMode(WebSettings.MIXED_CONTENT_ALWAYS_ALLOW);
         settings.setMediaPlaybackRequiresUserGesture(false);
-        settings.setRenderPriority(WebSettings.RenderPriority.LOW);
-        settings.setCacheMode(WebSettings.LOAD_NO_CACHE);
+        applyCacheMode(settings);
         settings.setDatabaseEnabled(false);
         settings.setGeolocationEnabled(false);
 
@@ -111,13 +90,34 @@ public class MainActivity extends BridgeActivity {
             return insets;
         });
 
-        createNotificationChannels();
+        createNotificationChannels(this);
         registerPlugin(UrgentNotificationPlugin.class);
+        registerPlugin(BackgroundServicePlugin.class);
+        registerPlugin(ReadingSourcePlugin.class);
 
         // Force-open Alarms & reminders on first launch (Android 12+). WebView is shown first, then settings open.
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !canScheduleExactAlarms()) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !MonitorStartup.canScheduleExactAlarms(this)) {
             new Handler(Looper.getMainLooper()).postDelayed(this::requestExactAlarmPermission, 800);
         }
+
+        // The number first: drawn natively in the first frame, over the WebView until uiReady.
+        glance = GlanceOverlay.show(this, launchedAt);
+    }
+
+    /**
+     * Normal HTTP caching while online, so assets and API responses are revalidated rather than
+     * re-downloaded on every launch; the cache without expiry checks while offline.
+     */
+    private void applyCacheMode(WebSettings settings) {
+        settings.setCacheMode(isOnline() ? WebSettings.LOAD_DEFAULT : WebSettings.LOAD_CACHE_ELSE_NETWORK);
+    }
+
+    private boolean isOnline() {
+        ConnectivityManager cm = getSystemService(ConnectivityManager.class);
+        if (cm == null) return true;
+        Network network = cm.getActiveNetwork();
+        NetworkCapabilities caps = network != null ? cm.getNetworkCapabilities(network) : null;
+        return caps != null && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
     }
 
 
@@ -125,63 +125,35 @@ public class MainActivity extends BridgeActivity {
     @Override
     public void onResume() {
         super.onResume();
+        WebView webView = getBridge().getWebView();
+        if (webView != null) applyCacheMode(webView.getSettings());
         checkAndRequestPermissions();
-
-        IntentFilter filter = new IntentFilter(BackgroundService.ACTION_DATA_UPDATE);
-
-        // Use ContextCompat.registerReceiver with an explicit flag
-        ContextCompat.registerReceiver(
-                this,
-                dataUpdateReceiver,
-                filter,
-                ContextCompat.RECEIVER_NOT_EXPORTED
-        );
-
         dispatchAppResume();
     }
 
 
 
-    @Override
-    public void onPause() {
-        super.onPause();
-        unregisterReceiver(dataUpdateReceiver);
-    }
-
+    /**
+     * Starts the monitor, then asks for the next permission it is missing, one per resume. The
+     * monitor does not wait for them; it runs degraded until they are granted.
+     */
     private void checkAndRequestPermissions() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !canScheduleExactAlarms()) {
+        MonitorStartup.start(this, MonitorStartup.REASON_ACTIVITY);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !MonitorStartup.canScheduleExactAlarms(this)) {
             requestExactAlarmPermission();
             return;
         }
-        if (!hasNotificationPermission()) {
+        if (!MonitorStartup.hasNotificationPermission(this)) {
             requestNotificationPermission();
-        } else if (!isIgnoringBatteryOptimizations()) {
+        } else if (!MonitorStartup.isIgnoringBatteryOptimizations(this)) {
             requestIgnoreBatteryOptimizations();
-        } else if (!canUseFullScreenIntent()) {
+        } else if (!MonitorStartup.canUseFullScreenIntent(this)) {
             requestFullScreenIntentPermission();
-        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !canDrawOverlays()) {
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M && !MonitorStartup.canDrawOverlays(this)) {
             requestOverlayPermission();
-        } else {
-            if (!serviceStarted) {
-                Intent serviceIntent = new Intent(this, BackgroundService.class);
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                    startForegroundService(serviceIntent);
-                } else {
-                    startService(serviceIntent);
-                }
-                serviceStarted = true;
-            }
         }
     }
 
-    private boolean canScheduleExactAlarms() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
-            AlarmManager alarmManager = (AlarmManager) getSystemService(Context.ALARM_SERVICE);
-            return alarmManager != null && alarmManager.canScheduleExactAlarms();
-        }
-        return true;
-    }
-
     private void requestExactAlarmPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
             Intent intent = new Intent(Settings.ACTION_REQUEST_SCHEDULE_EXACT_ALARM);
@@ -190,14 +162,6 @@ public class MainActivity extends BridgeActivity {
         }
     }
 
-    private boolean canUseFullScreenIntent() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
-            NotificationManager nm = getSystemService(NotificationManager.class);
-            return nm != null && nm.canUseFullScreenIntent();
-        }
-        return true;
-    }
-
     private void requestFullScreenIntentPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
             Intent intent = new Intent(Settings.ACTION_MANAGE_APP_USE_FULL_SCREEN_INTENT);
@@ -206,29 +170,12 @@ public class MainActivity extends BridgeActivity {
         }
     }
 
-    private boolean hasNotificationPermission() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            return ContextCompat.checkSelfPermission(this, android.Manifest.permission.POST_NOTIFICATIONS) == PackageManager.PERMISSION_GRANTED;
-        } else {
-            return true;
-        }
-    }
-
     private void requestNotificationPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
             ActivityCompat.requestPermissions(this, new String[]{android.Manifest.permission.POST_NOTIFICATIONS}, NOTIFICATION_PERMISSION_REQUEST_CODE);
         }
     }
 
-    private boolean isIgnoringBatteryOptimizations() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            PowerManager pm = (PowerManager) getSystemService(POWER_SERVICE);
-            return pm != null && pm.isIgnoringBatteryOptimizations(getPackageName());
-        } else {
-            return true;
-        }
-    }
-
     private void requestIgnoreBatteryOptimizations() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             Intent intent = new Intent(Settings.ACTION_REQUEST_IGNORE_BATTERY_OPTIMIZATIONS);
@@ -236,14 +183,6 @@ public class MainActivity extends BridgeActivity {
             startActivity(intent);
         }
     }
-    
-    private boolean canDrawOverlays() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-            return Settings.canDrawOverlays(this);
-        } else {
-            return true;
-        }
-    }
 
     private void requestOverlayPermission() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -259,7 +198,7 @@ public class MainActivity extends BridgeActivity {
         // The onResume() method will handle the logic after the permission is granted or denied.
     }
 
-    private void createNotificationChannels() {
+    static void createNotificationChannels(Context context) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel alertChannel = new NotificationChannel(
                     ALERT_CHANNEL_ID,
@@ -281,7 +220,7 @@ public class MainActivity extends BridgeActivity {
             monitorChannel.setBypassDnd(true);
             monitorChannel.setLockscreenVisibility(Notification.VISIBILITY_PUBLIC);
 
-            NotificationManager manager = getSystemService(NotificationManager.class);
+            NotificationManager manager = context.getSystemService(NotificationManager.class);
             manager.createNotificationChannel(alertChannel);
             manager.createNotificationChannel(monitorChannel);
         }
@@ -295,5 +234,10 @@ public class MainActivity extends BridgeActivity {
     public void onDestroy() {
         super.onDestroy();
         instance = null;
+        // The web UI never reported ready; the static bus must not keep this activity's views.
+        if (glance != null) {
+            glance.release();
+            glance = null;
+        }
     }
 }
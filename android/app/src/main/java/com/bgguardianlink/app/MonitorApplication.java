@@ -0,0 +1,25 @@
+package com.bgguardianlink.app;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.bgguardianlink.monitor.StartupTimeline;
+
+/**
+ * Starts monitoring whenever the process starts, so an OS kill or a start for a widget or alarm
+ * brings the monitor back without the activity.
+ */
+public class MonitorApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        MonitorStartup.timeline.mark(StartupTimeline.PROCESS_START, Process.getStartElapsedRealtime());
+        // The service may raise alerts before the activity has ever run in this install.
+        MainActivity.createNotificationChannels(this);
+        // Posted, so a boot or update broadcast that started the process is handled first and named as the reason.
+        new Handler(Looper.getMainLooper()).post(() -> MonitorStartup.start(this, MonitorStartup.REASON_PROCESS_START));
+    }
+}
@@ -0,0 +1,92 @@
+package com.bgguardianlink.app;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.bgguardianlink.monitor.MetricsEventListener;
+import com.bgguardianlink.monitor.PollScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The one HTTP client the monitor uses. Idle connections are kept a little longer than the poll
+ * interval so a poll reuses the previous one's TLS session; HTTP/2 is preferred and gzip is on
+ * (OkHttp asks for it and decodes it transparently); responses go into a small disk cache and are
+ * revalidated with conditional GETs.
+ */
+public final class MonitorHttp {
+
+    static final long CONNECT_TIMEOUT_MS = 10_000;
+    static final long READ_TIMEOUT_MS = 15_000;
+    static final long WRITE_TIMEOUT_MS = 15_000;
+    /** Longer than the default poll cadence, so a connection survives from one poll to the next. */
+    static final long KEEP_ALIVE_MS = PollScheduler.DEFAULT_CADENCE_MS + 60_000;
+    static final long CACHE_BYTES = 2 * 1024 * 1024;
+
+    private static volatile OkHttpClient shared;
+
+    private MonitorHttp() {
+    }
+
+    public static OkHttpClient get(Context context) {
+        OkHttpClient client = shared;
+        if (client == null) {
+            synchronized (MonitorHttp.class) {
+                client = shared;
+                if (client == null) {
+                    client = build(new File(context.getApplicationContext().getCacheDir(), "http"))
+                            .newBuilder()
+                            .eventListenerFactory(MetricsEventListener.factory(BackgroundService.metrics))
+                            .build();
+                    shared = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    static OkHttpClient build(File cacheDir) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectTimeout(CONNECT_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .readTimeout(READ_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .writeTimeout(WRITE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(4, KEEP_ALIVE_MS, TimeUnit.MILLISECONDS))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(true);
+        if (cacheDir != null) builder.cache(new Cache(cacheDir, CACHE_BYTES));
+        return builder.build();
+    }
+
+    /**
+     * Makes sure a connection to {@code url}'s host is open ahead of a poll (DNS, TCP and TLS). The
+     * HEAD always goes out: the pool cannot say which host its idle connections lead to, and the
+     * reading stream keeps one of its own, so a pooled connection to the poll host is reused and
+     * otherwise one is opened. Runs on OkHttp's own threads.
+     */
+    public static void warmUp(OkHttpClient client, String url) {
+        Request request = new Request.Builder().url(url).head().build();
+        client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.d("Monitor", "Connection warm-up failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+            }
+        });
+    }
+}
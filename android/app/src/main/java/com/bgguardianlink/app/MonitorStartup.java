@@ -0,0 +1,100 @@
+package com.bgguardianlink.app;
+
+import android.app.AlarmManager;
+import android.app.NotificationManager;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.bgguardianlink.monitor.StartupTimeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the monitor up without waiting for the activity: at boot, after an app update and whenever
+ * the process starts. The service runs with whatever the current permissions allow; what is missing
+ * is logged and reported through {@link #missing}, and the activity still asks for it.
+ */
+final class MonitorStartup {
+
+    static final String REASON_BOOT = "boot";
+    static final String REASON_PACKAGE_REPLACED = "package-replaced";
+    static final String REASON_PROCESS_START = "process-start";
+    static final String REASON_ACTIVITY = "activity";
+    /** The service was started some other way: restarted by the system, or by the app's plugin. */
+    static final String REASON_DIRECT = "direct";
+
+    /** This process's start-up, in ms since boot. */
+    static final StartupTimeline timeline = new StartupTimeline();
+
+    private MonitorStartup() {
+    }
+
+    /** Starts the monitor unless it is running. Safe to call from any context; a refused start is logged. */
+    static void start(Context context, String reason) {
+        if (BackgroundService.isRunning()) return;
+        timeline.requested(reason, SystemClock.elapsedRealtime());
+        try {
+            ContextCompat.startForegroundService(context, new Intent(context, BackgroundService.class));
+        } catch (RuntimeException e) {
+            // Android 12+ refuses foreground starts from the background outside the exempt cases
+            // (boot, update, exact alarms, ...); the next of those, or the activity, will start it.
+            Log.w("Monitor", "Cannot start monitor (" + reason + ")", e);
+        }
+    }
+
+    /**
+     * What the monitor is running without, empty when nothing: notifications (alerts are sound
+     * only), exact alarms (heartbeats may be deferred under Doze), battery optimization exemption,
+     * full-screen alerts and the overlay.
+     */
+    static List<String> missing(Context context) {
+        List<String> missing = new ArrayList<>();
+        if (!hasNotificationPermission(context)) missing.add("notifications");
+        if (!canScheduleExactAlarms(context)) missing.add("exactAlarms");
+        if (!isIgnoringBatteryOptimizations(context)) missing.add("batteryOptimizations");
+        if (!canUseFullScreenIntent(context)) missing.add("fullScreenIntent");
+        if (!canDrawOverlays(context)) missing.add("overlay");
+        return missing;
+    }
+
+    static boolean canScheduleExactAlarms(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+            return alarmManager != null && alarmManager.canScheduleExactAlarms();
+        }
+        return true;
+    }
+
+    static boolean canUseFullScreenIntent(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            NotificationManager nm = context.getSystemService(NotificationManager.class);
+            return nm != null && nm.canUseFullScreenIntent();
+        }
+        return true;
+    }
+
+    static boolean hasNotificationPermission(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            return ContextCompat.checkSelfPermission(context, android.Manifest.permission.POST_NOTIFICATIONS) == PackageManager.PERMISSION_GRANTED;
+        }
+        return true;
+    }
+
+    static boolean isIgnoringBatteryOptimizations(Context context) {
+        PowerManager pm = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        return pm != null && pm.isIgnoringBatteryOptimizations(context.getPackageName());
+    }
+
+    static boolean canDrawOverlays(Context context) {
+        return Settings.canDrawOverlays(context);
+    }
+}
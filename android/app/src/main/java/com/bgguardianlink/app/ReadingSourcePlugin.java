@@ -0,0 +1,129 @@
+package com.bgguardianlink.app;
+
+import android.util.Log;
+
+import com.bgguardianlink.monitor.ReadingSync;
+import com.bgguardianlink.monitor.ReadingWindow;
+import com.bgguardianlink.monitor.SingleFlight;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The app's reads of /api/readings, answered natively so the WebView and the service stop fetching
+ * the same readings seconds apart. A read is served from the service's window when the service has
+ * it fresh; otherwise it joins (or starts) the service's poll of the primary source. Reads the window
+ * cannot hold, or made while the service is down, go to the network, with identical concurrent
+ * requests collapsed into one.
+ */
+@CapacitorPlugin(name = "ReadingSource")
+public class ReadingSourcePlugin extends Plugin {
+
+    /** How old the service's data may be, by default, and still answer a read without a poll. */
+    static final long DEFAULT_MAX_AGE_MS = 60_000;
+
+    private static final SingleFlight<String> reads = new SingleFlight<>();
+    /** Concurrent identical reads already share one call; two threads cover distinct limits in flight. */
+    private static final ExecutorService readPool = Executors.newFixedThreadPool(2);
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * Readings newest first, in the /api/readings shape: {@code {readings, source}}, where source is
+     * {@code "cache"}, {@code "poll"} or {@code "network"}. Takes {@code limit} (default 50) and
+     * {@code maxAgeMs}, how stale the service's data may be.
+     */
+    @PluginMethod
+    public void getReadings(PluginCall call) {
+        int limit = call.getInt("limit", ReadingSync.WINDOW_SIZE);
+        long maxAgeMs = call.getLong("maxAgeMs", DEFAULT_MAX_AGE_MS);
+        if (limit <= 0) {
+            call.reject("limit must be positive");
+            return;
+        }
+        requests.incrementAndGet();
+        if (limit <= ReadingSync.WINDOW_SIZE) {
+            ReadingWindow fresh = BackgroundService.freshPrimaryWindow(maxAgeMs);
+            if (fresh != null) {
+                cacheHits.incrementAndGet();
+                resolveWindow(call, fresh, limit, "cache");
+                return;
+            }
+            boolean polling = BackgroundService.refreshPrimary((window, error) -> {
+                if (error != null) call.reject("Poll failed: " + error.getMessage());
+                else resolveWindow(call, window, limit, "poll");
+            });
+            if (polling) return;
+        }
+        String url = BackgroundService.sourceConfigs(getContext()).get(0).apiBase + "/readings?limit=" + limit;
+        reads.submit(url, () -> fetch(url), readPool, (body, error) -> {
+            if (error != null) {
+                call.reject("Request failed: " + error.getMessage());
+                return;
+            }
+            try {
+                JSObject result = new JSObject();
+                result.put("readings", new JSArray(body));
+                result.put("source", "network");
+                call.resolve(result);
+            } catch (JSONException e) {
+                call.reject("Malformed readings: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * How much the shared source saved: reads answered from the service's data, and reads and
+     * service polls that shared a call already in flight instead of making their own.
+     */
+    @PluginMethod
+    public void getStats(PluginCall call) {
+        long total = requests.get();
+        long hits = cacheHits.get();
+        long joined = reads.joined() + BackgroundService.primaryPolls.joined();
+        JSObject result = new JSObject();
+        result.put("requests", total);
+        result.put("cacheHits", hits);
+        result.put("cacheHitRatio", Double.valueOf(total == 0 ? 0 : hits / (double) total));
+        result.put("joinedInFlight", joined);
+        result.put("networkCalls", reads.started() + BackgroundService.primaryPolls.started());
+        result.put("requestsSaved", hits + joined);
+        call.resolve(result);
+    }
+
+    private String fetch(String url) throws IOException {
+        Request request = new Request.Builder().url(url).header("Accept", "application/json").build();
+        try (Response response = MonitorHttp.get(getContext()).newCall(request).execute()) {
+            if (!response.isSuccessful()) throw new IOException("HTTP " + response.code());
+            return response.body().string();
+        }
+    }
+
+    private static void resolveWindow(PluginCall call, ReadingWindow window, int limit, String source) {
+        JSArray readings = new JSArray();
+        for (int i = 0; i < Math.min(limit, window.size()); i++) {
+            try {
+                readings.put(new JSObject(window.jsonAt(i)));
+            } catch (JSONException e) {
+                Log.e("Monitor", "Skipping malformed reading", e);
+            }
+        }
+        JSObject result = new JSObject();
+        result.put("readings", readings);
+        result.put("source", source);
+        call.resolve(result);
+    }
+}
@@ -0,0 +1,18 @@
+package com.bgguardianlink.app;
+
+import android.appwidget.AppWidgetManager;
+import android.appwidget.AppWidgetProvider;
+import android.content.Context;
+
+/**
+ * Home-screen widget with the latest reading. It has no update period: the service pushes a new
+ * one through {@link GlanceViews#updateWidgets} whenever what it shows changes. A freshly placed
+ * widget is drawn from whatever the service holds right now.
+ */
+public class ReadingWidget extends AppWidgetProvider {
+
+    @Override
+    public void onUpdate(Context context, AppWidgetManager manager, int[] appWidgetIds) {
+        manager.updateAppWidget(appWidgetIds, GlanceViews.widgetViews(context, BackgroundService.glance()));
+    }
+}
@@ -0,0 +1,110 @@
+package com.bgguardianlink.app;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Checks the shared client's conditional-GET cache, connection reuse and warm-up against a local
+ * stand-in server.
+ */
+public class MonitorHttpTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private String base;
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/settings", exchange -> {
+            String etag = "\"v1\"";
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Cache-Control", "no-cache");
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            byte[] bytes = "{\"bg_unit\":\"mgdl\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void repeatFetchIsRevalidatedFromCacheOnOneConnection() throws Exception {
+        OkHttpClient client = MonitorHttp.build(tmp.newFolder("http"));
+        String first = fetch(client, base + "/api/settings");
+        String second = fetch(client, base + "/api/settings");
+
+        assertEquals(first, second);
+        assertEquals(1, notModified.get());
+        assertEquals(1, client.cache().hitCount());
+        assertEquals(1, client.connectionPool().connectionCount());
+    }
+
+    @Test
+    public void warmUpLeavesAnIdleConnection() throws Exception {
+        OkHttpClient client = MonitorHttp.build(null);
+        MonitorHttp.warmUp(client, base + "/api/settings");
+        for (int i = 0; i < 100 && client.connectionPool().idleConnectionCount() == 0; i++) Thread.sleep(20);
+        assertEquals(1, client.connectionPool().idleConnectionCount());
+    }
+
+    @Test
+    public void warmUpReachesThePollHostWhileAnotherHostIsPooled() throws Exception {
+        HttpServer other = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        other.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        other.start();
+        try {
+            OkHttpClient client = MonitorHttp.build(null);
+            fetch(client, "http://127.0.0.1:" + other.getAddress().getPort() + "/stream");
+            assertEquals(1, client.connectionPool().idleConnectionCount());
+
+            MonitorHttp.warmUp(client, base + "/api/settings");
+            for (int i = 0; i < 100 && client.connectionPool().idleConnectionCount() < 2; i++) Thread.sleep(20);
+            assertEquals(2, client.connectionPool().idleConnectionCount());
+        } finally {
+            other.stop(0);
+        }
+    }
+
+    private static String fetch(OkHttpClient client, String url) throws IOException {
+        try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.bgguardianlink.monitor.bench;
+
+import com.bgguardianlink.monitor.AlertEvaluator;
+import com.bgguardianlink.monitor.AlertPayload;
+import com.bgguardianlink.monitor.AlertSettings;
+import com.bgguardianlink.monitor.ReadingFrame;
+
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Adds a reading and evaluates it against cached settings, as each new reading does on the phone. */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AlertBenchmark {
+
+    private AlertSettings settings;
+    private final AlertEvaluator evaluator = new AlertEvaluator();
+    private final ReadingFrame latest = new ReadingFrame();
+    private long timestamp = Payloads.T0;
+    private int step;
+
+    @Setup
+    public void setUp() throws JSONException {
+        settings = AlertSettings.parse(Payloads.settings());
+        // A day of history, so the engine and forecaster are at steady-state occupancy.
+        for (int i = 0; i < 288; i++) add();
+    }
+
+    private void add() {
+        timestamp += Payloads.FIVE_MIN;
+        // Slow swing that dips below the low threshold now and then.
+        int mgdl = 130 + (int) (45 * Math.sin(step++ / 20.0));
+        latest.timestampMs = timestamp;
+        latest.glucose = mgdl;
+        evaluator.add(timestamp, mgdl);
+    }
+
+    @Benchmark
+    public AlertPayload addAndEvaluate() {
+        add();
+        return evaluator.evaluate(latest, settings);
+    }
+}
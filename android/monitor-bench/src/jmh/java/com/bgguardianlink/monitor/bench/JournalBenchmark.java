@@ -0,0 +1,76 @@
+package com.bgguardianlink.monitor.bench;
+
+import com.bgguardianlink.monitor.ReadingFrame;
+import com.bgguardianlink.monitor.ReadingJournal;
+import com.bgguardianlink.monitor.ReadingSync;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The journal's two hot paths: the cold-start read of the newest window from thirty days of
+ * segments, and a durable append (includes the fsync, so it measures the device's disk too).
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JournalBenchmark {
+
+    private File readDir;
+    private File appendDir;
+    private ReadingJournal appender;
+    private long timestamp;
+    private long sum;
+
+    @Setup
+    public void setUp() throws IOException {
+        readDir = Files.createTempDirectory("journal-read").toFile();
+        try (ReadingJournal journal = new ReadingJournal(readDir)) {
+            for (int i = 0; i < 30 * 288; i++) {
+                journal.append(Payloads.T0 + i * Payloads.FIVE_MIN, 80 + i % 120, ReadingFrame.TREND_FLAT);
+            }
+        }
+        appendDir = Files.createTempDirectory("journal-append").toFile();
+        appender = new ReadingJournal(appendDir);
+        timestamp = Payloads.T0;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        appender.close();
+        delete(readDir);
+        delete(appendDir);
+    }
+
+    @Benchmark
+    public long readLatestWindow() throws IOException {
+        sum = 0;
+        ReadingJournal.readLatest(readDir, ReadingSync.WINDOW_SIZE, (ts, mgdl, trend) -> sum += mgdl);
+        return sum;
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        timestamp += Payloads.FIVE_MIN;
+        appender.append(timestamp, 110, ReadingFrame.TREND_FLAT);
+    }
+
+    private static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+}
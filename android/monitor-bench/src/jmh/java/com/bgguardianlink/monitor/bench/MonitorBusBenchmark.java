@@ -0,0 +1,52 @@
+package com.bgguardianlink.monitor.bench;
+
+import com.bgguardianlink.monitor.MonitorBus;
+import com.bgguardianlink.monitor.ReadingFrame;
+import com.bgguardianlink.monitor.ReadingSync;
+import com.bgguardianlink.monitor.ReadingWindow;
+
+import org.json.JSONArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands a full window to the UI: in-process over {@link MonitorBus}, against what the old broadcast
+ * did on top, serializing the window into a String extra and parsing it back.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MonitorBusBenchmark {
+
+    private final ReadingSync sync = new ReadingSync(null, "http://localhost/api/readings");
+    private final MonitorBus<ReadingWindow> bus = new MonitorBus<>();
+    private long seq;
+    private int received;
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < ReadingSync.WINDOW_SIZE; i++) {
+            sync.restore(Payloads.T0 + i * Payloads.FIVE_MIN, 100 + i, ReadingFrame.TREND_FLAT);
+        }
+        bus.subscribe(w -> received += w.size());
+    }
+
+    @Benchmark
+    public int publishInProcess() {
+        bus.publish(sync.window(++seq, 0));
+        return received;
+    }
+
+    @Benchmark
+    public int serializedPayload() {
+        String extra = sync.window(++seq, 0).toJson();
+        return new JSONArray(extra).length();
+    }
+}
@@ -0,0 +1,60 @@
+package com.bgguardianlink.monitor.bench;
+
+import com.bgguardianlink.monitor.ReadingFrame;
+import com.bgguardianlink.monitor.ReadingStreamParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+/**
+ * Decodes a whole /api/readings body, from a poll's worth up to a long backfill. Throughput gives
+ * readings per second (divide by {@code size}); SampleTime gives the per-body latency percentiles.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+
+    @Param({"50", "1000", "10000"})
+    public int size;
+
+    private byte[] body;
+    private final ReadingStreamParser parser = new ReadingStreamParser();
+    private final ReadingStreamParser.Callback sink = (frame, p) -> true;
+    private final ReadingStreamParser.Callback rawSink = (frame, p) -> p.rawJson() != null;
+
+    @Setup
+    public void setUp() {
+        body = Payloads.readings(size).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        return parser.parse(new Buffer().write(body), sink);
+    }
+
+    /** As {@link #parse()}, but keeping each reading's raw JSON the way the sync window does. */
+    @Benchmark
+    public int parseWithRawJson() throws IOException {
+        return parser.parse(new Buffer().write(body), rawSink);
+    }
+
+    @Benchmark
+    public long parseHead() throws IOException {
+        ReadingFrame frame = new ReadingFrame();
+        parser.parseHead(new Buffer().write(body), frame);
+        return frame.timestampMs;
+    }
+}
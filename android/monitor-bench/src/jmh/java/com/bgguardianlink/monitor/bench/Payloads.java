@@ -0,0 +1,39 @@
+package com.bgguardianlink.monitor.bench;
+
+import java.time.Instant;
+
+/** Synthetic /api/readings bodies in the shape the server sends, newest first. */
+final class Payloads {
+
+    static final long T0 = 1_767_261_600_000L; // 2026-01-01T10:00:00Z
+    static final long FIVE_MIN = 5 * 60_000L;
+
+    private static final String[] TRENDS = {"FLAT", "UP", "DOWN", "UP_DOUBLE", "DOWN_DOUBLE"};
+
+    private Payloads() {
+    }
+
+    static String readings(int count) {
+        StringBuilder sb = new StringBuilder(count * 200).append('[');
+        for (int i = count - 1; i >= 0; i--) {
+            if (sb.length() > 1) sb.append(',');
+            int mgdl = 120 + (int) (60 * Math.sin(i / 12.0));
+            boolean low = mgdl < 70;
+            sb.append("{\"id\":").append(i)
+                    .append(",\"glucose_value\":").append(mgdl)
+                    .append(",\"trend\":\"").append(TRENDS[i % TRENDS.length]).append('"')
+                    .append(",\"timestamp\":\"").append(Instant.ofEpochMilli(T0 + i * FIVE_MIN)).append('"')
+                    .append(",\"source\":\"carelink\",\"alert\":").append(low);
+            if (low) {
+                sb.append(",\"alert_type\":\"low\",\"alert_message\":\"Low glucose\",\"alert_volume\":0.8");
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString();
+    }
+
+    static String settings() {
+        return "{\"bg_unit\":\"mgdl\",\"low_threshold\":70,\"high_threshold\":180,"
+                + "\"predicted_low_enabled\":true,\"rapid_fall_enabled\":true,\"user_name\":\"Sam\",\"alert_volume\":0.9}";
+    }
+}
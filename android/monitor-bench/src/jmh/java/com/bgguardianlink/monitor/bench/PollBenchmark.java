@@ -0,0 +1,63 @@
+package com.bgguardianlink.monitor.bench;
+
+import com.bgguardianlink.monitor.ReadingSync;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One poll's work after the bytes arrive: parse, stage and splice into the window. {@code coldPoll}
+ * fills an empty window (first poll after start); {@code deltaPoll} merges the single new reading a
+ * steady-state poll brings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PollBenchmark {
+
+    private static final String URL = "http://localhost/api/readings";
+    private static final int DELTAS = 1024;
+
+    private String window;
+    private final String[] deltas = new String[DELTAS];
+    private ReadingSync steady;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        window = Payloads.readings(ReadingSync.WINDOW_SIZE);
+        long last = Payloads.T0 + (ReadingSync.WINDOW_SIZE - 1) * Payloads.FIVE_MIN;
+        for (int i = 0; i < DELTAS; i++) {
+            deltas[i] = "[{\"glucose_value\":" + (100 + i % 50) + ",\"trend\":\"FLAT\",\"timestamp\":\""
+                    + Instant.ofEpochMilli(last + (i + 1) * Payloads.FIVE_MIN) + "\",\"alert\":false}]";
+        }
+        resetSteady();
+    }
+
+    private void resetSteady() throws IOException {
+        steady = new ReadingSync(null, URL);
+        steady.ingest(window);
+        next = 0;
+    }
+
+    @Benchmark
+    public int coldPoll() throws IOException {
+        return new ReadingSync(null, URL).ingest(window);
+    }
+
+    @Benchmark
+    public int deltaPoll() throws IOException {
+        // Timestamps must keep increasing; start over once the prepared deltas run out.
+        if (next == DELTAS) resetSteady();
+        return steady.ingest(deltas[next++]);
+    }
+}
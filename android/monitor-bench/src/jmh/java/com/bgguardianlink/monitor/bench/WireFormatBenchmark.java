@@ -0,0 +1,70 @@
+package com.bgguardianlink.monitor.bench;
+
+import com.bgguardianlink.monitor.ReadingBinaryDecoder;
+import com.bgguardianlink.monitor.ReadingBinaryEncoder;
+import com.bgguardianlink.monitor.ReadingStreamParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+
+/**
+ * Decode time for the same /api/readings body as JSON and in the compact encoding. The size on the
+ * wire is checked by ReadingBinaryDecoderTest.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WireFormatBenchmark {
+
+    @Param({"50", "500", "5000"})
+    public int size;
+
+    private byte[] json;
+    private byte[] binary;
+    private final ReadingStreamParser parser = new ReadingStreamParser();
+    private final ReadingBinaryDecoder decoder = new ReadingBinaryDecoder();
+    private final ReadingStreamParser.Callback jsonSink = (frame, p) -> true;
+    private final ReadingBinaryDecoder.Callback binarySink = (frame, d) -> true;
+    private final ReadingStreamParser.Callback jsonRawSink = (frame, p) -> p.rawJson() != null;
+    private final ReadingBinaryDecoder.Callback binaryRawSink = (frame, d) -> d.rawJson() != null;
+
+    @Setup
+    public void setUp() throws Exception {
+        String body = Payloads.readings(size);
+        json = body.getBytes(StandardCharsets.UTF_8);
+        binary = ReadingBinaryEncoder.encode(body);
+    }
+
+    @Benchmark
+    public int json() throws IOException {
+        return parser.parse(new Buffer().write(json), jsonSink);
+    }
+
+    @Benchmark
+    public int binary() throws IOException {
+        return decoder.parse(new Buffer().write(binary), binarySink);
+    }
+
+    /** As {@link #json()}, keeping each reading's raw JSON the way the sync window does. */
+    @Benchmark
+    public int jsonWithRawJson() throws IOException {
+        return parser.parse(new Buffer().write(json), jsonRawSink);
+    }
+
+    @Benchmark
+    public int binaryWithRawJson() throws IOException {
+        return decoder.parse(new Buffer().write(binary), binaryRawSink);
+    }
+}
@@ -0,0 +1,85 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * On-device version of the server's getAlertForLatestReading. Recent readings live in a fixed-size
+ * primitive ring; a second cursor tracks the newest reading at least 15 minutes older than the
+ * latest one and only ever moves forward, so the rapid-change lookup is O(1) amortized and
+ * evaluating a reading allocates nothing.
+ */
+public class AlertEngine {
+
+    /** Enough for 15 minutes of 1-minute readings several times over. */
+    public static final int CAPACITY = 64;
+    static final long RAPID_WINDOW_MS = 15 * 60_000L;
+    private static final double MGDL_TO_MMOL = 1 / 18.0182;
+
+    private final long[] timestamps = new long[CAPACITY];
+    private final int[] glucose = new int[CAPACITY];
+    /** Sequence number of the next reading; slot is seq % CAPACITY. */
+    private long next;
+    /** Sequence number of the newest reading at or before latest - 15 min, or -1. */
+    private long lag = -1;
+
+    /** Adds a reading; readings must arrive oldest first and anything not newer than the latest is ignored. */
+    public synchronized void add(long timestampMs, int mgdl) {
+        if (timestampMs == Long.MIN_VALUE) return;
+        if (next > 0 && timestampMs <= timestamps[(int) ((next - 1) % CAPACITY)]) return;
+        int slot = (int) (next % CAPACITY);
+        timestamps[slot] = timestampMs;
+        glucose[slot] = mgdl;
+        next++;
+
+        long oldest = Math.max(0, next - CAPACITY);
+        if (lag < oldest) lag = oldest - 1;
+        long cutoff = timestampMs - RAPID_WINDOW_MS;
+        while (lag + 1 < next && timestamps[(int) ((lag + 1) % CAPACITY)] <= cutoff) lag++;
+    }
+
+    public synchronized int size() {
+        return (int) Math.min(next, CAPACITY);
+    }
+
+    public synchronized long latestTimestamp() {
+        return next == 0 ? Long.MIN_VALUE : timestamps[(int) ((next - 1) % CAPACITY)];
+    }
+
+    public synchronized int latestGlucose() {
+        return next == 0 ? 0 : glucose[(int) ((next - 1) % CAPACITY)];
+    }
+
+    /** Alert for the latest reading as a {@code ReadingFrame.ALERT_*} code. */
+    public synchronized byte evaluate(AlertSettings s) {
+        if (next == 0 || s == null) return ReadingFrame.ALERT_NONE;
+        double value = display(latestGlucose(), s.mmol);
+
+        if (s.lowEnabled && value < s.low) return ReadingFrame.ALERT_LOW;
+        if (s.highEnabled && value > s.high) return ReadingFrame.ALERT_HIGH;
+
+        if (s.rapidCheck && lag >= Math.max(0, next - CAPACITY)) {
+            double diff = value - display(glucose[(int) (lag % CAPACITY)], s.mmol);
+            if (s.rapidRiseEnabled && diff >= s.rapidRiseThreshold) return ReadingFrame.ALERT_RAPID_RISE;
+            if (s.rapidFallEnabled && diff <= -s.rapidFallThreshold) return ReadingFrame.ALERT_RAPID_FALL;
+        }
+        return ReadingFrame.ALERT_NONE;
+    }
+
+    /** Spoken message for an alert, worded like the server's. Allocates, so only call when alerting. */
+    public synchronized String message(byte alertType, AlertSettings s) {
+        return AlertPhrase.message(alertType, s.userName, valueText(s));
+    }
+
+    /** The newest reading as spoken, in the user's unit. */
+    public synchronized String valueText(AlertSettings s) {
+        return formatValue(display(latestGlucose(), s.mmol), s.mmol);
+    }
+
+    /** mg/dL in the display unit, with mmol rounded to one decimal as the server does. */
+    static double display(int mgdl, boolean mmol) {
+        return mmol ? Math.round(mgdl * MGDL_TO_MMOL * 10) / 10.0 : mgdl;
+    }
+
+    private static String formatValue(double value, boolean mmol) {
+        if (!mmol || value == Math.rint(value)) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+}
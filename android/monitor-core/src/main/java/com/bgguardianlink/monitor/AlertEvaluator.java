@@ -0,0 +1,56 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * Decides whether the newest reading warrants an alert. With settings cached, the decision is made
+ * on the phone by {@link AlertEngine} and {@link LowForecaster}; without them it falls back to the
+ * alert flag the server put on the newest reading.
+ */
+public class AlertEvaluator {
+
+    private final AlertEngine engine = new AlertEngine();
+    private final LowForecaster forecaster = new LowForecaster();
+
+    /** Adds a reading; oldest first. */
+    public void add(long timestampMs, int mgdl) {
+        engine.add(timestampMs, mgdl);
+        forecaster.add(timestampMs, mgdl);
+    }
+
+    /** The alert for the newest reading, or null. {@code settings} may be null. */
+    public AlertPayload evaluate(ReadingFrame latest, AlertSettings settings) {
+        if (settings == null) {
+            return fromServer(latest);
+        }
+        byte alertType = engine.evaluate(settings);
+        int minutes = -1;
+        if (alertType == ReadingFrame.ALERT_NONE && settings.predictedLowEnabled) {
+            minutes = forecaster.minutesToLow(settings.lowMgdl());
+            if (minutes >= 0) {
+                alertType = ReadingFrame.ALERT_PREDICTED_LOW;
+            }
+        }
+        if (alertType == ReadingFrame.ALERT_NONE) {
+            return null;
+        }
+        return new AlertPayload(alertType, AlertPhrase.lead(alertType, settings.userName),
+                AlertPhrase.tail(alertType, engine.valueText(settings)), settings.volume, minutes);
+    }
+
+    /** The alert the server flagged on {@code latest}, or null. */
+    public static AlertPayload fromServer(ReadingFrame latest) {
+        if (!latest.alert) {
+            return null;
+        }
+        String msg = latest.alertMessage;
+        String message = (msg != null && !msg.isEmpty()) ? msg : "Urgent glucose alert!";
+        return new AlertPayload(latest.alertType, message, latest.alertVolume, -1);
+    }
+
+    public AlertEngine engine() {
+        return engine;
+    }
+
+    public LowForecaster forecaster() {
+        return forecaster;
+    }
+}
@@ -0,0 +1,60 @@
+package com.bgguardianlink.monitor;
+
+/** What to say and show when an alert fires. */
+public final class AlertPayload {
+
+    /** A {@code ReadingFrame.ALERT_*} code; {@link ReadingFrame#ALERT_NONE} when the server only sent a flag. */
+    public final byte type;
+    public final String message;
+    /**
+     * The message split for playback, see {@link AlertPhrase}; both null when the message came from the
+     * server and cannot be split.
+     */
+    public final String lead;
+    public final String tail;
+    public final float volume;
+    /** Minutes until the forecast crosses the low threshold, for predicted lows; otherwise -1. */
+    public final int minutesToLow;
+
+    public AlertPayload(byte type, String message, float volume, int minutesToLow) {
+        this(type, message, null, null, volume, minutesToLow);
+    }
+
+    public AlertPayload(byte type, String lead, String tail, float volume, int minutesToLow) {
+        this(type, lead + " " + tail, lead, tail, volume, minutesToLow);
+    }
+
+    /**
+     * Which of two alert decisions for one source to deliver when the older has not been delivered
+     * yet; null payloads are clears. The tracker already counts the older raise as fired, so it is
+     * only replaced by a decision at least as severe: a milder raise or a clear never hides a reading
+     * alert. A clear does replace a stale-data raise, since readings are back.
+     */
+    public static AlertPayload undelivered(AlertPayload older, AlertPayload newer) {
+        return severity(newer) >= severity(older) ? newer : older;
+    }
+
+    /** Higher for decisions that matter more: lows first, then stale data and clears. */
+    static int severity(AlertPayload payload) {
+        if (payload == null) return 0;
+        switch (payload.type) {
+            case ReadingFrame.ALERT_LOW: return 6;
+            case ReadingFrame.ALERT_PREDICTED_LOW: return 5;
+            case ReadingFrame.ALERT_RAPID_FALL: return 4;
+            case ReadingFrame.ALERT_HIGH: return 3;
+            case ReadingFrame.ALERT_RAPID_RISE: return 2;
+            // A bare server flag: its condition is unknown, but it is about the readings.
+            case ReadingFrame.ALERT_NONE: return 1;
+            default: return 0;
+        }
+    }
+
+    private AlertPayload(byte type, String message, String lead, String tail, float volume, int minutesToLow) {
+        this.type = type;
+        this.message = message;
+        this.lead = lead;
+        this.tail = tail;
+        this.volume = volume;
+        this.minutesToLow = minutesToLow;
+    }
+}
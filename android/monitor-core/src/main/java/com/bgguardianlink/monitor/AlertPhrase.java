@@ -0,0 +1,79 @@
+package com.bgguardianlink.monitor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Wording of the spoken alerts, split in two: a lead that depends only on the alert type and the
+ * user's name, so it can be rendered to audio ahead of time, and a short tail carrying the reading.
+ * {@code lead + " " + tail} is the full message.
+ */
+public final class AlertPhrase {
+
+    /** Alert types that have a lead worth rendering ahead of time. */
+    public static final byte[] TYPES = {
+            ReadingFrame.ALERT_LOW, ReadingFrame.ALERT_HIGH, ReadingFrame.ALERT_RAPID_RISE,
+            ReadingFrame.ALERT_RAPID_FALL, ReadingFrame.ALERT_PREDICTED_LOW, ReadingFrame.ALERT_STALE
+    };
+
+    private static final String CHECK = "Please check your glucose.";
+
+    private AlertPhrase() {
+    }
+
+    public static String lead(byte alertType, String userName) {
+        switch (alertType) {
+            case ReadingFrame.ALERT_LOW:
+                return "Hey " + userName + ", your blood sugar is low. Current reading is";
+            case ReadingFrame.ALERT_HIGH:
+                return "Hey " + userName + ", your blood sugar is high. Current reading is";
+            case ReadingFrame.ALERT_RAPID_RISE:
+                return "Hey " + userName + ", your blood sugar is rising quickly.";
+            case ReadingFrame.ALERT_RAPID_FALL:
+                return "Hey " + userName + ", your blood sugar is falling quickly.";
+            case ReadingFrame.ALERT_PREDICTED_LOW:
+                return "Hey " + userName + ", your blood sugar is heading low. Current reading is";
+            case ReadingFrame.ALERT_STALE:
+                return "Hey " + userName + ", no new glucose reading.";
+            default:
+                return "Hey " + userName + ", glucose alert.";
+        }
+    }
+
+    /** The part after the lead; {@code value} is the formatted reading and is only used by types that say it. */
+    public static String tail(byte alertType, String value) {
+        switch (alertType) {
+            case ReadingFrame.ALERT_LOW:
+            case ReadingFrame.ALERT_HIGH:
+            case ReadingFrame.ALERT_PREDICTED_LOW:
+                return value + ". " + CHECK;
+            case ReadingFrame.ALERT_STALE:
+                return "Please check your sensor.";
+            default:
+                return CHECK;
+        }
+    }
+
+    public static String message(byte alertType, String userName, String value) {
+        return lead(alertType, userName) + " " + tail(alertType, value);
+    }
+
+    /**
+     * File-name-safe key for a rendered phrase. Covers everything that changes the audio: the text,
+     * the TTS engine and its locale.
+     */
+    public static String cacheKey(String text, String engine, String locale) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-1");
+            byte[] digest = sha.digest((engine + '\n' + locale + '\n' + text).getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.bgguardianlink.monitor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Alert settings from /api/settings, with the same defaults the server applies in
+ * getAlertForLatestReading. Thresholds are in the display unit ({@link #mmol}).
+ */
+public final class AlertSettings {
+
+    public final boolean mmol;
+    public final double low;
+    public final double high;
+    public final boolean lowEnabled;
+    public final boolean highEnabled;
+    /** The server only looks at rapid change when one of the two is explicitly on. */
+    public final boolean rapidCheck;
+    public final boolean rapidRiseEnabled;
+    public final boolean rapidFallEnabled;
+    public final double rapidRiseThreshold;
+    public final double rapidFallThreshold;
+    /** Forecast lows on the phone; on with low alerts unless predicted_low_enabled is false. */
+    public final boolean predictedLowEnabled;
+    public final String userName;
+    public final float volume;
+    /** While an alert stays active and unacknowledged, it is repeated this often (alert_renotify_minutes). */
+    public final long renotifyMs;
+    /** No-data alerts (stale_data_enabled, on unless false) after stale_data_minutes without a reading. */
+    public final boolean staleEnabled;
+    public final long staleMs;
+
+    private AlertSettings(JSONObject o) {
+        mmol = !"mgdl".equals(o.optString("bg_unit", "mmol"));
+        low = o.optDouble("low_threshold", mmol ? 3.9 : 70);
+        high = o.optDouble("high_threshold", mmol ? 10 : 180);
+        lowEnabled = !isFalse(o, "low_alert_enabled");
+        highEnabled = !isFalse(o, "high_alert_enabled");
+        rapidCheck = o.optBoolean("rapid_rise_enabled", false) || o.optBoolean("rapid_fall_enabled", false);
+        rapidRiseEnabled = !isFalse(o, "rapid_rise_enabled");
+        rapidFallEnabled = !isFalse(o, "rapid_fall_enabled");
+        rapidRiseThreshold = o.optDouble("rapid_rise_threshold", 1.7);
+        rapidFallThreshold = o.optDouble("rapid_fall_threshold", 1.7);
+        predictedLowEnabled = lowEnabled && !isFalse(o, "predicted_low_enabled");
+        String name = o.optString("user_name", "User").trim();
+        userName = name.isEmpty() || "null".equals(name) ? "User" : name;
+        double vol = o.optDouble("alert_volume", 1.0);
+        volume = (float) (vol > 0 ? Math.min(1.0, vol) : 1.0);
+        double renotify = o.optDouble("alert_renotify_minutes", AlertTracker.DEFAULT_RENOTIFY_MS / 60_000.0);
+        renotifyMs = (long) (Math.max(1, renotify) * 60_000);
+        staleEnabled = !isFalse(o, "stale_data_enabled");
+        double stale = o.optDouble("stale_data_minutes", StaleWatchdog.DEFAULT_STALE_MS / 60_000.0);
+        staleMs = (long) (Math.max(5, stale) * 60_000);
+    }
+
+    /** The low threshold in mg/dL. */
+    public double lowMgdl() {
+        return mmol ? low * 18.0182 : low;
+    }
+
+    /** The high threshold in mg/dL. */
+    public double highMgdl() {
+        return mmol ? high * 18.0182 : high;
+    }
+
+    public static AlertSettings parse(String json) throws JSONException {
+        return new AlertSettings(new JSONObject(json));
+    }
+
+    private static boolean isFalse(JSONObject o, String key) {
+        return o.opt(key) instanceof Boolean && !o.optBoolean(key);
+    }
+}
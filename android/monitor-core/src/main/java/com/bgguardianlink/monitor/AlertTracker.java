@@ -0,0 +1,136 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * Per-alert-type state, so an excursion alerts once instead of on every heartbeat.
+ * <pre>
+ *   ARMED --condition--> FIRING --ack--> ACKNOWLEDGED
+ *                          |  \--snooze--> SNOOZED --expiry--> FIRING
+ *                          '-- condition clears past the hysteresis margin --> ARMED
+ * </pre>
+ * A firing alert repeats only after the re-notify interval or when it escalates (a low falling a
+ * further {@value #LOW_ESCALATION_MGDL} mg/dL, a high rising {@value #HIGH_ESCALATION_MGDL}).
+ * Escalation breaks through an acknowledgement or a snooze; nothing else does until the alert
+ * re-arms.
+ */
+public class AlertTracker {
+
+    public static final int ARMED = 0;
+    public static final int FIRING = 1;
+    public static final int ACKNOWLEDGED = 2;
+    public static final int SNOOZED = 3;
+
+    public static final long DEFAULT_RENOTIFY_MS = 15 * 60_000L;
+    static final int LOW_ESCALATION_MGDL = 10;
+    static final int HIGH_ESCALATION_MGDL = 40;
+    /** A low re-arms only once glucose is this far back above the threshold; a high, below it. */
+    static final int REARM_MARGIN_MGDL = 5;
+    /** Alerts without a threshold re-arm after this many readings without the condition. */
+    static final int REARM_CLEAR_READINGS = 2;
+
+    private static final int TYPES = ReadingFrame.ALERT_PREDICTED_LOW + 1;
+
+    private final int[] state = new int[TYPES];
+    private final long[] firedAt = new long[TYPES];
+    private final int[] firedMgdl = new int[TYPES];
+    private final long[] snoozedUntil = new long[TYPES];
+    private final int[] clearReadings = new int[TYPES];
+    private long suppressed;
+
+    /**
+     * Feeds one evaluation: {@code payload} is the alert the newest reading warrants (null for none),
+     * {@code mgdl} that reading. {@code settings} may be null. Returns true if the alert should sound
+     * and notify now.
+     */
+    public synchronized boolean onEvaluated(AlertPayload payload, int mgdl, long nowMs, AlertSettings settings) {
+        boolean fire = false;
+        for (int type = 0; type < TYPES; type++) {
+            if (payload != null && payload.type == type) {
+                fire = onPresent(type, mgdl, nowMs, settings);
+            } else if (state[type] != ARMED) {
+                onAbsent(type, mgdl, settings);
+            }
+        }
+        if (payload != null && !fire) suppressed++;
+        return fire;
+    }
+
+    private boolean onPresent(int type, int mgdl, long nowMs, AlertSettings settings) {
+        clearReadings[type] = 0;
+        long renotifyMs = settings != null ? settings.renotifyMs : DEFAULT_RENOTIFY_MS;
+        switch (state[type]) {
+            case ARMED:
+                return fire(type, mgdl, nowMs);
+            case FIRING:
+                if (escalated(type, mgdl) || nowMs - firedAt[type] >= renotifyMs) return fire(type, mgdl, nowMs);
+                return false;
+            case SNOOZED:
+                if (nowMs >= snoozedUntil[type] || escalated(type, mgdl)) return fire(type, mgdl, nowMs);
+                return false;
+            default:
+                if (escalated(type, mgdl)) return fire(type, mgdl, nowMs);
+                return false;
+        }
+    }
+
+    private void onAbsent(int type, int mgdl, AlertSettings settings) {
+        clearReadings[type]++;
+        boolean clear;
+        if (type == ReadingFrame.ALERT_LOW && settings != null) {
+            clear = mgdl >= settings.lowMgdl() + REARM_MARGIN_MGDL;
+        } else if (type == ReadingFrame.ALERT_HIGH && settings != null) {
+            clear = mgdl <= settings.highMgdl() - REARM_MARGIN_MGDL;
+        } else {
+            clear = clearReadings[type] >= REARM_CLEAR_READINGS;
+        }
+        if (clear) state[type] = ARMED;
+    }
+
+    private boolean fire(int type, int mgdl, long nowMs) {
+        state[type] = FIRING;
+        firedAt[type] = nowMs;
+        firedMgdl[type] = mgdl;
+        return true;
+    }
+
+    private boolean escalated(int type, int mgdl) {
+        switch (type) {
+            case ReadingFrame.ALERT_LOW:
+            case ReadingFrame.ALERT_PREDICTED_LOW:
+                return mgdl > 0 && mgdl <= firedMgdl[type] - LOW_ESCALATION_MGDL;
+            case ReadingFrame.ALERT_HIGH:
+                return mgdl >= firedMgdl[type] + HIGH_ESCALATION_MGDL;
+            default:
+                return false;
+        }
+    }
+
+    /** Silences {@code type} until it re-arms or escalates. */
+    public synchronized void acknowledge(int type) {
+        if (type < 0 || type >= TYPES || state[type] == ARMED) return;
+        state[type] = ACKNOWLEDGED;
+    }
+
+    /** Silences {@code type} for {@code durationMs}, unless it escalates. */
+    public synchronized void snooze(int type, long nowMs, long durationMs) {
+        if (type < 0 || type >= TYPES || state[type] == ARMED) return;
+        state[type] = SNOOZED;
+        snoozedUntil[type] = nowMs + durationMs;
+    }
+
+    public synchronized int state(int type) {
+        return state[type];
+    }
+
+    /** True while any alert is firing, acknowledged or snoozed. */
+    public synchronized boolean isActive() {
+        for (int s : state) {
+            if (s != ARMED) return true;
+        }
+        return false;
+    }
+
+    /** Evaluations that wanted an alert but were held back. */
+    public synchronized long suppressed() {
+        return suppressed;
+    }
+}
@@ -0,0 +1,77 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * Per-endpoint breaker. After {@link #FAILURE_THRESHOLD} failures in a row the endpoint is skipped
+ * for a cool-down; then a single trial request is let through, which closes the breaker on success
+ * or re-opens it for twice as long on failure (capped at {@link #MAX_OPEN_MS}).
+ */
+public final class CircuitBreaker {
+
+    public static final int CLOSED = 0;
+    public static final int OPEN = 1;
+    public static final int HALF_OPEN = 2;
+
+    static final int FAILURE_THRESHOLD = 3;
+    static final long BASE_OPEN_MS = 30_000;
+    static final long MAX_OPEN_MS = 5 * 60_000L;
+
+    private int state = CLOSED;
+    private int failures;
+    private long openMs = BASE_OPEN_MS;
+    private long openUntil;
+    private boolean trialInFlight;
+
+    /** Whether a request may go to this endpoint now. Moves an expired open breaker to half-open. */
+    public synchronized boolean allowRequest(long nowMs) {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (nowMs < openUntil) return false;
+                state = HALF_OPEN;
+                trialInFlight = true;
+                return true;
+            default:
+                if (trialInFlight) return false;
+                trialInFlight = true;
+                return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        state = CLOSED;
+        failures = 0;
+        openMs = BASE_OPEN_MS;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure(long nowMs) {
+        trialInFlight = false;
+        if (state == HALF_OPEN) {
+            openMs = Math.min(MAX_OPEN_MS, openMs * 2);
+            open(nowMs);
+        } else if (++failures >= FAILURE_THRESHOLD) {
+            open(nowMs);
+        }
+    }
+
+    /** A request let through was abandoned (lost a hedge race) without an outcome. */
+    public synchronized void onAbandoned() {
+        trialInFlight = false;
+    }
+
+    private void open(long nowMs) {
+        state = OPEN;
+        openUntil = nowMs + openMs;
+        failures = 0;
+    }
+
+    public synchronized int state() {
+        return state;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return state == CLOSED ? "closed" : state == OPEN ? "open" : "half-open";
+    }
+}
@@ -0,0 +1,86 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * What the native glance view shows before the web UI is up: the newest reading in the user's unit,
+ * its trend as an arrow, how old it is and the alert being raised, if any. Built from data the
+ * service already holds, as plain strings ready to set on views. Two glances are equal when they
+ * would look the same, which is what decides whether a notification or widget needs redrawing.
+ */
+public final class Glance {
+
+    /** The reading, or "--" when there is none. */
+    public final String value;
+    public final String unit;
+    /** An arrow, or "" when the trend is unknown. */
+    public final String trend;
+    /** "just now", "4 min ago", ...; "" when there is no reading. */
+    public final String age;
+    /** The alert being raised, or null. */
+    public final String alert;
+    /** True when the reading is older than the stale-data limit. */
+    public final boolean stale;
+
+    private Glance(String value, String unit, String trend, String age, String alert, boolean stale) {
+        this.value = value;
+        this.unit = unit;
+        this.trend = trend;
+        this.age = age;
+        this.alert = alert;
+        this.stale = stale;
+    }
+
+    /** {@code window}, {@code settings} and {@code alert} may each be null. */
+    public static Glance of(ReadingWindow window, AlertSettings settings, AlertPayload alert, long nowMs) {
+        boolean mmol = settings == null || settings.mmol;
+        String unit = mmol ? "mmol/L" : "mg/dL";
+        String message = alert != null ? alert.message : null;
+        if (window == null || window.size() == 0) {
+            return new Glance("--", unit, "", "", message, false);
+        }
+        double display = AlertEngine.display(window.glucoseAt(0), mmol);
+        String value = mmol ? String.format(Locale.US, "%.1f", display) : Long.toString((long) display);
+        long ageMs = Math.max(0, nowMs - window.timestampAt(0));
+        long staleMs = settings != null ? settings.staleMs : StaleWatchdog.DEFAULT_STALE_MS;
+        return new Glance(value, unit, arrow(window.trendAt(0)), age(ageMs), message, ageMs >= staleMs);
+    }
+
+    /** The unit and the reading's age, as one line under the value. */
+    public String detail() {
+        return age.isEmpty() ? unit : unit + " \u00b7 " + age;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Glance)) return false;
+        Glance g = (Glance) o;
+        return stale == g.stale && value.equals(g.value) && unit.equals(g.unit) && trend.equals(g.trend)
+                && age.equals(g.age) && Objects.equals(alert, g.alert);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(value, unit, trend, age, alert, stale);
+    }
+
+    static String arrow(byte trend) {
+        switch (trend) {
+            case ReadingFrame.TREND_DOWN_DOUBLE: return "\u21ca";
+            case ReadingFrame.TREND_DOWN: return "\u2193";
+            case ReadingFrame.TREND_FLAT: return "\u2192";
+            case ReadingFrame.TREND_UP: return "\u2191";
+            case ReadingFrame.TREND_UP_DOUBLE: return "\u21c8";
+            default: return "";
+        }
+    }
+
+    static String age(long ageMs) {
+        long minutes = ageMs / 60_000;
+        if (minutes < 1) return "just now";
+        if (minutes < 120) return minutes + " min ago";
+        return (minutes / 60) + " h ago";
+    }
+}
@@ -0,0 +1,71 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-memory log-linear histogram of non-negative longs. Each power of two is split into eight
+ * buckets, so any reported percentile is within 12.5% of the true value; the whole range of a long
+ * fits in under 500 counters, however many samples are recorded.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB = 1 << SUB_BITS;
+    static final int BUCKETS = (63 - SUB_BITS + 1) * SUB;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    public synchronized void record(long value) {
+        if (value < 0) return;
+        counts[index(value)]++;
+        count++;
+        sum += value;
+        if (value > max) max = value;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long max() {
+        return max;
+    }
+
+    public synchronized double mean() {
+        return count == 0 ? 0 : sum / (double) count;
+    }
+
+    /** Upper bound of the bucket holding the p-th percentile (0-100), capped at the max; -1 when empty. */
+    public synchronized long percentile(double p) {
+        if (count == 0) return -1;
+        long rank = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return Math.min(max, lowerBound(i + 1) - 1);
+        }
+        return max;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(counts, 0);
+        count = sum = max = 0;
+    }
+
+    static int index(long value) {
+        if (value < SUB) return (int) value;
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (magnitude - SUB_BITS)) & (SUB - 1));
+        return (magnitude - SUB_BITS + 1) * SUB + sub;
+    }
+
+    static long lowerBound(int index) {
+        if (index < SUB) return index;
+        if (index >= BUCKETS) return Long.MAX_VALUE;
+        int magnitude = index / SUB - 1 + SUB_BITS;
+        return (long) (SUB + index % SUB) << (magnitude - SUB_BITS);
+    }
+}
@@ -0,0 +1,41 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the last {@link #CAPACITY} latency samples (ms) in a fixed ring and reports percentiles.
+ */
+public class LatencyRecorder {
+
+    static final int CAPACITY = 128;
+
+    private final long[] samples = new long[CAPACITY];
+    private final long[] sorted = new long[CAPACITY];
+    /** Samples recorded since start; the ring slot is {@code count % CAPACITY}. */
+    private long count;
+
+    public synchronized void record(long latencyMs) {
+        if (latencyMs < 0) return;
+        samples[(int) (count % CAPACITY)] = latencyMs;
+        count++;
+    }
+
+    /** Percentile (0-100) over the retained samples, or -1 if there are none. */
+    public synchronized long percentile(int p) {
+        int n = (int) Math.min(count, CAPACITY);
+        if (n == 0) return -1;
+        System.arraycopy(samples, 0, sorted, 0, n);
+        Arrays.sort(sorted, 0, n);
+        int idx = (int) Math.ceil(p / 100.0 * n) - 1;
+        return sorted[Math.max(0, Math.min(n - 1, idx))];
+    }
+
+    public long median() {
+        return percentile(50);
+    }
+
+    /** Total samples recorded since start, including ones that have rolled out of the ring. */
+    public synchronized long total() {
+        return count;
+    }
+}
@@ -0,0 +1,86 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * Streaming glucose trend model for predictive low alerts. Keeps exponentially weighted sums for a
+ * linear regression of glucose over time, re-centred on the latest reading, so each reading is an
+ * O(1) update and memory stays constant however long the history.
+ */
+public class LowForecaster {
+
+    /** Time constant of the exponential weighting; older readings fade with exp(-age / tau). */
+    static final double TAU_MIN = 12.0;
+    /** A gap longer than this restarts the model. */
+    static final double MAX_GAP_MIN = 30.0;
+    /** Minimum effective number of readings before forecasting. */
+    static final double MIN_WEIGHT = 2.5;
+    /** Slope (mg/dL per minute) the fall must at least have to call a predicted low. */
+    static final double MIN_FALL_RATE = -0.3;
+
+    /** How far ahead a projected crossing counts as a predicted low. */
+    public static final int MAX_HORIZON_MIN = 30;
+
+    // Weighted sums over x = minutes relative to the latest reading, y = mg/dL.
+    private double s0, sx, sxx, sy, sxy;
+    private long latestMs = Long.MIN_VALUE;
+    private int latestGlucose;
+
+    public synchronized void add(long timestampMs, int mgdl) {
+        if (timestampMs == Long.MIN_VALUE) return;
+        if (latestMs != Long.MIN_VALUE) {
+            if (timestampMs <= latestMs) return;
+            double dt = (timestampMs - latestMs) / 60_000.0;
+            if (dt > MAX_GAP_MIN) {
+                reset();
+            } else {
+                double decay = Math.exp(-dt / TAU_MIN);
+                // Shift the origin forward by dt, then decay.
+                sxx = (sxx - 2 * dt * sx + dt * dt * s0) * decay;
+                sxy = (sxy - dt * sy) * decay;
+                sx = (sx - dt * s0) * decay;
+                sy *= decay;
+                s0 *= decay;
+            }
+        }
+        s0 += 1;
+        sy += mgdl;
+        latestMs = timestampMs;
+        latestGlucose = mgdl;
+    }
+
+    public synchronized void reset() {
+        s0 = sx = sxx = sy = sxy = 0;
+        latestMs = Long.MIN_VALUE;
+    }
+
+    /** Fitted rate of change in mg/dL per minute, or NaN when there is not enough data. */
+    public synchronized double slope() {
+        double det = s0 * sxx - sx * sx;
+        if (s0 < MIN_WEIGHT || det <= 1e-9) return Double.NaN;
+        return (s0 * sxy - sx * sy) / det;
+    }
+
+    /** Projected mg/dL {@code minutesAhead} after the latest reading, or NaN when not enough data. */
+    public synchronized double forecast(int minutesAhead) {
+        double b = slope();
+        if (Double.isNaN(b)) return Double.NaN;
+        double a = (sy - b * sx) / s0;
+        return a + b * minutesAhead;
+    }
+
+    /**
+     * Minutes until the projection crosses {@code lowMgdl} within {@link #MAX_HORIZON_MIN}, or -1.
+     * Only fires while still above the threshold and falling at least {@link #MIN_FALL_RATE}.
+     */
+    public synchronized int minutesToLow(double lowMgdl) {
+        if (latestMs == Long.MIN_VALUE || latestGlucose < lowMgdl) return -1;
+        double b = slope();
+        if (Double.isNaN(b) || b > MIN_FALL_RATE) return -1;
+        double a = (sy - b * sx) / s0;
+        if (a + b * MAX_HORIZON_MIN >= lowMgdl) return -1;
+        return (int) Math.max(0, Math.round((lowMgdl - a) / b));
+    }
+
+    public synchronized long latestTimestamp() {
+        return latestMs;
+    }
+}
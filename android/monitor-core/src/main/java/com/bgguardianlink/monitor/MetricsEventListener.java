@@ -0,0 +1,76 @@
+package com.bgguardianlink.monitor;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Request;
+
+/**
+ * Feeds OkHttp call phases into {@link MonitorMetrics}: DNS, connect (with TLS), time to first byte
+ * and body download. One instance per call, so the timestamps need no synchronization.
+ */
+public class MetricsEventListener extends EventListener {
+
+    public static EventListener.Factory factory(MonitorMetrics metrics) {
+        return call -> new MetricsEventListener(metrics);
+    }
+
+    private final MonitorMetrics metrics;
+    private long dnsStart;
+    private long connectStart;
+    private long requestSent;
+    private long bodyStart;
+
+    MetricsEventListener(MonitorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStart = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        metrics.recordMicros(MonitorMetrics.DNS, micros(dnsStart));
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStart = System.nanoTime();
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        metrics.recordMicros(MonitorMetrics.CONNECT, micros(connectStart));
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestSent = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersStart(Call call) {
+        if (requestSent != 0) metrics.recordMicros(MonitorMetrics.TTFB, micros(requestSent));
+    }
+
+    @Override
+    public void responseBodyStart(Call call) {
+        bodyStart = System.nanoTime();
+    }
+
+    @Override
+    public void responseBodyEnd(Call call, long byteCount) {
+        if (bodyStart != 0) metrics.recordMicros(MonitorMetrics.DOWNLOAD, micros(bodyStart));
+    }
+
+    private static long micros(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bgguardianlink.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * In-process publish/subscribe channel for one event type. Subscribers are called on the
+ * publishing thread and must hand off anything slow. A new subscriber is given the latest event
+ * straight away, so it never has to wait for the next publish to know the current state.
+ */
+public final class MonitorBus<T> {
+
+    private final List<Consumer<? super T>> subscribers = new ArrayList<>();
+    private T latest;
+
+    /** Registers {@code subscriber}, delivers the current snapshot if any, and returns an unsubscribe action. */
+    public synchronized Runnable subscribe(Consumer<? super T> subscriber) {
+        subscribers.add(subscriber);
+        if (latest != null) subscriber.accept(latest);
+        return () -> unsubscribe(subscriber);
+    }
+
+    /** Delivers {@code event} to every subscriber in order; it becomes the snapshot for later ones. */
+    public synchronized void publish(T event) {
+        latest = event;
+        for (int i = 0; i < subscribers.size(); i++) {
+            subscribers.get(i).accept(event);
+        }
+    }
+
+    public synchronized T snapshot() {
+        return latest;
+    }
+
+    public synchronized int subscriberCount() {
+        return subscribers.size();
+    }
+
+    private synchronized void unsubscribe(Consumer<? super T> subscriber) {
+        subscribers.remove(subscriber);
+    }
+}
@@ -0,0 +1,110 @@
+package com.bgguardianlink.monitor;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Per-stage timings of the monitor pipeline, each in a fixed-memory {@link Histogram} of
+ * microseconds. Synchronous stages are also bracketed with trace sections so they show up in
+ * Perfetto / systrace next to the rest of the system.
+ */
+public final class MonitorMetrics {
+
+    /** Opens and closes a trace section on the calling thread. */
+    public interface Tracer {
+        void begin(String section);
+
+        void end();
+    }
+
+    public static final int HEARTBEAT = 0;
+    public static final int DNS = 1;
+    /** TCP connect plus TLS handshake. */
+    public static final int CONNECT = 2;
+    /** Request sent to first response header byte. */
+    public static final int TTFB = 3;
+    /** First to last body byte. The body is parsed as it streams in, so this includes parsing. */
+    public static final int DOWNLOAD = 4;
+    /** Time inside the streaming parser for one response or pushed event. */
+    public static final int PARSE = 5;
+    public static final int EVALUATE = 6;
+    /** tts.speak() to the engine starting the utterance. */
+    public static final int TTS_START = 7;
+    public static final int NOTIFY = 8;
+    /** Reading timestamp to the alarm being raised on the phone. */
+    public static final int READING_TO_ALARM = 9;
+    /** How late a scheduled heartbeat started; its count is the number of scheduled wakeups. */
+    public static final int WAKEUP_DRIFT = 10;
+    /** Launch to the native glance view's first frame; cold launches count from process start. */
+    public static final int GLANCE_SHOWN = 11;
+    /** Launch to the web UI reporting ready, counted like {@link #GLANCE_SHOWN}. */
+    public static final int UI_READY = 12;
+
+    public static final String[] NAMES = {
+            "heartbeat", "dns", "connect", "ttfb", "download", "parse", "evaluate", "tts_start", "notify",
+            "reading_to_alarm", "wakeup_drift", "glance_shown", "ui_ready",
+    };
+
+    /** Trace section names, built once so {@link #begin} allocates nothing. */
+    static final String[] SECTIONS = new String[NAMES.length];
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) SECTIONS[i] = "BGG:" + NAMES[i];
+    }
+
+    private static final Tracer NO_TRACE = new Tracer() {
+        @Override
+        public void begin(String section) {
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    private final Histogram[] histograms = new Histogram[NAMES.length];
+    private final Tracer tracer;
+
+    public MonitorMetrics(Tracer tracer) {
+        this.tracer = tracer == null ? NO_TRACE : tracer;
+        for (int i = 0; i < histograms.length; i++) histograms[i] = new Histogram();
+    }
+
+    /** Starts timing a synchronous stage and opens its trace section. Pass the result to {@link #end}. */
+    public long begin(int stage) {
+        tracer.begin(SECTIONS[stage]);
+        return System.nanoTime();
+    }
+
+    public void end(int stage, long startNanos) {
+        histograms[stage].record((System.nanoTime() - startNanos) / 1000);
+        tracer.end();
+    }
+
+    /** Records a stage measured elsewhere (callbacks, other threads). */
+    public void recordMicros(int stage, long micros) {
+        histograms[stage].record(micros);
+    }
+
+    public Histogram histogram(int stage) {
+        return histograms[stage];
+    }
+
+    public void reset() {
+        for (Histogram h : histograms) h.reset();
+    }
+
+    /** One line per stage with samples: count, mean, p50/p90/p99 and max in ms. */
+    public void dump(PrintWriter out) {
+        out.println("Monitor pipeline timings (ms)");
+        out.println(String.format(Locale.US, "  %-17s %7s %9s %9s %9s %9s %9s",
+                "stage", "count", "mean", "p50", "p90", "p99", "max"));
+        for (int i = 0; i < histograms.length; i++) {
+            Histogram h = histograms[i];
+            if (h.count() == 0) continue;
+            out.println(String.format(Locale.US, "  %-17s %7d %9.1f %9.1f %9.1f %9.1f %9.1f",
+                    NAMES[i], h.count(), h.mean() / 1000, h.percentile(50) / 1000.0,
+                    h.percentile(90) / 1000.0, h.percentile(99) / 1000.0, h.max() / 1000.0));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.bgguardianlink.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * One monitored person: where their readings come from and everything the service keeps for them
+ * (reading window, poll cadence, alert history and state, cached settings). Sources are independent;
+ * the service polls each on its own schedule.
+ *
+ * <p>A source's readings are merged on the fetch stage under the sync's monitor, so a poll and a
+ * pushed event for the same person never interleave; evaluation and alerting run on stages of their
+ * own, in the order the batches were fetched.
+ */
+public final class MonitorSource {
+
+    public static final String DEFAULT_ID = "default";
+
+    /**
+     * Where a source's API lives; persisted as a JSON array of {@code {id, name, url, replicas}}, where
+     * the optional replicas are API roots serving the same data.
+     */
+    public static final class Config {
+        private static final Pattern ID = Pattern.compile("[A-Za-z0-9_-]{1,40}");
+
+        public final String id;
+        public final String name;
+        /** The API root; readings are at {@code apiBase + "/readings"}. */
+        public final String apiBase;
+        /** {@link #apiBase} followed by its replicas, in order of preference. */
+        public final List<String> endpoints;
+
+        public Config(String id, String name, String apiBase) {
+            this(id, name, Collections.singletonList(apiBase));
+        }
+
+        public Config(String id, String name, List<String> endpoints) {
+            List<String> trimmed = new ArrayList<>(endpoints.size());
+            for (String e : endpoints) trimmed.add(e.endsWith("/") ? e.substring(0, e.length() - 1) : e);
+            this.id = id;
+            this.name = name;
+            this.apiBase = trimmed.get(0);
+            this.endpoints = Collections.unmodifiableList(trimmed);
+        }
+
+        /** Parses and validates a source list; ids must be unique and URLs http(s). */
+        public static List<Config> parseList(String json) throws JSONException {
+            JSONArray array = new JSONArray(json);
+            List<Config> configs = new ArrayList<>(array.length());
+            Set<String> ids = new HashSet<>();
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject o = array.getJSONObject(i);
+                String id = o.getString("id");
+                if (!ID.matcher(id).matches()) throw new JSONException("Bad source id: " + id);
+                if (!ids.add(id)) throw new JSONException("Duplicate source id: " + id);
+                List<String> urls = new ArrayList<>();
+                urls.add(o.getString("url"));
+                JSONArray replicas = o.optJSONArray("replicas");
+                for (int r = 0; replicas != null && r < replicas.length(); r++) urls.add(replicas.getString(r));
+                for (String url : urls) {
+                    if (HttpUrl.parse(url) == null) throw new JSONException("Bad source url: " + url);
+                }
+                configs.add(new Config(id, o.optString("name", id), urls));
+            }
+            return configs;
+        }
+
+        public static String toJson(List<Config> configs) {
+            JSONArray array = new JSONArray();
+            for (Config c : configs) {
+                JSONObject o = new JSONObject();
+                try {
+                    o.put("id", c.id).put("name", c.name).put("url", c.apiBase);
+                    if (c.endpoints.size() > 1) {
+                        o.put("replicas", new JSONArray(c.endpoints.subList(1, c.endpoints.size())));
+                    }
+                } catch (JSONException e) {
+                    throw new IllegalStateException(e);
+                }
+                array.put(o);
+            }
+            return array.toString();
+        }
+
+        boolean sameEndpoint(Config other) {
+            return id.equals(other.id) && endpoints.equals(other.endpoints);
+        }
+    }
+
+    public final Config config;
+    public final ReadingSync sync;
+    /**
+     * Held across a fetch and the bookkeeping that follows it, so each fetch's new readings are
+     * copied out before the next fetch adds more. Readers of {@link #sync} never take it.
+     */
+    public final Object fetchLock = new Object();
+    /** Fetches from the source's replicas; null when built without a client. */
+    public final ReplicaCaller caller;
+    public final PollScheduler cadence = new PollScheduler();
+    public final AlertEvaluator evaluator = new AlertEvaluator();
+    public final AlertTracker tracker = new AlertTracker();
+    public final StaleWatchdog watchdog = new StaleWatchdog();
+    /** Rolled-up readings for range queries; filled from the journal and then by the evaluate stage. */
+    public final ReadingHistory history = new ReadingHistory();
+
+    /** Null until first fetched from {@link #settingsUrl()}. */
+    public volatile AlertSettings settings;
+    public volatile long settingsFetchedAt;
+    /** Monotonic time (ms) of the last successful poll or pushed update; 0 if none yet. */
+    public volatile long fetchedAt;
+    /** Monotonic time (ms) this source is next due for a poll. */
+    public volatile long dueAt;
+    /** Set while a poll of this source runs; ticks pass over the source until it returns. */
+    public final AtomicBoolean polling = new AtomicBoolean();
+    /** The alert whose notification is up, or null. */
+    public volatile AlertPayload shownAlert;
+    /** Set by the service once the source's journal is open; null if unavailable. */
+    public volatile ReadingJournal journal;
+
+    public MonitorSource(Config config, OkHttpClient client) {
+        this.config = config;
+        this.sync = new ReadingSync(client, readingsUrl());
+        this.caller = client != null ? new ReplicaCaller(client, config.endpoints) : null;
+        sync.setCaller(caller);
+    }
+
+    public String id() {
+        return config.id;
+    }
+
+    public String readingsUrl() {
+        return config.apiBase + "/readings";
+    }
+
+    public String settingsUrl() {
+        return config.apiBase + "/settings";
+    }
+
+    /** True if {@code other} points at the same person and endpoint, so this source's state can be kept. */
+    public boolean matches(Config other) {
+        return config.sameEndpoint(other);
+    }
+}
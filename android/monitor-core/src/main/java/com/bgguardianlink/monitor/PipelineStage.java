@@ -0,0 +1,164 @@
+package com.bgguardianlink.monitor;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * One stage of the monitor pipeline: a queue drained by a thread of its own. Stages hand work on with
+ * {@link #offer}, which never blocks and never drops: an item whose key (its source) already has one
+ * waiting is merged into it, so a stage stuck on one item backs up nothing else. The queue is bounded
+ * by its keys rather than by a count: it holds at most one item per source, whatever the rate of
+ * offers. {@code capacity} is how many waiting keys are expected; past it an item is still queued,
+ * since dropping it could lose an alert, and counted as an overflow.
+ */
+public final class PipelineStage<T> {
+
+    private final String name;
+    private final int capacity;
+    private final Function<T, Object> key;
+    private final BinaryOperator<T> merge;
+    private final Consumer<T> handler;
+    private final Thread thread;
+    // Keys in arrival order, each with its one waiting item, and Barriers; guarded by this.
+    private final ArrayDeque<Object> order = new ArrayDeque<>();
+    private final Map<Object, T> waiting = new HashMap<>();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    /** System.nanoTime the current item was taken up, 0 while idle. */
+    private volatile long busySince;
+    private volatile boolean stopped;
+
+    /**
+     * {@code merge(older, newer)} combines two items with the same {@code key}. {@code handler} runs on
+     * the stage's thread; an exception it throws is counted and the stage goes on.
+     */
+    public PipelineStage(String name, int capacity, Function<T, Object> key, BinaryOperator<T> merge, Consumer<T> handler) {
+        this.name = name;
+        this.capacity = capacity;
+        this.key = key;
+        this.merge = merge;
+        this.handler = handler;
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+    }
+
+    /** Queues {@code item}, or merges it into the item already waiting with its key. False once stopped. */
+    public boolean offer(T item) {
+        if (stopped) return false;
+        Object k = key.apply(item);
+        synchronized (this) {
+            T older = waiting.get(k);
+            if (older != null) {
+                waiting.put(k, merge.apply(older, item));
+                merged.incrementAndGet();
+                return true;
+            }
+            waiting.put(k, item);
+            order.add(k);
+            if (waiting.size() > capacity) overflowed.incrementAndGet();
+            notifyAll();
+        }
+        return true;
+    }
+
+    /**
+     * Runs {@code action} on the stage's thread once every item queued before this call has been
+     * handled. False once stopped, in which case it never runs.
+     */
+    public boolean afterQueued(Runnable action) {
+        if (stopped) return false;
+        synchronized (this) {
+            order.add(new Barrier(action));
+            notifyAll();
+        }
+        return true;
+    }
+
+    public void stop() {
+        stopped = true;
+        thread.interrupt();
+        synchronized (this) {
+            order.clear();
+            waiting.clear();
+        }
+    }
+
+    private void run() {
+        while (!stopped) {
+            Object next;
+            try {
+                next = take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            busySince = System.nanoTime();
+            try {
+                if (next instanceof Barrier) {
+                    ((Barrier) next).action.run();
+                } else {
+                    @SuppressWarnings("unchecked") T item = (T) next;
+                    handler.accept(item);
+                }
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+            } finally {
+                busySince = 0;
+            }
+        }
+    }
+
+    /** The next waiting item, or a {@link Barrier}. */
+    private synchronized Object take() throws InterruptedException {
+        while (order.isEmpty()) wait();
+        Object k = order.poll();
+        return k instanceof Barrier ? k : waiting.remove(k);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public synchronized int depth() {
+        return order.size();
+    }
+
+    /** Items merged into one already waiting with the same key. */
+    public long merged() {
+        return merged.get();
+    }
+
+    /** Items queued while more than {@code capacity} keys were waiting. */
+    public long overflowed() {
+        return overflowed.get();
+    }
+
+    /** Items whose handler threw. */
+    public long failed() {
+        return failed.get();
+    }
+
+    /** How long the item being handled has taken so far, or 0 while idle. */
+    public long busyMs() {
+        long since = busySince;
+        return since == 0 ? 0 : (System.nanoTime() - since) / 1_000_000;
+    }
+
+    /** An {@link #afterQueued} action in the queue; never merged, as it is its own key. */
+    private static final class Barrier {
+        final Runnable action;
+
+        Barrier(Runnable action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.bgguardianlink.monitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Groups the polls of many sources into shared wakeups. When one source falls due, every other
+ * source due within {@link #COALESCE_WINDOW_MS} is polled with it, so the radio powers up once per
+ * group instead of once per source. Within a group the requests are started
+ * {@link #STAGGER_MS} apart, which spreads TLS handshakes and server load without leaving the
+ * radio's active window. A source whose previous poll is still running is left out until it
+ * returns, so one slow endpoint holds back no other source.
+ */
+public final class PollPlanner {
+
+    public static final long COALESCE_WINDOW_MS = 30_000;
+    public static final long STAGGER_MS = 150;
+
+    private PollPlanner() {
+    }
+
+    /** Idle sources to poll at {@code nowMs}: those already due and those due within the window. */
+    public static List<MonitorSource> due(List<MonitorSource> sources, long nowMs) {
+        List<MonitorSource> due = new ArrayList<>();
+        for (MonitorSource source : sources) {
+            if (!source.polling.get() && source.dueAt <= nowMs + COALESCE_WINDOW_MS) due.add(source);
+        }
+        return due;
+    }
+
+    /** Delay from {@code nowMs} to the next wakeup, 0 if an idle source is already due. */
+    public static long nextDelay(List<MonitorSource> sources, long nowMs) {
+        long next = Long.MAX_VALUE;
+        for (MonitorSource source : sources) {
+            if (!source.polling.get()) next = Math.min(next, source.dueAt);
+        }
+        if (next == Long.MAX_VALUE) return PollScheduler.DEFAULT_CADENCE_MS;
+        return Math.max(0, next - nowMs);
+    }
+}
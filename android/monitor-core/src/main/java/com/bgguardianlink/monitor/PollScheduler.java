@@ -0,0 +1,197 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Arrays;
+
+/**
+ * Decides when the next poll should run. Learns the sensor cadence and upload lag from recent
+ * readings and aims each poll just after the next reading should have reached the server, instead
+ * of a fixed 5-minute tick that can leave a reading unseen for most of a cycle.
+ */
+public class PollScheduler {
+
+    public static final long DEFAULT_CADENCE_MS = 5 * 60_000L;
+    static final long MIN_CADENCE_MS = 60_000L;
+    static final long MAX_CADENCE_MS = 15 * 60_000L;
+
+    /** Slack after the predicted arrival before polling. */
+    static final long GRACE_MS = 15_000L;
+    static final long URGENT_GRACE_MS = 5_000L;
+    /** First retry when the expected reading has not landed; doubles up to the cap. */
+    static final long RETRY_MS = 20_000L;
+    static final long URGENT_RETRY_MS = 10_000L;
+    static final long RETRY_CAP_MS = 2 * 60_000L;
+    static final long URGENT_RETRY_CAP_MS = 60_000L;
+    static final long MIN_DELAY_MS = 5_000L;
+    /** How much earlier than the learned upload lag to sample when a poll finds the reading at once. */
+    static final long LAG_PROBE_MS = 5_000L;
+
+    // mg/dL; the server defaults (3.9 / 10 mmol/L), used until the user's settings are known.
+    static final int LOW_MGDL = 70;
+    static final int HIGH_MGDL = 180;
+    static final int NEAR_THRESHOLD_MGDL = 20;
+    /** mg/dL per minute that counts as moving fast. */
+    static final double FAST_RATE = 2.0;
+
+    /** Readings found at the first poll in a row before the probe step starts doubling. */
+    static final int PROBE_STREAK = 3;
+
+    private static final int HISTORY = 8;
+
+    private final long[] readingTimes = new long[HISTORY];
+    private int count;
+    private final long[] intervals = new long[HISTORY - 1];
+    private long uploadLagMs = 0;
+    /** Readings in a row found at the first poll since the lag was last learned. */
+    private int probes;
+
+    private int lastGlucose;
+    private byte lastTrend = ReadingFrame.TREND_UNKNOWN;
+    private double ratePerMin;
+    private int misses;
+    /** When a poll last came back without a new reading, or {@link Long#MIN_VALUE}. */
+    private long lastEmptyAt = Long.MIN_VALUE;
+
+    /** Feeds a newly seen reading. Call oldest first. */
+    public synchronized void onReading(long readingTimeMs, long seenAtMs, int glucose, byte trend) {
+        if (!record(readingTimeMs, glucose, trend)) return;
+
+        // Upload lag only means something for readings seen close to when they were taken.
+        long lag = seenAtMs - readingTimeMs;
+        if (lag >= 0 && lag < cadence()) {
+            if (lastEmptyAt > readingTimeMs && lastEmptyAt < seenAtMs) {
+                // Not there at the last empty poll, there now: it landed in between.
+                learnLag((lastEmptyAt - readingTimeMs + lag) / 2);
+            } else if (uploadLagMs != 0 && lag > uploadLagMs) {
+                // Found at the first try, which only bounds the lag from above. Taking it as the lag
+                // would add each poll's grace to the next and drift the schedule a cycle late;
+                // instead aim a little earlier each time, until a poll comes back empty. If readings
+                // keep turning up at once the estimate is well above the real lag (a slow upload
+                // learned once), so past a short streak the step doubles on each find and the
+                // excess is worked off within the hour rather than over many hours.
+                if (probes < PROBE_STREAK) {
+                    uploadLagMs = (uploadLagMs * 3 + Math.max(0, uploadLagMs - LAG_PROBE_MS)) / 4;
+                } else {
+                    uploadLagMs = Math.max(0, uploadLagMs - (LAG_PROBE_MS << Math.min(probes - PROBE_STREAK, 6)));
+                }
+                probes++;
+            } else {
+                learnLag(lag);
+            }
+        }
+    }
+
+    private void learnLag(long sample) {
+        uploadLagMs = uploadLagMs == 0 ? sample : (uploadLagMs * 3 + sample) / 4;
+        probes = 0;
+    }
+
+    /**
+     * Feeds a reading that was not seen as it arrived, from the journal or a backfill: it teaches the
+     * cadence and the trend but not the upload lag, since its age says nothing about when it landed.
+     * Call oldest first.
+     */
+    public synchronized void onPastReading(long readingTimeMs, int glucose, byte trend) {
+        record(readingTimeMs, glucose, trend);
+    }
+
+    /** Adds a reading to the interval history; false if it is unparseable or not newer than the last. */
+    private boolean record(long readingTimeMs, int glucose, byte trend) {
+        if (readingTimeMs == Long.MIN_VALUE) return false;
+        if (count > 0) {
+            long prev = readingTimes[(count - 1) % HISTORY];
+            if (readingTimeMs <= prev) return false;
+            long minutes = Math.max(1, (readingTimeMs - prev) / 60_000L);
+            ratePerMin = (glucose - lastGlucose) / (double) minutes;
+        }
+        readingTimes[count % HISTORY] = readingTimeMs;
+        count++;
+        lastGlucose = glucose;
+        lastTrend = trend;
+        misses = 0;
+        return true;
+    }
+
+    /** Median interval between recent readings, clamped to a sane range. */
+    public synchronized long cadence() {
+        int n = Math.min(count, HISTORY) - 1;
+        if (n < 1) return DEFAULT_CADENCE_MS;
+        for (int i = 0; i < n; i++) {
+            long newer = readingTimes[(count - 1 - i) % HISTORY];
+            long older = readingTimes[(count - 2 - i) % HISTORY];
+            intervals[i] = newer - older;
+        }
+        Arrays.sort(intervals, 0, n);
+        long median = intervals[n / 2];
+        return Math.max(MIN_CADENCE_MS, Math.min(MAX_CADENCE_MS, median));
+    }
+
+    /** When the next reading should be on the server, or {@link Long#MIN_VALUE} if nothing seen yet. */
+    public synchronized long expectedArrival() {
+        if (count == 0) return Long.MIN_VALUE;
+        return readingTimes[(count - 1) % HISTORY] + cadence() + uploadLagMs;
+    }
+
+    /** As {@link #isUrgent(AlertSettings)} with the default thresholds. */
+    public boolean isUrgent() {
+        return isUrgent(null);
+    }
+
+    /**
+     * True when glucose is near one of the user's thresholds or moving fast, so the schedule should
+     * be tighter. {@code settings} may be null before they are fetched.
+     */
+    public synchronized boolean isUrgent(AlertSettings settings) {
+        if (count == 0) return false;
+        double low = settings != null ? settings.lowMgdl() : LOW_MGDL;
+        double high = settings != null ? settings.highMgdl() : HIGH_MGDL;
+        boolean nearThreshold = lastGlucose < low + NEAR_THRESHOLD_MGDL
+                || lastGlucose > high - NEAR_THRESHOLD_MGDL;
+        boolean fast = Math.abs(ratePerMin) >= FAST_RATE
+                || lastTrend == ReadingFrame.TREND_DOWN_DOUBLE
+                || lastTrend == ReadingFrame.TREND_UP_DOUBLE;
+        return nearThreshold || fast;
+    }
+
+    /** As {@link #nextDelay(long, boolean, AlertSettings)} with the default thresholds. */
+    public long nextDelay(long nowMs, boolean gotNewReading) {
+        return nextDelay(nowMs, gotNewReading, null);
+    }
+
+    /**
+     * Delay until the next poll. {@code gotNewReading} is whether the poll that just finished
+     * brought a reading; if not and the reading is overdue, retry soon with backoff. The source's
+     * {@code settings} (may be null) decide which glucose counts as near a threshold.
+     */
+    public synchronized long nextDelay(long nowMs, boolean gotNewReading, AlertSettings settings) {
+        if (!gotNewReading) lastEmptyAt = nowMs;
+        long expected = expectedArrival();
+        if (expected == Long.MIN_VALUE) return DEFAULT_CADENCE_MS;
+
+        boolean urgent = isUrgent(settings);
+        long target = expected + (urgent ? URGENT_GRACE_MS : GRACE_MS);
+        if (gotNewReading) misses = 0;
+        if (nowMs < target) {
+            return clamp(target - nowMs, cadence() + GRACE_MS);
+        }
+
+        // Next reading is due but has not landed yet.
+        long step = urgent ? URGENT_RETRY_MS : RETRY_MS;
+        long cap = urgent ? URGENT_RETRY_CAP_MS : RETRY_CAP_MS;
+        long delay = Math.min(cap, step << Math.min(misses, 6));
+        misses++;
+        // Long gaps (sensor warm-up, lost signal) fall back to the plain cadence.
+        if (nowMs - expected > 2 * cadence()) delay = DEFAULT_CADENCE_MS;
+        return clamp(delay, DEFAULT_CADENCE_MS);
+    }
+
+    /** Delay after a failed poll: retry within the same slot, never later than the default cadence. */
+    public synchronized long afterFailure() {
+        long delay = Math.min(RETRY_CAP_MS, RETRY_MS << Math.min(misses, 6));
+        misses++;
+        return clamp(delay, DEFAULT_CADENCE_MS);
+    }
+
+    private static long clamp(long delay, long max) {
+        return Math.max(MIN_DELAY_MS, Math.min(max, delay));
+    }
+}
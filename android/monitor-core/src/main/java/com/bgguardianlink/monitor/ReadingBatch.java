@@ -0,0 +1,43 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Arrays;
+
+/**
+ * The readings one poll or pushed event added (or several, merged while waiting for evaluation),
+ * copied out of {@link ReadingSync} oldest first so the stages after the fetch never touch the sync.
+ */
+public final class ReadingBatch {
+
+    public final long[] timestamps;
+    public final int[] glucose;
+    public final byte[] trends;
+    /** A copy of the newest reading, with the alert fields the server put on it. */
+    public final ReadingFrame latest;
+    /** True when the batch filled an empty window (first sync), so its readings are not news. */
+    public final boolean backfill;
+
+    ReadingBatch(long[] timestamps, int[] glucose, byte[] trends, ReadingFrame latest, boolean backfill) {
+        this.timestamps = timestamps;
+        this.glucose = glucose;
+        this.trends = trends;
+        this.latest = latest;
+        this.backfill = backfill;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    /** {@code older}'s readings followed by {@code newer}'s, as one batch. */
+    public static ReadingBatch merge(ReadingBatch older, ReadingBatch newer) {
+        int n = older.size();
+        int m = newer.size();
+        long[] ts = Arrays.copyOf(older.timestamps, n + m);
+        int[] mgdl = Arrays.copyOf(older.glucose, n + m);
+        byte[] tr = Arrays.copyOf(older.trends, n + m);
+        System.arraycopy(newer.timestamps, 0, ts, n, m);
+        System.arraycopy(newer.glucose, 0, mgdl, n, m);
+        System.arraycopy(newer.trends, 0, tr, n, m);
+        return new ReadingBatch(ts, mgdl, tr, newer.latest, older.backfill && newer.backfill);
+    }
+}
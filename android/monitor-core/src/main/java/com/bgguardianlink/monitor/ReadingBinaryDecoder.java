@@ -0,0 +1,252 @@
+package com.bgguardianlink.monitor;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import okio.BufferedSource;
+
+/**
+ * Decoder for the compact /api/readings encoding the server sends when asked for
+ * {@value #CONTENT_TYPE} (see server/readingCodec.cjs). The layout is columnar and delta-encoded,
+ * newest reading first:
+ * <pre>
+ *   u8       version (1)
+ *   varint   n
+ *   n x      timestamp, epoch ms: the first as a zigzag varint, then (previous - this); 0 = missing
+ *   n x      glucose_value, whole mg/dL: the first as a zigzag varint, then (this - previous)
+ *   (n+1)/2  trend codes, two per byte, low nibble first ({@code ReadingFrame.TREND_*})
+ *   (n+7)/8  alert flags, one bit per reading, lowest bit first; for each set bit:
+ *            u8 alert type ({@code ReadingFrame.ALERT_*}), u8 volume in percent,
+ *            varint length + UTF-8 alert_message (0 = none)
+ *   varint   k other fields; for each: varint length + UTF-8 name,
+ *            then n x varint length + the value as JSON text (0 = absent)
+ * </pre>
+ * The other fields (id, pump_battery, ...) are passed through untouched so the rebuilt JSON
+ * carries everything the UI reads. The body is read once into a reused buffer and decoded in
+ * place; a reading costs no allocation unless its raw JSON or an alert message is asked for.
+ */
+public final class ReadingBinaryDecoder {
+
+    public static final String CONTENT_TYPE = "application/x-bgg-readings";
+    static final int VERSION = 1;
+
+    public interface Callback {
+        /** Return false to stop; readings not yet delivered are dropped. */
+        boolean onReading(ReadingFrame frame, ReadingBinaryDecoder decoder);
+    }
+
+    private final ReadingFrame frame = new ReadingFrame();
+    private byte[] body = new byte[4096];
+    private int length;
+    private int pos;
+
+    private long[] timestamps = new long[64];
+    private int[] glucose = new int[64];
+    private byte[] trends = new byte[64];
+    private byte[] alertTypes = new byte[64];
+    private float[] alertVolumes = new float[64];
+    /** Offset and length of each reading's alert message in the body; length -1 when the reading has no alert. */
+    private int[] messageOffsets = new int[64];
+    private int[] messageLengths = new int[64];
+    private int count;
+    private int keys;
+    private int[] keyOffsets = new int[8];
+    private int[] keyLengths = new int[8];
+    /** Offset and length of field {@code key} of reading {@code i} at {@code key * count + i}. */
+    private int[] valueOffsets = new int[64];
+    private int[] valueLengths = new int[64];
+    private int current;
+
+    /** Decodes a whole body, handing readings to the callback newest first. Returns the number delivered. */
+    public int parse(BufferedSource source, Callback callback) throws IOException {
+        readAll(source);
+        pos = 0;
+        int version = u8();
+        if (version != VERSION) throw new IOException("Unsupported readings encoding " + version);
+        count = varintInt();
+        // Each reading takes at least a timestamp byte and a glucose byte.
+        if (count > (length - pos) / 2) throw new IOException("Reading count " + count + " exceeds the body");
+        ensureReadings(count);
+
+        long ts = 0;
+        for (int i = 0; i < count; i++) {
+            long v = zigzag(varint());
+            ts = i == 0 ? v : ts - v;
+            timestamps[i] = ts;
+        }
+        int g = 0;
+        for (int i = 0; i < count; i++) {
+            int v = (int) zigzag(varint());
+            g = i == 0 ? v : g + v;
+            glucose[i] = g;
+        }
+        for (int i = 0; i < count; i += 2) {
+            int b = u8();
+            trends[i] = (byte) (b & 0xF);
+            if (i + 1 < count) trends[i + 1] = (byte) (b >> 4);
+        }
+        int flagsAt = pos;
+        pos += (count + 7) / 8;
+        if (pos > length) throw new EOFException();
+        for (int i = 0; i < count; i++) {
+            if ((body[flagsAt + i / 8] & (1 << (i % 8))) == 0) {
+                messageLengths[i] = -1;
+                continue;
+            }
+            alertTypes[i] = (byte) u8();
+            alertVolumes[i] = Math.min(100, u8()) / 100f;
+            messageLengths[i] = varintInt();
+            messageOffsets[i] = skip(messageLengths[i]);
+        }
+        keys = varintInt();
+        // Each field takes at least its name's length byte and one value length byte per reading.
+        if (keys > length - pos) throw new IOException("Field count " + keys + " exceeds the body");
+        ensureFields(keys, count);
+        for (int k = 0; k < keys; k++) {
+            keyLengths[k] = varintInt();
+            keyOffsets[k] = skip(keyLengths[k]);
+            for (int i = 0; i < count; i++) {
+                int slot = k * count + i;
+                valueLengths[slot] = varintInt();
+                valueOffsets[slot] = skip(valueLengths[slot]);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            current = i;
+            frame.clear();
+            frame.timestampMs = timestamps[i] == 0 ? Long.MIN_VALUE : timestamps[i];
+            frame.glucose = glucose[i];
+            frame.trend = trends[i] <= ReadingFrame.TREND_UP_DOUBLE ? trends[i] : ReadingFrame.TREND_UNKNOWN;
+            if (messageLengths[i] >= 0) {
+                frame.alert = true;
+                frame.alertType = alertTypes[i];
+                frame.alertVolume = alertVolumes[i];
+                if (messageLengths[i] > 0) {
+                    frame.alertMessage = new String(body, messageOffsets[i], messageLengths[i], StandardCharsets.UTF_8);
+                }
+            }
+            if (!callback.onReading(frame, this)) return i + 1;
+        }
+        return count;
+    }
+
+    /** The reading currently being delivered, as JSON in the /api/readings shape. Allocates; call only when needed. */
+    public String rawJson() {
+        int i = current;
+        StringBuilder sb = new StringBuilder(160).append('{');
+        if (timestamps[i] != 0) {
+            sb.append("\"timestamp\":\"").append(ReadingStreamParser.formatIsoMillis(timestamps[i])).append("\",");
+        }
+        sb.append("\"glucose_value\":").append(glucose[i]);
+        String trend = ReadingFrame.trendName(trends[i]);
+        if (trend != null) sb.append(",\"trend\":\"").append(trend).append('"');
+        sb.append(",\"alert\":").append(messageLengths[i] >= 0);
+        if (messageLengths[i] >= 0) {
+            String type = ReadingFrame.alertTypeName(alertTypes[i]);
+            if (type != null) sb.append(",\"alert_type\":\"").append(type).append('"');
+            if (messageLengths[i] > 0) {
+                sb.append(",\"alert_message\":");
+                appendJsonString(sb, new String(body, messageOffsets[i], messageLengths[i], StandardCharsets.UTF_8));
+            }
+            sb.append(",\"alert_volume\":").append(alertVolumes[i]);
+        }
+        for (int k = 0; k < keys; k++) {
+            int slot = k * count + i;
+            if (valueLengths[slot] == 0) continue;
+            sb.append(",\"").append(new String(body, keyOffsets[k], keyLengths[k], StandardCharsets.UTF_8)).append("\":")
+                    .append(new String(body, valueOffsets[slot], valueLengths[slot], StandardCharsets.UTF_8));
+        }
+        return sb.append('}').toString();
+    }
+
+    private void readAll(BufferedSource source) throws IOException {
+        length = 0;
+        while (true) {
+            if (length == body.length) body = Arrays.copyOf(body, body.length * 2);
+            int read = source.read(body, length, body.length - length);
+            if (read == -1) return;
+            length += read;
+        }
+    }
+
+    private void ensureReadings(int n) {
+        if (timestamps.length >= n) return;
+        int size = Math.max(n, timestamps.length * 2);
+        timestamps = new long[size];
+        glucose = new int[size];
+        trends = new byte[size];
+        alertTypes = new byte[size];
+        alertVolumes = new float[size];
+        messageOffsets = new int[size];
+        messageLengths = new int[size];
+    }
+
+    private void ensureFields(int k, int n) throws IOException {
+        int slots;
+        try {
+            slots = Math.multiplyExact(k, n);
+        } catch (ArithmeticException e) {
+            throw new IOException("Too many field values: " + k + " x " + n);
+        }
+        if (slots > length - pos) throw new IOException("Field values " + slots + " exceed the body");
+        if (keyOffsets.length < k) {
+            keyOffsets = new int[k];
+            keyLengths = new int[k];
+        }
+        if (valueOffsets.length < slots) {
+            valueOffsets = new int[slots];
+            valueLengths = new int[slots];
+        }
+    }
+
+    private int u8() throws EOFException {
+        if (pos >= length) throw new EOFException();
+        return body[pos++] & 0xFF;
+    }
+
+    /** Skips {@code n} bytes, returning where they start. */
+    private int skip(int n) throws EOFException {
+        int at = pos;
+        if (n > length - pos) throw new EOFException();
+        pos += n;
+        return at;
+    }
+
+    private long varint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = u8();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int varintInt() throws IOException {
+        long v = varint();
+        if (v < 0 || v > Integer.MAX_VALUE) throw new IOException("Length out of range: " + v);
+        return (int) v;
+    }
+
+    static long zigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static void appendJsonString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
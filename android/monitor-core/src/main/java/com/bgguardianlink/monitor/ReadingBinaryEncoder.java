@@ -0,0 +1,114 @@
+package com.bgguardianlink.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import okio.Buffer;
+
+/**
+ * Encodes an /api/readings JSON body into the layout {@link ReadingBinaryDecoder} reads. The server
+ * has its own encoder (server/readingCodec.cjs); this one exists for tests and benchmarks, and
+ * reads the known fields with {@link ReadingStreamParser} so both paths agree on their meaning.
+ */
+public final class ReadingBinaryEncoder {
+
+    private static final Set<String> KNOWN = new HashSet<>(Arrays.asList(
+            "timestamp", "glucose_value", "trend", "alert", "alert_type", "alert_message", "alert_volume"));
+
+    private ReadingBinaryEncoder() {
+    }
+
+    public static byte[] encode(String json) throws IOException, JSONException {
+        List<ReadingFrame> frames = new ArrayList<>();
+        new ReadingStreamParser().parse(new Buffer().writeUtf8(json), (frame, parser) -> {
+            ReadingFrame copy = new ReadingFrame();
+            copy.copyFrom(frame);
+            frames.add(copy);
+            return true;
+        });
+        JSONArray array = new JSONArray(json);
+        int n = frames.size();
+
+        Buffer out = new Buffer();
+        out.writeByte(ReadingBinaryDecoder.VERSION);
+        writeVarint(out, n);
+        long prevTs = 0;
+        for (int i = 0; i < n; i++) {
+            long ts = frames.get(i).timestampMs == Long.MIN_VALUE ? 0 : frames.get(i).timestampMs;
+            writeVarint(out, zigzag(i == 0 ? ts : prevTs - ts));
+            prevTs = ts;
+        }
+        int prevGlucose = 0;
+        for (int i = 0; i < n; i++) {
+            int g = frames.get(i).glucose;
+            writeVarint(out, zigzag(i == 0 ? g : g - prevGlucose));
+            prevGlucose = g;
+        }
+        for (int i = 0; i < n; i += 2) {
+            int lo = frames.get(i).trend;
+            int hi = i + 1 < n ? frames.get(i + 1).trend : 0;
+            out.writeByte(lo | (hi << 4));
+        }
+        byte[] flags = new byte[(n + 7) / 8];
+        for (int i = 0; i < n; i++) {
+            if (frames.get(i).alert) flags[i / 8] |= (byte) (1 << (i % 8));
+        }
+        out.write(flags);
+        for (ReadingFrame f : frames) {
+            if (!f.alert) continue;
+            out.writeByte(f.alertType);
+            out.writeByte(Math.round(f.alertVolume * 100));
+            writeBytes(out, f.alertMessage != null ? f.alertMessage.getBytes(StandardCharsets.UTF_8) : new byte[0]);
+        }
+
+        Set<String> other = new LinkedHashSet<>();
+        for (int i = 0; i < n; i++) {
+            for (String key : array.getJSONObject(i).keySet()) {
+                if (!KNOWN.contains(key)) other.add(key);
+            }
+        }
+        writeVarint(out, other.size());
+        for (String key : other) {
+            writeBytes(out, key.getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < n; i++) {
+                JSONObject o = array.getJSONObject(i);
+                String value = o.has(key) ? jsonText(o.get(key)) : "";
+                writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return out.readByteArray();
+    }
+
+    /** JSON text for one value; Android's org.json has no public equivalent. */
+    private static String jsonText(Object value) {
+        if (value instanceof String) return JSONObject.quote((String) value);
+        return value == JSONObject.NULL ? "null" : value.toString();
+    }
+
+    private static void writeBytes(Buffer out, byte[] bytes) {
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(Buffer out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+}
@@ -0,0 +1,78 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * One decoded reading as primitive fields. Instances are reused by {@link ReadingStreamParser},
+ * so copy what you need before the next reading is decoded.
+ */
+public final class ReadingFrame {
+
+    public static final byte TREND_UNKNOWN = 0;
+    public static final byte TREND_DOWN_DOUBLE = 1;
+    public static final byte TREND_DOWN = 2;
+    public static final byte TREND_FLAT = 3;
+    public static final byte TREND_UP = 4;
+    public static final byte TREND_UP_DOUBLE = 5;
+
+    public static final byte ALERT_NONE = 0;
+    public static final byte ALERT_LOW = 1;
+    public static final byte ALERT_HIGH = 2;
+    public static final byte ALERT_RAPID_RISE = 3;
+    public static final byte ALERT_RAPID_FALL = 4;
+    /** Raised on the phone by {@link LowForecaster}; the server never sends it. */
+    public static final byte ALERT_PREDICTED_LOW = 5;
+    /** No new reading for too long; raised on the phone by {@link StaleWatchdog}. */
+    public static final byte ALERT_STALE = 6;
+
+    /** Epoch millis, or {@link Long#MIN_VALUE} when the timestamp could not be read. */
+    public long timestampMs;
+    /** Glucose in mg/dL. */
+    public int glucose;
+    public byte trend;
+    public boolean alert;
+    public byte alertType;
+    /** Only allocated when the server sent one. */
+    public String alertMessage;
+    public float alertVolume;
+
+    void clear() {
+        timestampMs = Long.MIN_VALUE;
+        glucose = 0;
+        trend = TREND_UNKNOWN;
+        alert = false;
+        alertType = ALERT_NONE;
+        alertMessage = null;
+        alertVolume = 1f;
+    }
+
+    public void copyFrom(ReadingFrame other) {
+        timestampMs = other.timestampMs;
+        glucose = other.glucose;
+        trend = other.trend;
+        alert = other.alert;
+        alertType = other.alertType;
+        alertMessage = other.alertMessage;
+        alertVolume = other.alertVolume;
+    }
+
+    /** The server's name for an alert type, or null for none and phone-only types. */
+    public static String alertTypeName(byte alertType) {
+        switch (alertType) {
+            case ALERT_LOW: return "low";
+            case ALERT_HIGH: return "high";
+            case ALERT_RAPID_RISE: return "rapid_rise";
+            case ALERT_RAPID_FALL: return "rapid_fall";
+            default: return null;
+        }
+    }
+
+    public static String trendName(byte trend) {
+        switch (trend) {
+            case TREND_DOWN_DOUBLE: return "DOWN_DOUBLE";
+            case TREND_DOWN: return "DOWN";
+            case TREND_FLAT: return "FLAT";
+            case TREND_UP: return "UP";
+            case TREND_UP_DOUBLE: return "UP_DOUBLE";
+            default: return null;
+        }
+    }
+}
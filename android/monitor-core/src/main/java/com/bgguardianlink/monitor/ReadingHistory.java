@@ -0,0 +1,213 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * Long-range history for charts, kept on the phone so a 30-day view needs no network and no
+ * thousands of points. Readings are rolled up as they arrive into three tiers of fixed-size rings:
+ * the readings themselves, 15-minute buckets and hourly buckets. Each bucket holds count, min, max,
+ * sum and time-in-range counters against the consensus 70-180 mg/dL target. Adding a reading
+ * touches one slot per tier; a range query is a binary search and a copy.
+ *
+ * <p>Readings must arrive oldest first; anything not newer than the latest is ignored, as in
+ * {@link ReadingJournal}.
+ */
+public final class ReadingHistory {
+
+    public static final int RAW = 0;
+    public static final int QUARTER_HOUR = 1;
+    public static final int HOUR = 2;
+    public static final String[] RESOLUTIONS = {"raw", "15m", "1h"};
+
+    /**
+     * The standard time-in-range target (70-180 mg/dL, the international consensus range), not the
+     * user's alert thresholds: buckets are counted as readings arrive, so the range has to be fixed
+     * for the whole history, and a standard one keeps figures comparable with other CGM reports.
+     */
+    public static final int TIR_LOW_MGDL = 70;
+    public static final int TIR_HIGH_MGDL = 180;
+    /** Most points {@link #autoResolution} lets a query return. */
+    public static final int MAX_POINTS = 600;
+
+    private static final long MINUTE = 60_000L;
+    private static final long DAY = 24 * 60 * MINUTE;
+    /** Bucket width per tier; 0 keeps every reading. */
+    private static final long[] BUCKET_MS = {0, 15 * MINUTE, 60 * MINUTE};
+    /** 30 days of 5-minute readings, 60 days of quarter hours, 180 days of hours (the journal's reach). */
+    private static final int[] CAPACITY = {(int) (30 * DAY / (5 * MINUTE)), (int) (60 * DAY / (15 * MINUTE)),
+            (int) (180 * DAY / (60 * MINUTE))};
+
+    /** A query's result, columnar; {@code mean} is sum / count per point. */
+    public static final class Range {
+        public final int resolution;
+        public final int size;
+        public final long[] start;
+        public final int[] count;
+        public final int[] min;
+        public final int[] max;
+        public final double[] mean;
+        /** Readings in the returned points below, within and above the target range. */
+        public final int below;
+        public final int inRange;
+        public final int above;
+
+        Range(int resolution, long[] start, int[] count, int[] min, int[] max, double[] mean,
+                int below, int inRange, int above) {
+            this.resolution = resolution;
+            this.size = start.length;
+            this.start = start;
+            this.count = count;
+            this.min = min;
+            this.max = max;
+            this.mean = mean;
+            this.below = below;
+            this.inRange = inRange;
+            this.above = above;
+        }
+    }
+
+    /** One resolution: a ring of buckets, oldest at {@code head}. */
+    private static final class Tier {
+        final long bucketMs;
+        final long[] start;
+        final short[] count;
+        final short[] min;
+        final short[] max;
+        final int[] sum;
+        final short[] below;
+        final short[] above;
+        int head;
+        int size;
+
+        Tier(long bucketMs, int capacity) {
+            this.bucketMs = bucketMs;
+            start = new long[capacity];
+            count = new short[capacity];
+            min = new short[capacity];
+            max = new short[capacity];
+            sum = new int[capacity];
+            below = new short[capacity];
+            above = new short[capacity];
+        }
+
+        void add(long timestampMs, int mgdl) {
+            long bucket = align(timestampMs);
+            int slot;
+            if (size > 0 && start[slot(size - 1)] == bucket) {
+                slot = slot(size - 1);
+            } else {
+                if (size == start.length) {
+                    head = (head + 1) % start.length;
+                    size--;
+                }
+                slot = slot(size++);
+                start[slot] = bucket;
+                count[slot] = 0;
+                min[slot] = Short.MAX_VALUE;
+                max[slot] = Short.MIN_VALUE;
+                sum[slot] = 0;
+                below[slot] = 0;
+                above[slot] = 0;
+            }
+            short v = (short) Math.max(0, Math.min(Short.MAX_VALUE, mgdl));
+            count[slot]++;
+            if (v < min[slot]) min[slot] = v;
+            if (v > max[slot]) max[slot] = v;
+            sum[slot] += v;
+            if (v < TIR_LOW_MGDL) below[slot]++;
+            else if (v > TIR_HIGH_MGDL) above[slot]++;
+        }
+
+        int slot(int i) {
+            return (head + i) % start.length;
+        }
+
+        long align(long timestampMs) {
+            return bucketMs == 0 ? timestampMs : timestampMs - Math.floorMod(timestampMs, bucketMs);
+        }
+
+        /** First logical index whose bucket starts at or after {@code startMs}. */
+        int search(long startMs) {
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start[slot(mid)] < startMs) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        long oldest() {
+            return size == 0 ? Long.MAX_VALUE : start[slot(0)];
+        }
+    }
+
+    private final Tier[] tiers = new Tier[BUCKET_MS.length];
+    private long latest = Long.MIN_VALUE;
+
+    public ReadingHistory() {
+        for (int r = 0; r < tiers.length; r++) tiers[r] = new Tier(BUCKET_MS[r], CAPACITY[r]);
+    }
+
+    public synchronized void add(long timestampMs, int mgdl) {
+        if (timestampMs == Long.MIN_VALUE || timestampMs <= latest || mgdl <= 0) return;
+        latest = timestampMs;
+        for (Tier tier : tiers) tier.add(timestampMs, mgdl);
+    }
+
+    /** The resolution named in {@link #RESOLUTIONS}, or -1. */
+    public static int resolution(String name) {
+        for (int r = 0; r < RESOLUTIONS.length; r++) {
+            if (RESOLUTIONS[r].equals(name)) return r;
+        }
+        return -1;
+    }
+
+    /** Timestamp of the newest reading, or {@link Long#MIN_VALUE}. */
+    public synchronized long latest() {
+        return latest;
+    }
+
+    public synchronized int size(int resolution) {
+        return tiers[resolution].size;
+    }
+
+    /**
+     * The finest resolution that still holds {@code fromMs} and answers {@code [fromMs, toMs]} in at
+     * most {@link #MAX_POINTS} points (readings are assumed five minutes apart).
+     */
+    public synchronized int autoResolution(long fromMs, long toMs) {
+        long span = Math.max(0, toMs - fromMs);
+        for (int r = RAW; r < HOUR; r++) {
+            long width = r == RAW ? 5 * MINUTE : BUCKET_MS[r];
+            if (span / width <= MAX_POINTS && tiers[r].oldest() <= fromMs) return r;
+        }
+        return HOUR;
+    }
+
+    /** Points of {@code resolution} whose bucket overlaps {@code [fromMs, toMs]}, oldest first. */
+    public synchronized Range range(long fromMs, long toMs, int resolution) {
+        Tier tier = tiers[resolution];
+        int from = tier.search(tier.align(fromMs));
+        int n = Math.max(0, tier.search(toMs == Long.MAX_VALUE ? toMs : toMs + 1) - from);
+        long[] start = new long[n];
+        int[] count = new int[n];
+        int[] min = new int[n];
+        int[] max = new int[n];
+        double[] mean = new double[n];
+        int below = 0;
+        int above = 0;
+        int total = 0;
+        for (int j = 0; j < n; j++) {
+            int s = tier.slot(from + j);
+            start[j] = tier.start[s];
+            count[j] = tier.count[s];
+            min[j] = tier.min[s];
+            max[j] = tier.max[s];
+            mean[j] = tier.sum[s] / (double) tier.count[s];
+            below += tier.below[s];
+            above += tier.above[s];
+            total += tier.count[s];
+        }
+        return new Range(resolution, start, count, min, max, mean, below, total - below - above, above);
+    }
+}
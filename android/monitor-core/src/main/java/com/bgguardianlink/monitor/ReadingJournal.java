@@ -0,0 +1,279 @@
+package com.bgguardianlink.monitor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Append-only on-disk journal of readings, so the service and UI have history the moment the
+ * process starts instead of after the first network round-trip.
+ * <p>
+ * Readings are written to rolling segment files. A segment starts with a 12-byte header (magic +
+ * base timestamp); each record is a zigzag varint timestamp delta in ms, a varint mg/dL, a trend
+ * byte and a CRC-8 over those bytes, about 6 bytes per reading. On open, the newest segment is
+ * scanned and anything after the last intact record (a write torn by a crash) is cut off.
+ */
+public class ReadingJournal implements Closeable {
+
+    public interface Visitor {
+        void onReading(long timestampMs, int mgdl, byte trend);
+    }
+
+    static final int MAGIC = 0x42474a31; // "BGJ1"
+    static final int HEADER_SIZE = 12;
+    /** About a month of 5-minute readings per segment. */
+    static final long SEGMENT_BYTES = 64 * 1024;
+    /** Segments kept before the oldest is deleted. */
+    static final int MAX_SEGMENTS = 6;
+
+    private static final String PREFIX = "seg-";
+    private static final String SUFFIX = ".bgj";
+    private static final int MAX_RECORD = 10 + 5 + 1 + 1;
+    private static final byte[] CRC8 = crc8Table();
+
+    private final File dir;
+    private final long segmentBytes;
+    private final ByteBuffer record = ByteBuffer.allocateDirect(HEADER_SIZE + MAX_RECORD);
+    private FileChannel channel;
+    private long segmentBase;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private boolean closed;
+
+    public ReadingJournal(File dir) throws IOException {
+        this(dir, SEGMENT_BYTES);
+    }
+
+    ReadingJournal(File dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File[] segments = segments(dir);
+        if (segments.length > 0) {
+            openForAppend(segments[segments.length - 1]);
+        }
+    }
+
+    /** Appends a reading. Readings not newer than the last one written are skipped. */
+    public synchronized void append(long timestampMs, int mgdl, byte trend) throws IOException {
+        if (closed || timestampMs == Long.MIN_VALUE || timestampMs <= lastTimestamp) return;
+        if (channel == null || channel.size() >= segmentBytes) roll(timestampMs);
+
+        long prev = lastTimestamp == Long.MIN_VALUE ? segmentBase : lastTimestamp;
+        record.clear();
+        int start = record.position();
+        writeVarint(record, zigzag(timestampMs - prev));
+        writeVarint(record, Math.max(0, mgdl));
+        record.put(trend);
+        record.put(crc8(record, start, record.position()));
+        record.flip();
+        while (record.hasRemaining()) channel.write(record);
+        channel.force(false);
+        lastTimestamp = timestampMs;
+    }
+
+    public synchronized long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /** Visits up to {@code max} of the newest readings, oldest first. */
+    public synchronized int readLatest(int max, Visitor visitor) throws IOException {
+        return readLatest(dir, max, visitor);
+    }
+
+    /** Visits every journaled reading, oldest first. */
+    public synchronized int readAll(Visitor visitor) throws IOException {
+        return readAll(dir, visitor);
+    }
+
+    public synchronized long bytesOnDisk() {
+        long total = 0;
+        for (File segment : segments(dir)) total += segment.length();
+        return total;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closed = true;
+        closeSegment();
+    }
+
+    private void closeSegment() throws IOException {
+        if (channel != null) channel.close();
+        channel = null;
+    }
+
+    /** Read-only variant of {@link #readAll(Visitor)} for callers that do not own the journal. */
+    public static int readAll(File dir, Visitor visitor) throws IOException {
+        int count = 0;
+        for (File segment : segments(dir)) count += decode(segment, visitor);
+        return count;
+    }
+
+    /**
+     * Read-only variant for callers that do not own the journal (e.g. the activity before the
+     * service is up). Only the two newest segments are read, which always hold far more than a
+     * rehydration window.
+     */
+    public static int readLatest(File dir, int max, Visitor visitor) throws IOException {
+        File[] segments = segments(dir);
+        long[] ts = new long[max];
+        int[] mgdl = new int[max];
+        byte[] trend = new byte[max];
+        int[] count = {0};
+        for (int i = Math.max(0, segments.length - 2); i < segments.length; i++) {
+            decode(segments[i], (t, g, tr) -> {
+                int slot = count[0] % max;
+                ts[slot] = t;
+                mgdl[slot] = g;
+                trend[slot] = tr;
+                count[0]++;
+            });
+        }
+        int n = Math.min(count[0], max);
+        for (int i = count[0] - n; i < count[0]; i++) {
+            int slot = i % max;
+            visitor.onReading(ts[slot], mgdl[slot], trend[slot]);
+        }
+        return n;
+    }
+
+    private void roll(long timestampMs) throws IOException {
+        closeSegment();
+        File segment = new File(dir, PREFIX + timestampMs + SUFFIX);
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        channel = file.getChannel();
+        record.clear();
+        record.putInt(MAGIC).putLong(timestampMs).flip();
+        while (record.hasRemaining()) channel.write(record);
+        segmentBase = timestampMs;
+        lastTimestamp = Long.MIN_VALUE;
+
+        File[] segments = segments(dir);
+        for (int i = 0; i < segments.length - MAX_SEGMENTS; i++) {
+            segments[i].delete();
+        }
+    }
+
+    /** Opens the newest segment, dropping any torn record at its tail. */
+    private void openForAppend(File segment) throws IOException {
+        long[] last = {Long.MIN_VALUE};
+        long validEnd = scan(segment, (t, g, tr) -> last[0] = t);
+        if (validEnd < HEADER_SIZE) {
+            // Header itself is damaged; start a fresh segment on the next append.
+            segment.delete();
+            return;
+        }
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        channel = file.getChannel();
+        if (channel.size() > validEnd) channel.truncate(validEnd);
+        channel.position(validEnd);
+        segmentBase = baseOf(segment);
+        lastTimestamp = last[0];
+    }
+
+    private static int decode(File segment, Visitor visitor) throws IOException {
+        int[] count = {0};
+        scan(segment, (t, g, tr) -> {
+            count[0]++;
+            visitor.onReading(t, g, tr);
+        });
+        return count[0];
+    }
+
+    /** Decodes a segment through a read-only mapping. Returns the end offset of the last intact record. */
+    private static long scan(File segment, Visitor visitor) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(segment, "r");
+             FileChannel ch = file.getChannel()) {
+            long size = ch.size();
+            if (size < HEADER_SIZE) return 0;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buf.order(ByteOrder.BIG_ENDIAN);
+            if (buf.getInt() != MAGIC) return 0;
+            long ts = buf.getLong();
+            int end = HEADER_SIZE;
+            while (buf.hasRemaining()) {
+                int start = buf.position();
+                long delta = readVarint(buf);
+                long mgdl = delta == Long.MIN_VALUE ? Long.MIN_VALUE : readVarint(buf);
+                if (mgdl == Long.MIN_VALUE || buf.remaining() < 2) break;
+                byte trend = buf.get();
+                byte crc = buf.get();
+                if (crc != crc8(buf, start, buf.position() - 1)) break;
+                ts += unzigzag(delta);
+                visitor.onReading(ts, (int) mgdl, trend);
+                end = buf.position();
+            }
+            return end;
+        }
+    }
+
+    private static File[] segments(File dir) {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(SUFFIX));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> Long.compare(baseOf(a), baseOf(b)));
+        return files;
+    }
+
+    private static long baseOf(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    // --- Encoding ---
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarint(ByteBuffer buf, long v) {
+        while ((v & ~0x7fL) != 0) {
+            buf.put((byte) ((v & 0x7f) | 0x80));
+            v >>>= 7;
+        }
+        buf.put((byte) v);
+    }
+
+    /** Returns {@link Long#MIN_VALUE} if the buffer ends mid-varint or the varint is malformed. */
+    private static long readVarint(ByteBuffer buf) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buf.hasRemaining()) return Long.MIN_VALUE;
+            byte b = buf.get();
+            v |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static byte crc8(ByteBuffer buf, int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) crc = CRC8[(crc ^ buf.get(i)) & 0xff];
+        return (byte) crc;
+    }
+
+    private static byte[] crc8Table() {
+        byte[] table = new byte[256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1) ^ 0x07 : crc << 1;
+            }
+            table[i] = (byte) crc;
+        }
+        return table;
+    }
+}
@@ -0,0 +1,141 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import okhttp3.EventListener;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.sse.EventSource;
+import okhttp3.sse.EventSourceListener;
+import okhttp3.sse.EventSources;
+
+/**
+ * Long-lived Server-Sent Events connection to /api/readings/stream. New readings arrive as soon as
+ * the server stores them; on failure the stream reconnects with jittered exponential backoff and
+ * asks for anything newer than the cursor so nothing is missed while it was down.
+ */
+public class ReadingStream {
+
+    public interface Listener {
+        /** A JSON array of readings in the /api/readings shape. Called on an OkHttp thread. */
+        void onReadings(String json);
+
+        void onConnectionChanged(boolean connected);
+    }
+
+    static final long INITIAL_BACKOFF_MS = 1_000L;
+    static final long MAX_BACKOFF_MS = 5 * 60_000L;
+    /** The server pings every 4 minutes; a stream silent for longer than this is treated as dead. */
+    static final long IDLE_TIMEOUT_MS = 5 * 60_000L;
+
+    private final OkHttpClient client;
+    private final HttpUrl streamUrl;
+    private final LongSupplier cursor;
+    private final ScheduledExecutorService timer;
+    private final Listener listener;
+    private final Random random = new Random();
+
+    private EventSource eventSource;
+    private ScheduledFuture<?> reconnect;
+    private boolean running;
+    private boolean connected;
+    private int attempts;
+
+    public ReadingStream(OkHttpClient client, String streamUrl, LongSupplier cursor,
+                         ScheduledExecutorService timer, Listener listener) {
+        this.client = client.newBuilder()
+                .readTimeout(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                // A stream's "download" lasts as long as the connection; keep it out of the poll timings.
+                .eventListener(EventListener.NONE)
+                .build();
+        this.streamUrl = HttpUrl.get(streamUrl);
+        this.cursor = cursor;
+        this.timer = timer;
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        if (running) return;
+        running = true;
+        attempts = 0;
+        connect();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (reconnect != null) reconnect.cancel(false);
+        if (eventSource != null) eventSource.cancel();
+        eventSource = null;
+        setConnected(false);
+    }
+
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    private synchronized void connect() {
+        if (!running) return;
+        HttpUrl.Builder url = streamUrl.newBuilder();
+        long since = cursor.getAsLong();
+        if (since != Long.MIN_VALUE) {
+            url.addQueryParameter("since", Long.toString(since));
+        }
+        Request request = new Request.Builder()
+                .url(url.build())
+                .header("Accept", "text/event-stream")
+                .build();
+        eventSource = EventSources.createFactory(client).newEventSource(request, new EventSourceListener() {
+            @Override
+            public void onOpen(EventSource source, Response response) {
+                synchronized (ReadingStream.this) {
+                    if (source != eventSource) return;
+                    attempts = 0;
+                    setConnected(true);
+                }
+            }
+
+            @Override
+            public void onEvent(EventSource source, String id, String type, String data) {
+                if ("reading".equals(type)) listener.onReadings(data);
+            }
+
+            @Override
+            public void onClosed(EventSource source) {
+                onDropped(source);
+            }
+
+            @Override
+            public void onFailure(EventSource source, Throwable t, Response response) {
+                onDropped(source);
+            }
+        });
+    }
+
+    private synchronized void onDropped(EventSource source) {
+        if (source != eventSource) return;
+        eventSource = null;
+        setConnected(false);
+        if (!running) return;
+        long delay = nextBackoff();
+        reconnect = timer.schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /** Exponential backoff with jitter: a random delay between half and all of the current step. */
+    long nextBackoff() {
+        long step = Math.min(MAX_BACKOFF_MS, INITIAL_BACKOFF_MS << Math.min(attempts, 20));
+        attempts++;
+        return step / 2 + (long) (random.nextDouble() * (step / 2));
+    }
+
+    private void setConnected(boolean value) {
+        if (connected == value) return;
+        connected = value;
+        listener.onConnectionChanged(value);
+    }
+}
@@ -0,0 +1,478 @@
+package com.bgguardianlink.monitor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Streaming decoder for the /api/readings JSON array. Reads straight from the response source into a
+ * reused {@link ReadingFrame}; field names, trends and timestamps are matched byte-by-byte, so a
+ * reading costs no allocation unless its raw JSON or an alert message is asked for.
+ */
+public final class ReadingStreamParser {
+
+    public interface Callback {
+        /** Return false to stop reading; the rest of the body is left unread. */
+        boolean onReading(ReadingFrame frame, ReadingStreamParser parser);
+    }
+
+    private static final byte[] F_TIMESTAMP = ascii("timestamp");
+    private static final byte[] F_GLUCOSE = ascii("glucose_value");
+    private static final byte[] F_TREND = ascii("trend");
+    private static final byte[] F_ALERT = ascii("alert");
+    private static final byte[] F_ALERT_TYPE = ascii("alert_type");
+    private static final byte[] F_ALERT_MESSAGE = ascii("alert_message");
+    private static final byte[] F_ALERT_VOLUME = ascii("alert_volume");
+
+    private static final byte[][] TRENDS = {
+            ascii("DOWN_DOUBLE"), ascii("DOWN"), ascii("FLAT"), ascii("UP"), ascii("UP_DOUBLE")
+    };
+    private static final byte[][] ALERT_TYPES = {
+            ascii("low"), ascii("high"), ascii("rapid_rise"), ascii("rapid_fall")
+    };
+
+    private final ReadingFrame frame = new ReadingFrame();
+    private final Buffer raw = new Buffer();
+    private byte[] scratch = new byte[64];
+    private int scratchLen;
+    private BufferedSource in;
+    private boolean capturing;
+    private int pushback = -1;
+
+    /**
+     * Decodes readings from a JSON array, handing each to the callback in document order.
+     * Returns the number of readings delivered.
+     */
+    public int parse(BufferedSource source, Callback callback) throws IOException {
+        in = source;
+        pushback = -1;
+        int count = 0;
+        try {
+            expect('[');
+            if (peekNonWs() == ']') {
+                read();
+                return 0;
+            }
+            while (true) {
+                readReading();
+                count++;
+                if (!callback.onReading(frame, this)) return count;
+                int c = readNonWs();
+                if (c == ']') return count;
+                if (c != ',') throw syntax(c);
+            }
+        } finally {
+            capturing = false;
+            raw.clear();
+            in = null;
+        }
+    }
+
+    /** Decodes only the first reading into {@code out}. Returns false for an empty array. */
+    public boolean parseHead(BufferedSource source, ReadingFrame out) throws IOException {
+        return parse(source, (frame, parser) -> {
+            out.copyFrom(frame);
+            return false;
+        }) > 0;
+    }
+
+    /** The raw JSON of the reading currently being delivered. Allocates; call only when needed. */
+    public String rawJson() {
+        return raw.snapshot().utf8();
+    }
+
+    private void readReading() throws IOException {
+        expect('{');
+        frame.clear();
+        raw.clear();
+        raw.writeByte('{');
+        capturing = true;
+        if (peekNonWs() == '}') {
+            read();
+        } else {
+            while (true) {
+                expect('"');
+                readStringToScratch();
+                expect(':');
+                readField();
+                int c = readNonWs();
+                if (c == '}') break;
+                if (c != ',') throw syntax(c);
+            }
+        }
+        capturing = false;
+    }
+
+    private void readField() throws IOException {
+        if (scratchIs(F_TIMESTAMP)) {
+            int c = peekNonWs();
+            if (c == '"') {
+                read();
+                readStringToScratch();
+                frame.timestampMs = parseIsoMillis(scratch, scratchLen);
+            } else {
+                double ms = readNumberOrNull();
+                frame.timestampMs = Double.isNaN(ms) ? Long.MIN_VALUE : (long) ms;
+            }
+        } else if (scratchIs(F_GLUCOSE)) {
+            double v = readNumberOrNull();
+            frame.glucose = Double.isNaN(v) ? 0 : (int) Math.round(v);
+        } else if (scratchIs(F_TREND)) {
+            if (readStringOrNull()) frame.trend = (byte) (match(TRENDS) + 1);
+        } else if (scratchIs(F_ALERT)) {
+            frame.alert = readBooleanOrNull();
+        } else if (scratchIs(F_ALERT_TYPE)) {
+            if (readStringOrNull()) frame.alertType = (byte) (match(ALERT_TYPES) + 1);
+        } else if (scratchIs(F_ALERT_MESSAGE)) {
+            if (readStringOrNull() && scratchLen > 0) {
+                frame.alertMessage = new String(scratch, 0, scratchLen, StandardCharsets.UTF_8);
+            }
+        } else if (scratchIs(F_ALERT_VOLUME)) {
+            double v = readNumberOrNull();
+            frame.alertVolume = Double.isNaN(v) ? 1f : (float) Math.max(0.0, Math.min(1.0, v));
+        } else {
+            skipValue();
+        }
+    }
+
+    // --- Tokens ---
+
+    /** Bytes are captured into the raw JSON as they leave the source, so a pushed-back byte is not re-captured. */
+    private int read() throws IOException {
+        if (pushback >= 0) {
+            int b = pushback;
+            pushback = -1;
+            return b;
+        }
+        int b = in.readByte() & 0xff;
+        if (capturing) raw.writeByte(b);
+        return b;
+    }
+
+    private int peekNonWs() throws IOException {
+        int c = readNonWs();
+        pushback = c;
+        return c;
+    }
+
+    private int readNonWs() throws IOException {
+        if (pushback >= 0) {
+            int c = pushback;
+            pushback = -1;
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+        }
+        while (true) {
+            int c = in.readByte() & 0xff;
+            if (c == ' ' || c == '\n' || c == '\r' || c == '\t') continue;
+            if (capturing) raw.writeByte(c);
+            return c;
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        int c = readNonWs();
+        if (c != expected) throw syntax(c);
+    }
+
+    /** Reads the rest of a string (opening quote already consumed) into scratch, decoding escapes. */
+    private void readStringToScratch() throws IOException {
+        scratchLen = 0;
+        int high = -1; // an escaped high surrogate waiting for its low half
+        while (true) {
+            int c = read();
+            if (c == '\\') {
+                int e = read();
+                if (e == 'u') {
+                    int u = readHex4();
+                    if (high >= 0 && Character.isLowSurrogate((char) u)) {
+                        appendCodePoint(Character.toCodePoint((char) high, (char) u));
+                        high = -1;
+                        continue;
+                    }
+                    if (high >= 0) appendCodePoint(0xfffd);
+                    high = Character.isHighSurrogate((char) u) ? u : -1;
+                    if (high < 0) appendCodePoint(Character.isLowSurrogate((char) u) ? 0xfffd : u);
+                    continue;
+                }
+                if (high >= 0) {
+                    appendCodePoint(0xfffd);
+                    high = -1;
+                }
+                switch (e) {
+                    case 'n': c = '\n'; break;
+                    case 't': c = '\t'; break;
+                    case 'r': c = '\r'; break;
+                    case 'b': c = '\b'; break;
+                    case 'f': c = '\f'; break;
+                    default: c = e;
+                }
+            } else {
+                if (high >= 0) {
+                    appendCodePoint(0xfffd);
+                    high = -1;
+                }
+                if (c == '"') return;
+            }
+            appendScratch(c);
+        }
+    }
+
+    private int readHex4() throws IOException {
+        int v = 0;
+        for (int i = 0; i < 4; i++) {
+            int c = read();
+            int digit = Character.digit(c, 16);
+            if (digit < 0) throw syntax(c);
+            v = (v << 4) | digit;
+        }
+        return v;
+    }
+
+    private void appendCodePoint(int cp) {
+        if (cp < 0x80) {
+            appendScratch(cp);
+        } else if (cp < 0x800) {
+            appendScratch(0xc0 | (cp >> 6));
+            appendScratch(0x80 | (cp & 0x3f));
+        } else if (cp < 0x10000) {
+            appendScratch(0xe0 | (cp >> 12));
+            appendScratch(0x80 | ((cp >> 6) & 0x3f));
+            appendScratch(0x80 | (cp & 0x3f));
+        } else {
+            appendScratch(0xf0 | (cp >> 18));
+            appendScratch(0x80 | ((cp >> 12) & 0x3f));
+            appendScratch(0x80 | ((cp >> 6) & 0x3f));
+            appendScratch(0x80 | (cp & 0x3f));
+        }
+    }
+
+    private void appendScratch(int b) {
+        if (scratchLen == scratch.length) {
+            byte[] grown = new byte[scratch.length * 2];
+            System.arraycopy(scratch, 0, grown, 0, scratchLen);
+            scratch = grown;
+        }
+        scratch[scratchLen++] = (byte) b;
+    }
+
+    /** Returns false for null; otherwise reads the string into scratch. */
+    private boolean readStringOrNull() throws IOException {
+        int c = readNonWs();
+        if (c == '"') {
+            readStringToScratch();
+            return true;
+        }
+        if (c == 'n') {
+            skipLiteral(3);
+            return false;
+        }
+        throw syntax(c);
+    }
+
+    private boolean readBooleanOrNull() throws IOException {
+        int c = readNonWs();
+        if (c == 't') {
+            skipLiteral(3);
+            return true;
+        }
+        if (c == 'f') {
+            skipLiteral(4);
+            return false;
+        }
+        if (c == 'n') {
+            skipLiteral(3);
+            return false;
+        }
+        throw syntax(c);
+    }
+
+    /** Returns NaN for null. Handles the integer, fraction and exponent forms JSON allows. */
+    private double readNumberOrNull() throws IOException {
+        int c = readNonWs();
+        if (c == 'n') {
+            skipLiteral(3);
+            return Double.NaN;
+        }
+        boolean negative = c == '-';
+        if (negative) c = read();
+        double value = 0;
+        while (c >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            c = read();
+        }
+        if (c == '.') {
+            double scale = 0.1;
+            c = read();
+            while (c >= '0' && c <= '9') {
+                value += (c - '0') * scale;
+                scale /= 10;
+                c = read();
+            }
+        }
+        if (c == 'e' || c == 'E') {
+            c = read();
+            boolean negExp = c == '-';
+            if (c == '-' || c == '+') c = read();
+            int exp = 0;
+            while (c >= '0' && c <= '9') {
+                exp = exp * 10 + (c - '0');
+                c = read();
+            }
+            value *= Math.pow(10, negExp ? -exp : exp);
+        }
+        unread(c);
+        return negative ? -value : value;
+    }
+
+    private void skipLiteral(int remaining) throws IOException {
+        for (int i = 0; i < remaining; i++) read();
+    }
+
+    private void skipValue() throws IOException {
+        int c = readNonWs();
+        switch (c) {
+            case '"':
+                readStringToScratch();
+                return;
+            case '{':
+            case '[':
+                int depth = 1;
+                boolean inString = false;
+                while (depth > 0) {
+                    int b = read();
+                    if (inString) {
+                        if (b == '\\') read();
+                        else if (b == '"') inString = false;
+                    } else if (b == '"') {
+                        inString = true;
+                    } else if (b == '{' || b == '[') {
+                        depth++;
+                    } else if (b == '}' || b == ']') {
+                        depth--;
+                    }
+                }
+                return;
+            case 't':
+            case 'n':
+                skipLiteral(3);
+                return;
+            case 'f':
+                skipLiteral(4);
+                return;
+            default:
+                unread(c);
+                readNumberOrNull();
+        }
+    }
+
+    private void unread(int c) {
+        pushback = c;
+    }
+
+    private boolean scratchIs(byte[] name) {
+        if (scratchLen != name.length) return false;
+        for (int i = 0; i < scratchLen; i++) {
+            if (scratch[i] != name[i]) return false;
+        }
+        return true;
+    }
+
+    private int match(byte[][] names) {
+        for (int i = 0; i < names.length; i++) {
+            if (scratchIs(names[i])) return i;
+        }
+        return -1;
+    }
+
+    private static IOException syntax(int c) {
+        return new IOException("Unexpected '" + (char) c + "' in readings payload");
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    // --- Timestamps ---
+
+    /**
+     * Parses ISO-8601 ({@code 2026-01-01T10:05:00.000Z}, optional seconds, fraction and offset)
+     * from bytes without allocating. Returns {@link Long#MIN_VALUE} if the text is not in that form.
+     */
+    static long parseIsoMillis(byte[] s, int len) {
+        if (len < 16 || s[4] != '-' || s[7] != '-' || (s[10] != 'T' && s[10] != ' ') || s[13] != ':') {
+            return Long.MIN_VALUE;
+        }
+        int year = digits(s, len, 0, 4), month = digits(s, len, 5, 2), day = digits(s, len, 8, 2);
+        int hour = digits(s, len, 11, 2), minute = digits(s, len, 14, 2);
+        if (year < 0 || month < 1 || day < 1 || hour < 0 || minute < 0) return Long.MIN_VALUE;
+        int i = 16, second = 0, millis = 0;
+        if (i < len && s[i] == ':') {
+            second = digits(s, len, i + 1, 2);
+            if (second < 0) return Long.MIN_VALUE;
+            i += 3;
+            if (i < len && s[i] == '.') {
+                i++;
+                int scale = 100;
+                while (i < len && s[i] >= '0' && s[i] <= '9') {
+                    millis += (s[i] - '0') * scale;
+                    scale /= 10;
+                    i++;
+                }
+            }
+        }
+        long offsetMin = 0;
+        if (i < len && (s[i] == '+' || s[i] == '-')) {
+            int oh = digits(s, len, i + 1, 2);
+            int m = i + 3 < len && s[i + 3] == ':' ? i + 4 : i + 3;
+            // "+05" has no minutes; anything after the hours ("+05:", "+053") must be two digits.
+            int om = m < len || m == i + 4 ? digits(s, len, m, 2) : 0;
+            if (oh < 0 || om < 0) return Long.MIN_VALUE;
+            offsetMin = (s[i] == '-' ? -1 : 1) * (oh * 60L + om);
+        }
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute - offsetMin) * 60_000L + second * 1000L + millis;
+    }
+
+    /** Formats epoch millis as {@code 2026-01-01T10:05:00.000Z}. */
+    static String formatIsoMillis(long ms) {
+        long days = Math.floorDiv(ms, 86_400_000L);
+        long msOfDay = Math.floorMod(ms, 86_400_000L);
+        // Inverse of daysFromCivil.
+        long z = days + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long doe = z - era * 146097;
+        long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;
+        long day = doy - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+        return String.format(java.util.Locale.US, "%04d-%02d-%02dT%02d:%02d:%02d.%03dZ",
+                year, month, day, msOfDay / 3_600_000L, msOfDay / 60_000L % 60,
+                msOfDay / 1000 % 60, msOfDay % 1000);
+    }
+
+    /** The {@code count} digits at {@code from} as a number, or -1 if they are not all digits before {@code len}. */
+    private static int digits(byte[] s, int len, int from, int count) {
+        if (from + count > len) return -1;
+        int v = 0;
+        for (int i = from; i < from + count; i++) {
+            int d = s[i] - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    /** Days since 1970-01-01 for a proleptic Gregorian date (H. Hinnant's algorithm). */
+    private static long daysFromCivil(int y, int m, int d) {
+        y -= m <= 2 ? 1 : 0;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yoe = y - era * 400;
+        long doy = (153L * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+}
@@ -0,0 +1,393 @@
+package com.bgguardianlink.monitor;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Incremental sync of /api/readings. Remembers the newest reading timestamp as a cursor, asks the
+ * server only for readings after it and merges them into a bounded newest-first window.
+ * <p>
+ * The window is held in primitive ring arrays and the body is decoded by {@link ReadingStreamParser},
+ * so a poll that brings nothing new allocates next to nothing beyond the HTTP call itself. Polls ask
+ * for the compact encoding first ({@link ReadingBinaryDecoder}); a server that does not offer it
+ * answers with JSON, which is decoded as before.
+ * <p>
+ * Fetches (polls, pushed readings, restores) run one at a time and do their I/O and decoding
+ * outside the sync's monitor, which is held only to splice a decoded delta in. Readers of the
+ * window never wait on the network.
+ */
+public class ReadingSync {
+
+    public static final int WINDOW_SIZE = 50;
+    /** Prefers the compact encoding; JSON stays acceptable. */
+    static final String ACCEPT = ReadingBinaryDecoder.CONTENT_TYPE + ", application/json;q=0.5";
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+
+    private final OkHttpClient client;
+    private final HttpUrl readingsUrl;
+    private final ReadingStreamParser parser = new ReadingStreamParser();
+    private final ReadingBinaryDecoder binaryDecoder = new ReadingBinaryDecoder();
+
+    // Ring of readings; index head is the newest.
+    private final long[] timestamps = new long[WINDOW_SIZE];
+    private final int[] glucose = new int[WINDOW_SIZE];
+    private final byte[] trends = new byte[WINDOW_SIZE];
+    private final String[] json = new String[WINDOW_SIZE];
+    /** Whether the slot's JSON still has alert fields, which only the newest reading may keep. */
+    private final boolean[] alertJson = new boolean[WINDOW_SIZE];
+    private int head;
+    private int size;
+
+    /** Serializes fetches; guards the staging arrays, the decoders and the cursor URL. */
+    private final Object fetching = new Object();
+
+    // Staging for the delta being decoded (newest first), spliced into the ring afterwards.
+    private final long[] stagedTimestamps = new long[WINDOW_SIZE];
+    private final int[] stagedGlucose = new int[WINDOW_SIZE];
+    private final byte[] stagedTrends = new byte[WINDOW_SIZE];
+    private final String[] stagedJson = new String[WINDOW_SIZE];
+    private final boolean[] stagedAlertJson = new boolean[WINDOW_SIZE];
+    private int staged;
+    private final ReadingFrame stagedLatest = new ReadingFrame();
+
+    private final ReadingFrame latest = new ReadingFrame();
+    private final ReadingStreamParser.Callback stage = this::stage;
+    private final ReadingBinaryDecoder.Callback stageBinary = this::stage;
+    private boolean binary = true;
+
+    /** Written holding both locks, so a fetch may read it holding {@link #fetching} only. */
+    private long cursor = Long.MIN_VALUE;
+    private HttpUrl cursorUrl = null;
+    private long cursorUrlFor = Long.MIN_VALUE;
+
+    private MonitorMetrics metrics;
+    private ReplicaCaller caller;
+    private Consumer<String> bodyLogger;
+    private int bodyLogEvery;
+    private int polls;
+    private volatile boolean lastPollOk;
+    private volatile int lastPollStatus;
+
+    public ReadingSync(OkHttpClient client, String readingsUrl) {
+        this.client = client;
+        this.readingsUrl = HttpUrl.get(readingsUrl);
+    }
+
+    /**
+     * Logs the full response body on every {@code everyNthPoll}-th poll. Meant for debug builds only:
+     * a logged poll materializes the body as a String.
+     */
+    public void setBodyLogger(Consumer<String> logger, int everyNthPoll) {
+        this.bodyLogger = logger;
+        this.bodyLogEvery = Math.max(1, everyNthPoll);
+    }
+
+    /**
+     * Sends polls through {@code caller} (replicas, hedging, retry) instead of straight to the client.
+     * The readings URL must be under the caller's first replica.
+     */
+    public void setCaller(ReplicaCaller caller) {
+        this.caller = caller;
+    }
+
+    /** Whether polls ask for the compact encoding; on by default. JSON is always accepted. */
+    public void setBinaryWireFormat(boolean binary) {
+        this.binary = binary;
+    }
+
+    /** Times each parse into {@link MonitorMetrics#PARSE}. */
+    public void setMetrics(MonitorMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Fetches readings newer than the cursor and merges them into the window.
+     * Returns the number of new readings; the newest of them is available from {@link #latest()}.
+     */
+    public int poll() throws IOException {
+        return poll(0);
+    }
+
+    /** As {@link #poll()}, with the whole call capped at {@code budgetMs} (no cap when 0). */
+    public int poll(long budgetMs) throws IOException {
+        synchronized (fetching) {
+            lastPollOk = false;
+            lastPollStatus = 0;
+            Request.Builder builder = new Request.Builder().url(urlForCursor());
+            if (binary) builder.header("Accept", ACCEPT);
+            // Each ?since= URL is asked for once; caching it would only push useful entries out.
+            if (cursor != Long.MIN_VALUE) builder.cacheControl(NO_STORE);
+            Request request = builder.build();
+            if (caller != null) {
+                try (Response response = caller.execute(request, budgetMs)) {
+                    return read(response);
+                }
+            }
+
+            Call call = client.newCall(request);
+            if (budgetMs > 0) call.timeout().timeout(budgetMs, TimeUnit.MILLISECONDS);
+            try (Response response = call.execute()) {
+                return read(response);
+            }
+        }
+    }
+
+    private int read(Response response) throws IOException {
+        lastPollStatus = response.code();
+        if (!response.isSuccessful()) {
+            return 0;
+        }
+        lastPollOk = true;
+        boolean compact = isCompact(response.body().contentType());
+        if (bodyLogger != null && polls++ % bodyLogEvery == 0) {
+            bodyLogger.accept(compact
+                    ? "(" + response.peekBody(Long.MAX_VALUE).contentLength() + " bytes, " + ReadingBinaryDecoder.CONTENT_TYPE + ")"
+                    : response.peekBody(Long.MAX_VALUE).string());
+        }
+        return compact ? parseBinary(response.body().source()) : parse(response.body().source());
+    }
+
+    static boolean isCompact(MediaType type) {
+        return type != null && ReadingBinaryDecoder.CONTENT_TYPE.equals(type.type() + "/" + type.subtype());
+    }
+
+    private int parseBinary(BufferedSource source) throws IOException {
+        staged = 0;
+        long start = metrics != null ? metrics.begin(MonitorMetrics.PARSE) : 0;
+        try {
+            binaryDecoder.parse(source, stageBinary);
+        } finally {
+            if (metrics != null) metrics.end(MonitorMetrics.PARSE, start);
+        }
+        return splice();
+    }
+
+    /** Merges readings pushed by the server (a JSON array in the /api/readings shape). Returns the number of new readings. */
+    public int ingest(String json) throws IOException {
+        synchronized (fetching) {
+            return parse(new Buffer().writeUtf8(json));
+        }
+    }
+
+    private int parse(BufferedSource source) throws IOException {
+        staged = 0;
+        long start = metrics != null ? metrics.begin(MonitorMetrics.PARSE) : 0;
+        try {
+            parser.parse(source, stage);
+        } finally {
+            if (metrics != null) metrics.end(MonitorMetrics.PARSE, start);
+        }
+        return splice();
+    }
+
+    private HttpUrl urlForCursor() {
+        if (cursor == Long.MIN_VALUE) return readingsUrl;
+        if (cursorUrlFor != cursor) {
+            cursorUrl = readingsUrl.newBuilder()
+                    .addQueryParameter("since", Long.toString(cursor))
+                    .build();
+            cursorUrlFor = cursor;
+        }
+        return cursorUrl;
+    }
+
+    private boolean stage(ReadingFrame frame, ReadingStreamParser parser) {
+        // The delta is newest first; anything at or before the cursor is already held.
+        if (frame.timestampMs != Long.MIN_VALUE && frame.timestampMs <= cursor) return false;
+        return stage(frame, parser.rawJson());
+    }
+
+    private boolean stage(ReadingFrame frame, ReadingBinaryDecoder decoder) {
+        if (frame.timestampMs != Long.MIN_VALUE && frame.timestampMs <= cursor) return false;
+        return stage(frame, decoder.rawJson());
+    }
+
+    private boolean stage(ReadingFrame frame, String rawJson) {
+        if (staged == 0) stagedLatest.copyFrom(frame);
+        stagedTimestamps[staged] = frame.timestampMs;
+        stagedGlucose[staged] = frame.glucose;
+        stagedTrends[staged] = frame.trend;
+        stagedJson[staged] = rawJson;
+        stagedAlertJson[staged] = frame.alert || rawJson.contains("\"alert_");
+        staged++;
+        return staged < WINDOW_SIZE;
+    }
+
+    /**
+     * Pushes the staged delta onto the front of the ring, oldest first. Readings that are no longer
+     * the newest lose their alert fields, so only the head of the window carries an alert.
+     */
+    private synchronized int splice() {
+        if (staged > 0) latest.copyFrom(stagedLatest);
+        for (int i = staged - 1; i >= 0; i--) {
+            demoteHead();
+            head = (head + WINDOW_SIZE - 1) % WINDOW_SIZE;
+            timestamps[head] = stagedTimestamps[i];
+            glucose[head] = stagedGlucose[i];
+            trends[head] = stagedTrends[i];
+            json[head] = stagedJson[i];
+            alertJson[head] = stagedAlertJson[i];
+            stagedJson[i] = null;
+            if (size < WINDOW_SIZE) size++;
+        }
+        // The newest reading whose timestamp parsed; an unreadable head must not pin the cursor,
+        // or the same delta would be fetched on every poll.
+        for (int i = 0; i < staged; i++) {
+            if (stagedTimestamps[i] != Long.MIN_VALUE) cursor = Math.max(cursor, stagedTimestamps[i]);
+        }
+        return staged;
+    }
+
+    /** Strips the alert fields from the current newest reading before a newer one goes in front of it. */
+    private void demoteHead() {
+        if (size > 0 && alertJson[head]) {
+            json[head] = withoutAlert(json[head]);
+            alertJson[head] = false;
+        }
+    }
+
+    /**
+     * Puts a reading restored from the journal at the front of the window and advances the cursor.
+     * Call oldest first; the JSON is rebuilt from the journaled fields.
+     */
+    public void restore(long timestampMs, int mgdl, byte trend) {
+        synchronized (fetching) {
+            restoreLocked(timestampMs, mgdl, trend);
+        }
+    }
+
+    private synchronized void restoreLocked(long timestampMs, int mgdl, byte trend) {
+        if (timestampMs == Long.MIN_VALUE || timestampMs <= cursor) return;
+        demoteHead();
+        head = (head + WINDOW_SIZE - 1) % WINDOW_SIZE;
+        timestamps[head] = timestampMs;
+        glucose[head] = mgdl;
+        trends[head] = trend;
+        json[head] = restoredJson(timestampMs, mgdl, trend);
+        alertJson[head] = false;
+        if (size < WINDOW_SIZE) size++;
+        cursor = timestampMs;
+        latest.clear();
+        latest.timestampMs = timestampMs;
+        latest.glucose = mgdl;
+        latest.trend = trend;
+    }
+
+    /** A reading in the /api/readings shape built from journaled fields. */
+    static String restoredJson(long timestampMs, int mgdl, byte trend) {
+        String trendName = ReadingFrame.trendName(trend);
+        return "{\"id\":\"j_" + timestampMs + "\",\"glucose_value\":" + mgdl
+                + ",\"trend\":" + (trendName == null ? "null" : "\"" + trendName + "\"")
+                + ",\"timestamp\":\"" + ReadingStreamParser.formatIsoMillis(timestampMs) + "\",\"alert\":false}";
+    }
+
+    /** {@code rawJson} without the server's alert fields, as older readings are served. */
+    static String withoutAlert(String rawJson) {
+        try {
+            JSONObject reading = new JSONObject(rawJson);
+            reading.put("alert", false);
+            reading.remove("alert_type");
+            reading.remove("alert_message");
+            reading.remove("alert_volume");
+            return reading.toString();
+        } catch (JSONException e) {
+            return rawJson; // the parser has already read it as an object
+        }
+    }
+
+    /** The newest reading from the last poll that brought new data. */
+    public synchronized ReadingFrame latest() {
+        return latest;
+    }
+
+    /** The merged window as a JSON array, in the same shape the full /api/readings response has. For tests. */
+    synchronized String windowJson() {
+        StringBuilder sb = new StringBuilder(size * 160).append('[');
+        for (int i = 0; i < size; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(json[(head + i) % WINDOW_SIZE]);
+        }
+        return sb.append(']').toString();
+    }
+
+    /** Copies the window out for publishing. */
+    public synchronized ReadingWindow window(long seq, long publishedAtMs) {
+        long[] ts = new long[size];
+        int[] mgdl = new int[size];
+        byte[] tr = new byte[size];
+        String[] js = new String[size];
+        for (int i = 0; i < size; i++) {
+            int slot = (head + i) % WINDOW_SIZE;
+            ts[i] = timestamps[slot];
+            mgdl[i] = glucose[slot];
+            tr[i] = trends[slot];
+            js[i] = json[slot];
+        }
+        return new ReadingWindow(seq, publishedAtMs, ts, mgdl, tr, js);
+    }
+
+    /** Copies out the {@code count} newest readings, oldest first, for the stages after the fetch. */
+    public synchronized ReadingBatch newest(int count, boolean backfill) {
+        int n = Math.min(count, size);
+        long[] ts = new long[n];
+        int[] mgdl = new int[n];
+        byte[] tr = new byte[n];
+        for (int i = 0; i < n; i++) {
+            int slot = (head + n - 1 - i) % WINDOW_SIZE;
+            ts[i] = timestamps[slot];
+            mgdl[i] = glucose[slot];
+            tr[i] = trends[slot];
+        }
+        ReadingFrame copy = new ReadingFrame();
+        copy.copyFrom(latest);
+        return new ReadingBatch(ts, mgdl, tr, copy, backfill);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /** True if the last {@link #poll} got a successful response, whether or not it held new readings. */
+    public boolean lastPollOk() {
+        return lastPollOk;
+    }
+
+    /** HTTP status of the last {@link #poll}'s response, 0 if it got none. */
+    public int lastPollStatus() {
+        return lastPollStatus;
+    }
+
+    /** Epoch millis of the newest reading held, or {@link Long#MIN_VALUE} before the first sync. */
+    public synchronized long getCursor() {
+        return cursor;
+    }
+
+    /** Timestamp of the i-th newest reading. */
+    public synchronized long timestampAt(int i) {
+        return timestamps[(head + i) % WINDOW_SIZE];
+    }
+
+    /** Glucose (mg/dL) of the i-th newest reading. */
+    public synchronized int glucoseAt(int i) {
+        return glucose[(head + i) % WINDOW_SIZE];
+    }
+
+    /** Trend code of the i-th newest reading. */
+    public synchronized byte trendAt(int i) {
+        return trends[(head + i) % WINDOW_SIZE];
+    }
+}
@@ -0,0 +1,59 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * Immutable newest-first copy of the reading window, as published on {@link MonitorBus}. Primitive
+ * fields are typed; the server's JSON for each reading is kept as-is for fields the phone does not
+ * decode (pump battery, active insulin, ...).
+ */
+public final class ReadingWindow {
+
+    /** Increases with every publish, so consumers can tell newer windows from older ones. */
+    public final long seq;
+    /** Monotonic clock (ms) at publish time, for measuring delivery latency. */
+    public final long publishedAtMs;
+
+    private final long[] timestamps;
+    private final int[] glucose;
+    private final byte[] trends;
+    private final String[] json;
+
+    ReadingWindow(long seq, long publishedAtMs, long[] timestamps, int[] glucose, byte[] trends, String[] json) {
+        this.seq = seq;
+        this.publishedAtMs = publishedAtMs;
+        this.timestamps = timestamps;
+        this.glucose = glucose;
+        this.trends = trends;
+        this.json = json;
+    }
+
+    public int size() {
+        return timestamps.length;
+    }
+
+    public long timestampAt(int i) {
+        return timestamps[i];
+    }
+
+    public int glucoseAt(int i) {
+        return glucose[i];
+    }
+
+    public byte trendAt(int i) {
+        return trends[i];
+    }
+
+    /** The reading as the server sent it (or rebuilt from the journal). */
+    public String jsonAt(int i) {
+        return json[i];
+    }
+
+    /** The window as a JSON array in the /api/readings shape. */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(json.length * 160).append('[');
+        for (int i = 0; i < json.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(json[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,285 @@
+package com.bgguardianlink.monitor;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Runs a request against a set of replicas of the same API. A request goes to the first healthy
+ * replica; if it has not answered within that replica's observed p95, a hedge goes to the next one
+ * and whichever answers first wins (the loser is cancelled). A failure hedges at once. Failed
+ * attempts are retried with jittered exponential backoff for as long as the budget allows, rotating
+ * the first replica each time, and each replica has a {@link CircuitBreaker} so a dead one is skipped.
+ *
+ * <p>Requests are addressed to the first replica; the path below its root and the query are carried
+ * over to the others. 5xx responses count as failures; other statuses are returned to the caller.
+ */
+public final class ReplicaCaller {
+
+    /** Until a replica has this many samples its p95 is not trusted and {@link #DEFAULT_HEDGE_MS} is used. */
+    static final int MIN_SAMPLES = 10;
+    static final long DEFAULT_HEDGE_MS = 1_500;
+    static final long MIN_HEDGE_MS = 50;
+    static final long BASE_BACKOFF_MS = 250;
+    static final long MAX_BACKOFF_MS = 4_000;
+    static final int MAX_ATTEMPTS = 4;
+
+    /** One replica: its API root, breaker and request-to-headers latency (microseconds). */
+    public static final class Endpoint {
+        public final HttpUrl base;
+        public final CircuitBreaker breaker = new CircuitBreaker();
+        public final Histogram latency = new Histogram();
+
+        Endpoint(HttpUrl base) {
+            this.base = base;
+        }
+
+        long hedgeDelayMs() {
+            if (latency.count() < MIN_SAMPLES) return DEFAULT_HEDGE_MS;
+            return Math.max(MIN_HEDGE_MS, latency.percentile(95) / 1000);
+        }
+    }
+
+    private final OkHttpClient client;
+    private final List<Endpoint> endpoints;
+    private final String rootPath;
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    public ReplicaCaller(OkHttpClient client, List<String> apiBases) {
+        if (apiBases.isEmpty()) throw new IllegalArgumentException("No endpoints");
+        this.client = client;
+        List<Endpoint> list = new ArrayList<>(apiBases.size());
+        for (String base : apiBases) list.add(new Endpoint(HttpUrl.get(base)));
+        this.endpoints = Collections.unmodifiableList(list);
+        this.rootPath = trimSlash(list.get(0).base.encodedPath());
+    }
+
+    public List<Endpoint> endpoints() {
+        return endpoints;
+    }
+
+    /** Hedge requests sent so far. */
+    public long hedges() {
+        return hedges.get();
+    }
+
+    /** Attempts retried after a failed one. */
+    public long retries() {
+        return retries.get();
+    }
+
+    /**
+     * Returns the first non-5xx response from any replica; the caller closes it. {@code budgetMs}
+     * caps everything including retries (0 for no cap beyond {@link #MAX_ATTEMPTS}).
+     */
+    public Response execute(Request request, long budgetMs) throws IOException {
+        long deadline = budgetMs > 0 ? nowMs() + budgetMs : Long.MAX_VALUE;
+        IOException last = null;
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            if (attempt > 0) {
+                long backoff = backoffMs(attempt);
+                if (nowMs() + backoff >= deadline) break;
+                sleep(backoff);
+                retries.incrementAndGet();
+            }
+            try {
+                return race(request, attempt, deadline);
+            } catch (IOException e) {
+                last = e;
+            }
+        }
+        throw last != null ? last : new InterruptedIOException("No attempt fit in the budget");
+    }
+
+    /** Equal jitter: half of the exponential step is fixed, half random. */
+    static long backoffMs(int attempt) {
+        long step = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(attempt - 1, 16));
+        return step / 2 + ThreadLocalRandom.current().nextLong(step / 2 + 1);
+    }
+
+    /** One attempt: the preferred replica, hedged to the next one. */
+    private Response race(Request request, int attempt, long deadline) throws IOException {
+        long now = nowMs();
+        Endpoint first = null;
+        Endpoint second = null;
+        for (int i = 0; i < endpoints.size() && second == null; i++) {
+            Endpoint e = endpoints.get((attempt + i) % endpoints.size());
+            if (!e.breaker.allowRequest(now)) continue;
+            if (first == null) first = e; else second = e;
+        }
+        if (first == null) {
+            // Every breaker is open: trying the preferred replica beats not trying at all.
+            first = endpoints.get(attempt % endpoints.size());
+        }
+
+        Race race = new Race(deadline);
+        race.start(first, request);
+        long hedgeAt = now + first.hedgeDelayMs();
+        boolean hedged = second == null;
+        IOException failure = null;
+        try {
+            while (race.outstanding > 0) {
+                Outcome o = race.next(hedged ? deadline : Math.min(hedgeAt, deadline));
+                if (o == null) {
+                    if (!hedged && nowMs() < deadline) {
+                        hedges.incrementAndGet();
+                        race.start(second, request);
+                        hedged = true;
+                        continue;
+                    }
+                    throw new InterruptedIOException("Deadline reached");
+                }
+                if (o.response != null) {
+                    race.decide(o.call);
+                    return o.response;
+                }
+                failure = o.error;
+                if (!hedged) {
+                    hedges.incrementAndGet();
+                    race.start(second, request);
+                    hedged = true;
+                }
+            }
+        } finally {
+            race.decide(null);
+            if (!hedged && second != null) second.breaker.onAbandoned();
+        }
+        throw failure != null ? failure : new IOException("No replica answered");
+    }
+
+    private HttpUrl rebase(HttpUrl url, Endpoint endpoint) {
+        if (endpoint == endpoints.get(0)) return url;
+        String path = url.encodedPath();
+        String rest = path.startsWith(rootPath) ? path.substring(rootPath.length()) : path;
+        return endpoint.base.newBuilder()
+                .encodedPath(trimSlash(endpoint.base.encodedPath()) + rest)
+                .encodedQuery(url.encodedQuery())
+                .build();
+    }
+
+    private static String trimSlash(String path) {
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static long nowMs() {
+        return System.nanoTime() / 1_000_000;
+    }
+
+    private static void sleep(long ms) throws InterruptedIOException {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during backoff");
+        }
+    }
+
+    private static final class Outcome {
+        final Call call;
+        final Response response;
+        final IOException error;
+
+        Outcome(Call call, Response response, IOException error) {
+            this.call = call;
+            this.response = response;
+            this.error = error;
+        }
+    }
+
+    /** The calls of one attempt. Outcomes arriving after the race is decided are closed. */
+    private final class Race {
+        private final long deadline;
+        private final List<Call> calls = new ArrayList<>(2);
+        private final ArrayDeque<Outcome> outcomes = new ArrayDeque<>(2);
+        private boolean decided;
+        int outstanding;
+
+        Race(long deadline) {
+            this.deadline = deadline;
+        }
+
+        void start(Endpoint endpoint, Request request) {
+            Call call = client.newCall(request.newBuilder().url(rebase(request.url(), endpoint)).build());
+            if (deadline != Long.MAX_VALUE) {
+                call.timeout().timeout(Math.max(1, deadline - nowMs()), TimeUnit.MILLISECONDS);
+            }
+            calls.add(call);
+            outstanding++;
+            long start = System.nanoTime();
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call c, IOException e) {
+                    if (c.isCanceled()) endpoint.breaker.onAbandoned(); else endpoint.breaker.onFailure(nowMs());
+                    offer(new Outcome(c, null, e));
+                }
+
+                @Override
+                public void onResponse(Call c, Response response) {
+                    if (response.code() >= 500) {
+                        response.close();
+                        endpoint.breaker.onFailure(nowMs());
+                        offer(new Outcome(c, null, new IOException("HTTP " + response.code() + " from " + endpoint.base)));
+                        return;
+                    }
+                    endpoint.latency.record((System.nanoTime() - start) / 1000);
+                    endpoint.breaker.onSuccess();
+                    offer(new Outcome(c, response, null));
+                }
+            });
+        }
+
+        private synchronized void offer(Outcome o) {
+            if (decided) {
+                if (o.response != null) o.response.close();
+                return;
+            }
+            outcomes.add(o);
+            notifyAll();
+        }
+
+        /** The next outcome, or null once {@code untilMs} passes without one. */
+        synchronized Outcome next(long untilMs) throws InterruptedIOException {
+            while (outcomes.isEmpty()) {
+                long wait = untilMs - nowMs();
+                if (wait <= 0) return null;
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted");
+                }
+            }
+            outstanding--;
+            return outcomes.poll();
+        }
+
+        /** Ends the race: cancels every call but the winner's and closes late responses. */
+        void decide(Call winner) {
+            synchronized (this) {
+                if (decided) return;
+                decided = true;
+                for (Outcome o : outcomes) {
+                    if (o.response != null) o.response.close();
+                }
+                outcomes.clear();
+            }
+            for (Call c : calls) {
+                if (c != winner) c.cancel();
+            }
+        }
+    }
+}
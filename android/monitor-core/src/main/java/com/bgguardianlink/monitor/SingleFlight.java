@@ -0,0 +1,122 @@
+package com.bgguardianlink.monitor;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Collapses concurrent calls for the same key into one: the first caller starts the work and every
+ * caller arriving before it finishes gets the same result instead of starting its own. Nothing is
+ * kept once a call completes; the next caller starts afresh.
+ */
+public final class SingleFlight<T> {
+
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    public interface Callback<T> {
+        /** Exactly one of {@code value} (possibly null) or {@code error} applies; error is null on success. */
+        void onResult(T value, Exception error);
+    }
+
+    private static final class Flight<T> {
+        final List<Callback<T>> waiters = new ArrayList<>();
+        boolean done;
+        T value;
+        Exception error;
+    }
+
+    private final Map<String, Flight<T>> inFlight = new HashMap<>();
+    private long started;
+    private long joined;
+
+    /** Runs {@code task} on this thread, or if a call for {@code key} is already running, waits for its result. */
+    public T call(String key, Task<T> task) throws Exception {
+        Flight<T> flight;
+        boolean leader;
+        synchronized (this) {
+            flight = inFlight.get(key);
+            leader = flight == null;
+            if (leader) flight = start(key);
+            else joined++;
+        }
+        if (leader) {
+            run(key, flight, task);
+        } else {
+            synchronized (flight) {
+                while (!flight.done) flight.wait();
+            }
+        }
+        if (flight.error != null) throw flight.error;
+        return flight.value;
+    }
+
+    /**
+     * As {@link #call}, without blocking: a new call runs on {@code executor}, and {@code callback}
+     * gets the result on whichever thread finishes it. Returns true if this started a new call.
+     */
+    public boolean submit(String key, Task<T> task, Executor executor, Callback<T> callback) {
+        Flight<T> flight;
+        synchronized (this) {
+            flight = inFlight.get(key);
+            if (flight != null) {
+                joined++;
+                flight.waiters.add(callback);
+                return false;
+            }
+            flight = start(key);
+            flight.waiters.add(callback);
+        }
+        Flight<T> leading = flight;
+        try {
+            executor.execute(() -> run(key, leading, task));
+        } catch (RejectedExecutionException e) {
+            run(key, leading, () -> {
+                throw e;
+            });
+        }
+        return true;
+    }
+
+    /** Calls that did the work. */
+    public synchronized long started() {
+        return started;
+    }
+
+    /** Calls that shared another call's result instead of doing the work again. */
+    public synchronized long joined() {
+        return joined;
+    }
+
+    private Flight<T> start(String key) {
+        Flight<T> flight = new Flight<>();
+        inFlight.put(key, flight);
+        started++;
+        return flight;
+    }
+
+    private void run(String key, Flight<T> flight, Task<T> task) {
+        T value = null;
+        Exception error = null;
+        try {
+            value = task.call();
+        } catch (Exception e) {
+            error = e;
+        }
+        synchronized (this) {
+            // Removed before anyone is told, so no waiter can join a call that has already reported.
+            inFlight.remove(key);
+        }
+        synchronized (flight) {
+            flight.value = value;
+            flight.error = error;
+            flight.done = true;
+            flight.notifyAll();
+        }
+        for (Callback<T> waiter : flight.waiters) waiter.onResult(value, error);
+    }
+}
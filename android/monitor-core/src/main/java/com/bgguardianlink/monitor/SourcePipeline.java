@@ -0,0 +1,95 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * What the service decides for one source as readings arrive and time passes: the fetch stage's
+ * bookkeeping, the evaluate stage's alert decision and the watchdog's verdicts. The clock is passed
+ * in, so the same decisions can be replayed at any speed; where they run and how an alert sounds
+ * are left to the caller's {@link Alerts}.
+ */
+public final class SourcePipeline {
+
+    /** What {@link #evaluate} did. */
+    public static final int NONE = 0;
+    public static final int RAISED = 1;
+    /** The alert still applies but is not due to repeat. */
+    public static final int HELD = 2;
+    public static final int CLEARED = 3;
+
+    /** Receives the alerts a source raises and takes down. */
+    public interface Alerts {
+        /** {@code readingTimestampMs} is the reading that raised it; {@link Long#MIN_VALUE} for a stale alert. */
+        void raise(MonitorSource source, AlertPayload payload, long readingTimestampMs);
+
+        void clear(MonitorSource source);
+    }
+
+    private SourcePipeline() {
+    }
+
+    /**
+     * The fetch stage's share of {@code added} new readings: copies them out and feeds the poll cadence
+     * and the watchdog. A {@code backfill} (the first sync, with no cursor) only teaches the cadence its
+     * intervals; its readings were not seen as they landed, so they carry no upload lag. Call holding
+     * the source's {@link MonitorSource#fetchLock}. Null if there were none.
+     */
+    public static ReadingBatch fetched(MonitorSource source, int added, boolean backfill, long nowMs, Alerts alerts) {
+        if (added == 0) return null;
+        ReadingBatch batch = source.sync.newest(added, backfill);
+        for (int i = Math.max(0, batch.size() - 8); i < batch.size(); i++) {
+            if (backfill) {
+                source.cadence.onPastReading(batch.timestamps[i], batch.glucose[i], batch.trends[i]);
+            } else {
+                source.cadence.onReading(batch.timestamps[i], nowMs, batch.glucose[i], batch.trends[i]);
+            }
+        }
+        source.watchdog.onReading(batch.latest.timestampMs);
+        watchdog(source, nowMs, alerts);
+        return batch;
+    }
+
+    /**
+     * Restores one journaled reading into the source's window, cadence and alert buffer. It only
+     * teaches the cadence its interval: the reading's age at restart is not an upload lag. Call oldest
+     * first.
+     */
+    public static void restored(MonitorSource source, long timestampMs, int mgdl, byte trend) {
+        source.sync.restore(timestampMs, mgdl, trend);
+        source.cadence.onPastReading(timestampMs, mgdl, trend);
+        source.evaluator.add(timestampMs, mgdl);
+    }
+
+    /** Checks the source's watchdog, raising or clearing the stale alert. Returns the verdict. */
+    public static int watchdog(MonitorSource source, long nowMs, Alerts alerts) {
+        int verdict = source.watchdog.check(nowMs, source.settings);
+        if (verdict == StaleWatchdog.FIRE) {
+            alerts.raise(source, StaleWatchdog.payload(source.settings), Long.MIN_VALUE);
+        } else if (verdict == StaleWatchdog.CLEARED && !source.tracker.isActive()) {
+            alerts.clear(source);
+        }
+        return verdict;
+    }
+
+    /** The evaluate stage's alert decision for a batch; journaling and publishing stay with the caller. */
+    public static int evaluate(MonitorSource source, ReadingBatch batch, long nowMs, Alerts alerts, MonitorMetrics metrics) {
+        for (int i = Math.max(0, batch.size() - AlertEngine.CAPACITY); i < batch.size(); i++) {
+            source.evaluator.add(batch.timestamps[i], batch.glucose[i]);
+        }
+        ReadingFrame latest = batch.latest;
+        AlertSettings settings = source.settings;
+        long start = metrics != null ? metrics.begin(MonitorMetrics.EVALUATE) : 0;
+        AlertPayload payload = source.evaluator.evaluate(latest, settings);
+        if (metrics != null) metrics.end(MonitorMetrics.EVALUATE, start);
+        boolean fire = source.tracker.onEvaluated(payload, latest.glucose, nowMs, settings);
+        if (payload != null && fire) {
+            alerts.raise(source, payload, latest.timestampMs);
+            return RAISED;
+        }
+        if (payload != null) return HELD;
+        if (source.shownAlert != null && !source.tracker.isActive() && !source.watchdog.isAlerting()) {
+            // Back in range past the hysteresis margin: the alarm notification no longer applies.
+            alerts.clear(source);
+            return CLEARED;
+        }
+        return NONE;
+    }
+}
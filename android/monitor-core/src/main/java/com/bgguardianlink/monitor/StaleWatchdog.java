@@ -0,0 +1,80 @@
+package com.bgguardianlink.monitor;
+
+/**
+ * The phone's own "no data" alert for one source. Watches the newest reading's timestamp and reports
+ * when it is older than the stale limit (stale_data_minutes, {@value #DEFAULT_STALE_MS} ms unless set,
+ * as on the server). Alerts once when data goes stale and again every {@value #REPEAT_MS} ms while
+ * it stays so; acknowledging silences it until data returns, snoozing for a while.
+ *
+ * <p>Fed by the fetch stage and checked from a timer of its own, so it fires while a poll is hung.
+ */
+public final class StaleWatchdog {
+
+    public static final long DEFAULT_STALE_MS = 20 * 60_000L;
+    /** The server's cooldown between stale alerts. */
+    public static final long REPEAT_MS = 30 * 60_000L;
+
+    /** What {@link #check} found. */
+    public static final int QUIET = 0;
+    public static final int FIRE = 1;
+    /** Data is back after an alert; its notification can go. */
+    public static final int CLEARED = 2;
+
+    private long lastSeenMs = Long.MIN_VALUE;
+    /** When the current stale spell last alerted, or {@link Long#MIN_VALUE} if it has not. */
+    private long alertedAt = Long.MIN_VALUE;
+    private boolean acknowledged;
+    private long snoozedUntil;
+
+    /** Records the timestamp of a reading the fetch stage saw. */
+    public synchronized void onReading(long timestampMs) {
+        if (timestampMs != Long.MIN_VALUE && timestampMs > lastSeenMs) lastSeenMs = timestampMs;
+    }
+
+    /** {@code settings} may be null, which keeps the server's defaults. */
+    public synchronized int check(long nowMs, AlertSettings settings) {
+        boolean enabled = settings == null || settings.staleEnabled;
+        long staleMs = settings != null ? settings.staleMs : DEFAULT_STALE_MS;
+        if (!enabled || lastSeenMs == Long.MIN_VALUE || nowMs - lastSeenMs < staleMs) {
+            boolean wasAlerting = alertedAt != Long.MIN_VALUE;
+            alertedAt = Long.MIN_VALUE;
+            acknowledged = false;
+            snoozedUntil = 0;
+            return wasAlerting ? CLEARED : QUIET;
+        }
+        if (acknowledged) return QUIET;
+        if (snoozedUntil != 0) {
+            if (nowMs < snoozedUntil) return QUIET;
+            snoozedUntil = 0;
+        } else if (alertedAt != Long.MIN_VALUE && nowMs - alertedAt < REPEAT_MS) {
+            return QUIET;
+        }
+        alertedAt = nowMs;
+        return FIRE;
+    }
+
+    public synchronized void acknowledge() {
+        if (alertedAt != Long.MIN_VALUE) acknowledged = true;
+    }
+
+    public synchronized void snooze(long nowMs, long durationMs) {
+        if (alertedAt != Long.MIN_VALUE) snoozedUntil = nowMs + durationMs;
+    }
+
+    /** True from the first stale alert until data returns. */
+    public synchronized boolean isAlerting() {
+        return alertedAt != Long.MIN_VALUE;
+    }
+
+    public synchronized long lastSeenMs() {
+        return lastSeenMs;
+    }
+
+    /** What to say for a stale alert; {@code settings} may be null. */
+    public static AlertPayload payload(AlertSettings settings) {
+        String userName = settings != null ? settings.userName : "User";
+        float volume = settings != null ? settings.volume : 1f;
+        byte type = ReadingFrame.ALERT_STALE;
+        return new AlertPayload(type, AlertPhrase.lead(type, userName), AlertPhrase.tail(type, null), volume, -1);
+    }
+}
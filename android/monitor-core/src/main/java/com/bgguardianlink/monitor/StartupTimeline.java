@@ -0,0 +1,65 @@
+package com.bgguardianlink.monitor;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * How long the monitor took to come up: each milestone is stamped once, in ms since boot
+ * (elapsedRealtime on the phone), together with what asked for the start.
+ */
+public final class StartupTimeline {
+
+    public static final int PROCESS_START = 0;
+    public static final int START_REQUESTED = 1;
+    public static final int SERVICE_CREATED = 2;
+    /** First successful response from the primary source. */
+    public static final int FIRST_POLL = 3;
+    /** The primary source has settings and a reading, so both a reading alert and a stale-data alert can fire. */
+    public static final int ALERT_CAPABLE = 4;
+    public static final String[] NAMES = {"processStart", "startRequested", "serviceCreated", "firstPoll", "alertCapable"};
+
+    private final long[] at = new long[NAMES.length];
+    private String reason;
+
+    public StartupTimeline() {
+        Arrays.fill(at, -1);
+    }
+
+    /** Stamps {@code milestone} unless already stamped; returns true if this call stamped it. */
+    public synchronized boolean mark(int milestone, long sinceBootMs) {
+        if (at[milestone] >= 0) return false;
+        at[milestone] = sinceBootMs;
+        return true;
+    }
+
+    /** Records the first start request and what made it; later requests change nothing. */
+    public synchronized void requested(String reason, long sinceBootMs) {
+        if (mark(START_REQUESTED, sinceBootMs)) this.reason = reason;
+    }
+
+    /** Ms since boot, or -1 if not reached. */
+    public synchronized long at(int milestone) {
+        return at[milestone];
+    }
+
+    /** Null until a start is requested. */
+    public synchronized String reason() {
+        return reason;
+    }
+
+    /** Ms from the start request to {@code milestone}, or -1 if either is missing. */
+    public synchronized long sinceRequest(int milestone) {
+        long requested = at[START_REQUESTED];
+        return requested < 0 || at[milestone] < 0 ? -1 : at[milestone] - requested;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("start (").append(reason != null ? reason : "not requested").append("):");
+        for (int m = 0; m < NAMES.length; m++) {
+            if (at[m] < 0) continue;
+            sb.append(' ').append(NAMES[m]).append(String.format(Locale.US, " %.1fs", at[m] / 1000.0));
+        }
+        return sb.append(" after boot").toString();
+    }
+}
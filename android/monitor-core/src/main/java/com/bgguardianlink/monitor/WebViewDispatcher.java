@@ -0,0 +1,117 @@
+package com.bgguardianlink.monitor;
+
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing delivery of reading windows to the web UI.
+ * <p>
+ * Every window carries the whole merged history, so only the newest one is worth sending: anything
+ * queued behind it is superseded, and the pending slot is the whole queue. At most one window is
+ * in flight; the UI acknowledges each one once it has applied it, and windows that arrive meanwhile
+ * wait in that slot. An acknowledgement that never comes (page reloaded mid-delivery) is given up on
+ * after {@link #ACK_TIMEOUT_MS}. Publish-to-ack time is recorded as the service-to-WebView latency,
+ * and the first ack after the UI subscribes as time-to-first-render.
+ */
+public class WebViewDispatcher {
+
+    /** Hands a window to the UI. */
+    public interface Target {
+        void deliver(ReadingWindow window);
+    }
+
+    static final long ACK_TIMEOUT_MS = 10_000;
+
+    private final Target target;
+    private final LongSupplier clock;
+    private final Consumer<String> log;
+    private final LatencyRecorder latency;
+
+    private boolean uiReady;
+    private ReadingWindow inFlight;
+    private long sentAt;
+    private ReadingWindow pending;
+    private long lastOffered = Long.MIN_VALUE;
+    private int coalesced;
+    private long uiReadyAt = -1;
+    private long firstRenderMs = -1;
+
+    public WebViewDispatcher(Target target, LongSupplier clock, Consumer<String> log, LatencyRecorder latency) {
+        this.target = target;
+        this.clock = clock;
+        this.log = log;
+        this.latency = latency;
+    }
+
+    /** Queues a window; it replaces anything not yet sent. Windows older than one already seen are ignored. */
+    public void offer(ReadingWindow window) {
+        ReadingWindow next;
+        synchronized (this) {
+            if (window.seq <= lastOffered) return;
+            lastOffered = window.seq;
+            if (pending != null) coalesced++;
+            pending = window;
+            next = take();
+        }
+        send(next);
+    }
+
+    /**
+     * The UI is listening (again). Anything in flight is forgotten and the newest window is sent;
+     * {@code current} supplies it when nothing is queued, so a reloaded page gets state at once.
+     */
+    public void uiReady(Supplier<ReadingWindow> current) {
+        ReadingWindow next;
+        synchronized (this) {
+            uiReady = true;
+            uiReadyAt = clock.getAsLong();
+            firstRenderMs = -1;
+            inFlight = null;
+            if (pending == null && current != null) pending = current.get();
+            next = take();
+        }
+        send(next);
+    }
+
+    /** The UI has applied the window with this sequence number. */
+    public void ack(long seq) {
+        ReadingWindow next;
+        synchronized (this) {
+            if (inFlight == null || inFlight.seq != seq) return;
+            long now = clock.getAsLong();
+            latency.record(now - inFlight.publishedAtMs);
+            if (firstRenderMs < 0) {
+                firstRenderMs = now - uiReadyAt;
+                log.accept("Time to first render after UI subscribed: " + firstRenderMs + "ms");
+            }
+            inFlight = null;
+            next = take();
+        }
+        send(next);
+    }
+
+    /** Milliseconds from the UI subscribing to its first acknowledged window, or -1 if not yet. */
+    public synchronized long firstRenderMs() {
+        return firstRenderMs;
+    }
+
+    /** Picks the next window if the UI can take one now, and marks it in flight. */
+    private ReadingWindow take() {
+        if (!uiReady || pending == null) return null;
+        if (inFlight != null) {
+            if (clock.getAsLong() - sentAt < ACK_TIMEOUT_MS) return null;
+            log.accept("No ack for window " + inFlight.seq + ", sending the newest one");
+        }
+        if (coalesced > 0) log.accept("Coalesced " + coalesced + " superseded window(s) into one delivery");
+        inFlight = pending;
+        sentAt = clock.getAsLong();
+        pending = null;
+        coalesced = 0;
+        return inFlight;
+    }
+
+    private void send(ReadingWindow window) {
+        if (window != null) target.deliver(window);
+    }
+}
@@ -0,0 +1,59 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AlertEngineTest {
+
+    private static final long MIN = 60_000L;
+    private static final long T0 = 1_767_225_600_000L;
+
+    private final AlertEngine engine = new AlertEngine();
+
+    @Test
+    public void lowAndHighUseDisplayUnitThresholds() throws Exception {
+        AlertSettings mmol = AlertSettings.parse("{\"bg_unit\":\"mmol\",\"user_name\":\"Sam\"}");
+        engine.add(T0, 69); // 3.8 mmol/L
+        assertEquals(ReadingFrame.ALERT_LOW, engine.evaluate(mmol));
+        assertEquals("Hey Sam, your blood sugar is low. Current reading is 3.8. Please check your glucose.",
+                engine.message(ReadingFrame.ALERT_LOW, mmol));
+
+        engine.add(T0 + 5 * MIN, 181);
+        assertEquals(ReadingFrame.ALERT_NONE, engine.evaluate(
+                AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"high_alert_enabled\":false}")));
+        assertEquals(ReadingFrame.ALERT_HIGH, engine.evaluate(AlertSettings.parse("{\"bg_unit\":\"mgdl\"}")));
+    }
+
+    @Test
+    public void rapidFallComparesWithNewestReadingFifteenMinutesBack() throws Exception {
+        AlertSettings s = AlertSettings.parse("{\"bg_unit\":\"mmol\",\"rapid_fall_enabled\":true}");
+        int[] values = {200, 190, 170, 160, 150};
+        for (int i = 0; i < values.length; i++) engine.add(T0 + i * 5 * MIN, values[i]);
+        // 150 vs 190 fifteen minutes earlier: 8.3 - 10.5 = -2.2 mmol/L
+        assertEquals(ReadingFrame.ALERT_RAPID_FALL, engine.evaluate(s));
+
+        engine.add(T0 + 25 * MIN, 165);
+        assertEquals(ReadingFrame.ALERT_NONE, engine.evaluate(s));
+    }
+
+    @Test
+    public void rapidChecksOffUnlessOneIsExplicitlyEnabled() throws Exception {
+        engine.add(T0, 100);
+        engine.add(T0 + 15 * MIN, 160);
+        assertEquals(ReadingFrame.ALERT_NONE, engine.evaluate(AlertSettings.parse("{\"bg_unit\":\"mmol\"}")));
+        assertEquals(ReadingFrame.ALERT_RAPID_RISE,
+                engine.evaluate(AlertSettings.parse("{\"bg_unit\":\"mmol\",\"rapid_rise_enabled\":true}")));
+    }
+
+    @Test
+    public void lagCursorSurvivesRingWraparound() throws Exception {
+        AlertSettings s = AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"high_alert_enabled\":false,"
+                + "\"rapid_rise_enabled\":true,\"rapid_rise_threshold\":30}");
+        for (int i = 0; i < 3 * AlertEngine.CAPACITY; i++) engine.add(T0 + i * MIN, 100 + i);
+        // 1-minute readings: the reading 15 minutes back is 15 mg/dL lower.
+        assertEquals(ReadingFrame.ALERT_NONE, engine.evaluate(s));
+        engine.add(T0 + 3 * AlertEngine.CAPACITY * MIN, 100 + 3 * AlertEngine.CAPACITY + 20);
+        assertEquals(ReadingFrame.ALERT_RAPID_RISE, engine.evaluate(s));
+    }
+}
@@ -0,0 +1,36 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AlertPayloadTest {
+
+    private static AlertPayload alert(byte type) {
+        return new AlertPayload(type, "alert", 1f, -1);
+    }
+
+    @Test
+    public void queuedLowSurvivesALaterStaleRaise() {
+        AlertPayload low = alert(ReadingFrame.ALERT_LOW);
+        assertSame(low, AlertPayload.undelivered(low, alert(ReadingFrame.ALERT_STALE)));
+        assertSame(low, AlertPayload.undelivered(low, alert(ReadingFrame.ALERT_HIGH)));
+    }
+
+    @Test
+    public void clearTakesDownOnlyAQueuedStaleRaise() {
+        AlertPayload fall = alert(ReadingFrame.ALERT_RAPID_FALL);
+        assertSame(fall, AlertPayload.undelivered(fall, null));
+        assertNull(AlertPayload.undelivered(alert(ReadingFrame.ALERT_STALE), null));
+    }
+
+    @Test
+    public void raiseAtLeastAsSevereReplacesTheQueuedOne() {
+        AlertPayload stale = alert(ReadingFrame.ALERT_STALE);
+        AlertPayload low = alert(ReadingFrame.ALERT_LOW);
+        AlertPayload lower = alert(ReadingFrame.ALERT_LOW);
+        assertSame(low, AlertPayload.undelivered(stale, low));
+        assertSame(lower, AlertPayload.undelivered(low, lower));
+        assertSame(low, AlertPayload.undelivered(null, low));
+    }
+}
@@ -0,0 +1,46 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AlertPhraseTest {
+
+    @Test
+    public void evaluatorSplitsMessageIntoRenderableLeadAndTail() throws Exception {
+        AlertEvaluator evaluator = new AlertEvaluator();
+        evaluator.add(1_767_225_600_000L, 62);
+        ReadingFrame latest = new ReadingFrame();
+        latest.timestampMs = 1_767_225_600_000L;
+        latest.glucose = 62;
+
+        AlertPayload payload = evaluator.evaluate(latest,
+                AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"user_name\":\"Sam\"}"));
+        assertEquals(AlertPhrase.lead(ReadingFrame.ALERT_LOW, "Sam"), payload.lead);
+        assertEquals("62. Please check your glucose.", payload.tail);
+        assertEquals("Hey Sam, your blood sugar is low. Current reading is 62. Please check your glucose.",
+                payload.message);
+    }
+
+    @Test
+    public void serverAlertHasNoLead() {
+        ReadingFrame latest = new ReadingFrame();
+        latest.alert = true;
+        latest.alertMessage = "Low!";
+        AlertPayload payload = AlertEvaluator.fromServer(latest);
+        assertNull(payload.lead);
+        assertEquals("Low!", payload.message);
+    }
+
+    @Test
+    public void cacheKeyChangesWithEngineAndLocale() {
+        String lead = AlertPhrase.lead(ReadingFrame.ALERT_HIGH, "Sam");
+        String key = AlertPhrase.cacheKey(lead, "com.google.android.tts", "en-US");
+        assertEquals(key, AlertPhrase.cacheKey(lead, "com.google.android.tts", "en-US"));
+        assertTrue(key.matches("[0-9a-f]{40}"));
+        assertNotEquals(key, AlertPhrase.cacheKey(lead, "com.samsung.SMT", "en-US"));
+        assertNotEquals(key, AlertPhrase.cacheKey(lead, "com.google.android.tts", "en-GB"));
+        assertNotEquals(key, AlertPhrase.cacheKey(AlertPhrase.lead(ReadingFrame.ALERT_HIGH, "Alex"),
+                "com.google.android.tts", "en-US"));
+    }
+}
@@ -0,0 +1,71 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class AlertTrackerTest {
+
+    private static final long MIN = 60_000L;
+    private static final long T0 = 1_767_225_600_000L;
+
+    private final AlertTracker tracker = new AlertTracker();
+
+    private static AlertPayload alert(byte type) {
+        return new AlertPayload(type, "alert", 1f, -1);
+    }
+
+    @Test
+    public void firingAlertRepeatsOnlyAfterRenotifyIntervalOrEscalation() throws Exception {
+        AlertSettings s = AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"alert_renotify_minutes\":20}");
+        assertTrue(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 65, T0, s));
+        assertFalse(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 64, T0 + 5 * MIN, s));
+        assertFalse(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 62, T0 + 10 * MIN, s));
+        assertTrue("fell 10 mg/dL", tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 55, T0 + 15 * MIN, s));
+        assertFalse(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 56, T0 + 30 * MIN, s));
+        assertTrue("re-notify", tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 56, T0 + 35 * MIN, s));
+        assertEquals(3, tracker.suppressed());
+    }
+
+    @Test
+    public void lowReArmsOnlyPastHysteresisMargin() throws Exception {
+        AlertSettings s = AlertSettings.parse("{\"bg_unit\":\"mgdl\"}");
+        assertTrue(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 68, T0, s));
+        tracker.onEvaluated(null, 72, T0 + 5 * MIN, s);
+        assertEquals(AlertTracker.FIRING, tracker.state(ReadingFrame.ALERT_LOW));
+        assertFalse("bounced below without re-arming", tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 69, T0 + 10 * MIN, s));
+
+        tracker.onEvaluated(null, 76, T0 + 15 * MIN, s);
+        assertEquals(AlertTracker.ARMED, tracker.state(ReadingFrame.ALERT_LOW));
+        assertFalse(tracker.isActive());
+        assertTrue(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 69, T0 + 20 * MIN, s));
+    }
+
+    @Test
+    public void acknowledgedAlertStaysQuietUnlessItEscalates() throws Exception {
+        AlertSettings s = AlertSettings.parse("{\"bg_unit\":\"mgdl\"}");
+        tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 65, T0, s);
+        tracker.acknowledge(ReadingFrame.ALERT_LOW);
+        assertFalse(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 64, T0 + 60 * MIN, s));
+        assertTrue(tracker.onEvaluated(alert(ReadingFrame.ALERT_LOW), 54, T0 + 65 * MIN, s));
+        assertEquals(AlertTracker.FIRING, tracker.state(ReadingFrame.ALERT_LOW));
+    }
+
+    @Test
+    public void snoozeExpires() throws Exception {
+        AlertSettings s = AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"alert_renotify_minutes\":5}");
+        tracker.onEvaluated(alert(ReadingFrame.ALERT_HIGH), 250, T0, s);
+        tracker.snooze(ReadingFrame.ALERT_HIGH, T0, 30 * MIN);
+        assertFalse(tracker.onEvaluated(alert(ReadingFrame.ALERT_HIGH), 255, T0 + 25 * MIN, s));
+        assertTrue(tracker.onEvaluated(alert(ReadingFrame.ALERT_HIGH), 255, T0 + 30 * MIN, s));
+    }
+
+    @Test
+    public void rapidChangeReArmsAfterTwoClearReadings() {
+        assertTrue(tracker.onEvaluated(alert(ReadingFrame.ALERT_RAPID_FALL), 120, T0, null));
+        tracker.onEvaluated(null, 118, T0 + 5 * MIN, null);
+        assertTrue(tracker.isActive());
+        tracker.onEvaluated(null, 118, T0 + 10 * MIN, null);
+        assertFalse(tracker.isActive());
+    }
+}
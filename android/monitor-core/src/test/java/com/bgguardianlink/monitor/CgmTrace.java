@@ -0,0 +1,175 @@
+package com.bgguardianlink.monitor;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A CGM trace to replay: readings oldest first, plus the spells during which the server answers
+ * with errors. Built from scratch with {@link Builder} or from a recorded /api/readings body.
+ */
+final class CgmTrace {
+
+    static final long FIVE_MIN = 5 * 60_000L;
+
+    final long[] timestamps;
+    final int[] glucose;
+    /** Pairs of [from, to) epoch ms during which every request fails with a 503. */
+    final long[] outages;
+
+    private CgmTrace(long[] timestamps, int[] glucose, long[] outages) {
+        this.timestamps = timestamps;
+        this.glucose = glucose;
+        this.outages = outages;
+    }
+
+    int size() {
+        return timestamps.length;
+    }
+
+    long start() {
+        return timestamps[0];
+    }
+
+    long end() {
+        return timestamps[timestamps.length - 1];
+    }
+
+    boolean inOutage(long nowMs) {
+        for (int i = 0; i < outages.length; i += 2) {
+            if (nowMs >= outages[i] && nowMs < outages[i + 1]) return true;
+        }
+        return false;
+    }
+
+    /** Index of the reading at {@code timestampMs}, or -1. */
+    int indexOf(long timestampMs) {
+        int i = Arrays.binarySearch(timestamps, timestampMs);
+        return i >= 0 ? i : -1;
+    }
+
+    /** The reading at {@code i} in the /api/readings shape. */
+    String json(int i) {
+        return "{\"id\":" + i + ",\"timestamp\":\"" + Instant.ofEpochMilli(timestamps[i])
+                + "\",\"glucose_value\":" + glucose[i] + ",\"trend\":\"" + trend(i) + "\",\"alert\":false}";
+    }
+
+    private String trend(int i) {
+        if (i == 0) return "FLAT";
+        double perFive = (glucose[i] - glucose[i - 1]) * (double) FIVE_MIN / (timestamps[i] - timestamps[i - 1]);
+        if (perFive <= -15) return "DOWN_DOUBLE";
+        if (perFive <= -7) return "DOWN";
+        if (perFive >= 15) return "UP_DOUBLE";
+        if (perFive >= 7) return "UP";
+        return "FLAT";
+    }
+
+    /** A recorded /api/readings body (newest first, as served), with no outages. */
+    static CgmTrace fromJson(String json) throws Exception {
+        JSONArray array = new JSONArray(json);
+        int n = array.length();
+        long[] ts = new long[n];
+        int[] g = new int[n];
+        for (int i = 0; i < n; i++) {
+            JSONObject o = array.getJSONObject(n - 1 - i);
+            ts[i] = Instant.parse(o.getString("timestamp")).toEpochMilli();
+            g[i] = (int) Math.round(o.getDouble("glucose_value"));
+        }
+        return new CgmTrace(ts, g, new long[0]);
+    }
+
+    /**
+     * A week of five-minute readings: a daily swing with sensor noise, a low each night, a fast drop
+     * every other afternoon, a high after dinner, a sensor gap every third day and a short server
+     * outage every other day.
+     */
+    static CgmTrace week(long startMs, long seed) {
+        Builder b = new Builder(startMs, seed);
+        for (int day = 0; day < 7; day++) {
+            b.ramp(120, 130).steady(120);                   // easing down overnight
+            b.ramp(40, 58).steady(35).ramp(30, 110);        // night low
+            if (day % 3 == 1) b.gap(45);                    // sensor lost
+            b.ramp(180, 150).steady(150);
+            if (day % 2 == 0) {
+                b.ramp(20, 85).ramp(30, 120);               // fast drop that stays above the low
+            } else {
+                b.steady(50);
+            }
+            b.ramp(60, 215).steady(45).ramp(90, 125);       // high after dinner
+            b.fillTo(startMs + (day + 1) * 24 * 60 * 60_000L, 125);
+            if (day % 2 == 1) b.outage(startMs + day * 24 * 60 * 60_000L + 9 * 60 * 60_000L, 10);
+        }
+        return b.build();
+    }
+
+    static final class Builder {
+        private final Random random;
+        private final List<long[]> readings = new ArrayList<>();
+        private final List<Long> outages = new ArrayList<>();
+        private long next;
+        private double level;
+
+        Builder(long startMs, long seed) {
+            this.random = new Random(seed);
+            this.next = startMs;
+            this.level = 125;
+        }
+
+        /** Moves linearly to {@code mgdl} over {@code minutes}. */
+        Builder ramp(int minutes, double mgdl) {
+            double from = level;
+            int steps = Math.max(1, minutes / 5);
+            for (int s = 1; s <= steps; s++) add(from + (mgdl - from) * s / steps);
+            return this;
+        }
+
+        /** Holds the current level for {@code minutes}. */
+        Builder steady(int minutes) {
+            for (int s = 0; s < minutes / 5; s++) add(level);
+            return this;
+        }
+
+        /** No readings for {@code minutes}; the level is kept. */
+        Builder gap(int minutes) {
+            next += minutes * 60_000L;
+            return this;
+        }
+
+        /** Steady at {@code mgdl} until {@code endMs}. */
+        Builder fillTo(long endMs, double mgdl) {
+            level = mgdl;
+            while (next < endMs) add(mgdl);
+            return this;
+        }
+
+        Builder outage(long fromMs, int minutes) {
+            outages.add(fromMs);
+            outages.add(fromMs + minutes * 60_000L);
+            return this;
+        }
+
+        private void add(double mgdl) {
+            level = mgdl;
+            int noisy = (int) Math.round(mgdl + random.nextGaussian() * 2);
+            readings.add(new long[] {next, noisy});
+            next += FIVE_MIN;
+        }
+
+        CgmTrace build() {
+            long[] ts = new long[readings.size()];
+            int[] g = new int[readings.size()];
+            for (int i = 0; i < ts.length; i++) {
+                ts[i] = readings.get(i)[0];
+                g[i] = (int) readings.get(i)[1];
+            }
+            long[] o = new long[outages.size()];
+            for (int i = 0; i < o.length; i++) o[i] = outages.get(i);
+            return new CgmTrace(ts, g, o);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterThresholdAndLetsOneTrialThroughAfterCoolDown() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            assertTrue(breaker.allowRequest(0));
+            breaker.onFailure(0);
+        }
+        assertEquals(CircuitBreaker.OPEN, breaker.state());
+        assertFalse(breaker.allowRequest(CircuitBreaker.BASE_OPEN_MS - 1));
+
+        assertTrue(breaker.allowRequest(CircuitBreaker.BASE_OPEN_MS));
+        assertEquals(CircuitBreaker.HALF_OPEN, breaker.state());
+        assertFalse("one trial at a time", breaker.allowRequest(CircuitBreaker.BASE_OPEN_MS));
+
+        // Failed trial: open again for twice as long.
+        breaker.onFailure(CircuitBreaker.BASE_OPEN_MS);
+        assertFalse(breaker.allowRequest(3 * CircuitBreaker.BASE_OPEN_MS - 1));
+        assertTrue(breaker.allowRequest(3 * CircuitBreaker.BASE_OPEN_MS));
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onSuccess();
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.CLOSED, breaker.state());
+    }
+}
@@ -0,0 +1,50 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class GlanceTest {
+
+    private static final long T0 = 1_767_225_600_000L;
+
+    private static ReadingWindow window(long ts, int mgdl, byte trend) {
+        return new ReadingWindow(1, 0, new long[] {ts}, new int[] {mgdl}, new byte[] {trend}, new String[] {"{}"});
+    }
+
+    @Test
+    public void showsNewestReadingInTheUsersUnit() throws Exception {
+        ReadingWindow w = window(T0, 97, ReadingFrame.TREND_UP);
+        Glance mmol = Glance.of(w, null, null, T0 + 30_000);
+        assertEquals("5.4", mmol.value);
+        assertEquals("mmol/L", mmol.unit);
+        assertEquals("\u2191", mmol.trend);
+        assertEquals("just now", mmol.age);
+        assertNull(mmol.alert);
+        assertFalse(mmol.stale);
+
+        AlertSettings mgdl = AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"user_name\":\"Sam\"}");
+        AlertPayload alert = StaleWatchdog.payload(mgdl);
+        Glance g = Glance.of(w, mgdl, alert, T0 + 25 * 60_000);
+        assertEquals("97", g.value);
+        assertEquals("25 min ago", g.age);
+        assertTrue(g.stale);
+        assertEquals(alert.message, g.alert);
+    }
+
+    @Test
+    public void equalOnlyWhenItWouldLookTheSame() {
+        ReadingWindow w = window(T0, 97, ReadingFrame.TREND_FLAT);
+        assertEquals(Glance.of(w, null, null, T0 + 60_000), Glance.of(w, null, null, T0 + 119_000));
+        assertNotEquals(Glance.of(w, null, null, T0 + 60_000), Glance.of(w, null, null, T0 + 120_000));
+        assertNotEquals(Glance.of(w, null, null, T0), Glance.of(window(T0, 110, ReadingFrame.TREND_FLAT), null, null, T0));
+    }
+
+    @Test
+    public void placeholderWithoutReadings() {
+        Glance g = Glance.of(null, null, null, T0);
+        assertEquals("--", g.value);
+        assertEquals("", g.trend);
+        assertEquals("", g.age);
+    }
+}
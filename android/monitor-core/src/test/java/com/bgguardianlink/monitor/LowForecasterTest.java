@@ -0,0 +1,122 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Replays synthetic 5-minute CGM traces through {@link LowForecaster} and checks how early it
+ * warns before real lows and how often it warns for falls that level off above the threshold.
+ */
+public class LowForecasterTest {
+
+    private static final long MIN = 60_000L;
+    private static final double LOW = 70;
+
+    @Test
+    public void steadyFallIsForecastAhead() {
+        LowForecaster f = new LowForecaster();
+        for (int i = 0; i < 6; i++) f.add(i * 5 * MIN, 130 - i * 10);
+        // 2 mg/dL per minute from 80: crosses 70 in about 5 minutes.
+        assertEquals(-2.0, f.slope(), 1e-9);
+        assertEquals(40.0, f.forecast(20), 1e-9);
+        assertEquals(5, f.minutesToLow(LOW));
+    }
+
+    @Test
+    public void flatOrRisingNeverPredictsLow() {
+        LowForecaster f = new LowForecaster();
+        for (int i = 0; i < 12; i++) f.add(i * 5 * MIN, 75 + (i % 2));
+        assertEquals(-1, f.minutesToLow(LOW));
+        for (int i = 12; i < 18; i++) f.add(i * 5 * MIN, 75 + i);
+        assertEquals(-1, f.minutesToLow(LOW));
+    }
+
+    @Test
+    public void longGapRestartsModel() {
+        LowForecaster f = new LowForecaster();
+        for (int i = 0; i < 6; i++) f.add(i * 5 * MIN, 150 - i * 10);
+        f.add(90 * MIN, 100);
+        assertTrue(Double.isNaN(f.slope()));
+    }
+
+    @Test
+    public void replayReportsLeadTimeAndFalsePositives() {
+        Random random = new Random(42);
+        List<Long> leads = new ArrayList<>();
+        int lows = 0, detected = 0, nearMisses = 0, falseAlarms = 0;
+
+        for (int episode = 0; episode < 400; episode++) {
+            boolean trueLow = episode % 2 == 0;
+            double start = 120 + random.nextDouble() * 60;
+            double nadir = trueLow ? 40 + random.nextDouble() * 25 : 85 + random.nextDouble() * 20;
+            double rate = 0.8 + random.nextDouble() * 2.2;
+            int[] trace = episode(random, start, nadir, rate);
+
+            LowForecaster f = new LowForecaster();
+            long alertAt = -1, crossedAt = -1;
+            for (int i = 0; i < trace.length; i++) {
+                long t = i * 5 * MIN;
+                f.add(t, trace[i]);
+                if (alertAt < 0 && crossedAt < 0 && f.minutesToLow(LOW) >= 0) alertAt = t;
+                if (crossedAt < 0 && trace[i] < LOW) crossedAt = t;
+            }
+
+            if (crossedAt >= 0) {
+                lows++;
+                if (alertAt >= 0 && alertAt < crossedAt) {
+                    detected++;
+                    leads.add((crossedAt - alertAt) / MIN);
+                }
+            } else {
+                nearMisses++;
+                if (alertAt >= 0) falseAlarms++;
+            }
+        }
+
+        Collections.sort(leads);
+        long medianLead = leads.get(leads.size() / 2);
+        double detection = detected / (double) lows;
+        double falsePositiveRate = falseAlarms / (double) nearMisses;
+        String summary = String.format("%d lows, detected %.0f%%, median lead %d min, p10 lead %d min; "
+                        + "%d near misses, false-positive rate %.0f%%",
+                lows, detection * 100, medianLead, leads.get(leads.size() / 10),
+                nearMisses, falsePositiveRate * 100);
+
+        assertTrue("detection: " + summary, detection >= 0.9);
+        assertTrue("median lead: " + summary, medianLead >= 10);
+        assertTrue("false positives: " + summary, falsePositiveRate <= 0.25);
+    }
+
+    /**
+     * Stable for an hour, then a fall that eases into the nadir (as insulin action tails off),
+     * then recovery. Sensor noise is Gaussian with a 3 mg/dL standard deviation.
+     */
+    private static int[] episode(Random random, double start, double nadir, double rate) {
+        List<Integer> values = new ArrayList<>();
+        double g = start;
+        for (int i = 0; i < 12; i++) values.add(noisy(random, g));
+        // Exponential approach: initial slope is -rate, time constant = (start - nadir) / rate.
+        double tau = (start - nadir) / rate;
+        for (int minute = 5; minute <= 4 * tau + 30; minute += 5) {
+            g = nadir + (start - nadir) * Math.exp(-minute / tau);
+            values.add(noisy(random, g));
+        }
+        for (int i = 0; i < 8; i++) {
+            g += 5;
+            values.add(noisy(random, g));
+        }
+        int[] trace = new int[values.size()];
+        for (int i = 0; i < trace.length; i++) trace[i] = values.get(i);
+        return trace;
+    }
+
+    private static int noisy(Random random, double g) {
+        return (int) Math.round(g + random.nextGaussian() * 3);
+    }
+}
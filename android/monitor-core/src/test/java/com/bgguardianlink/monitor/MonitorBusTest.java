@@ -0,0 +1,51 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MonitorBusTest {
+
+    @Test
+    public void lateSubscriberGetsSnapshotThenUpdates() {
+        MonitorBus<String> bus = new MonitorBus<>();
+        List<String> early = new ArrayList<>();
+        bus.subscribe(early::add);
+        bus.publish("a");
+        bus.publish("b");
+
+        List<String> late = new ArrayList<>();
+        Runnable unsubscribe = bus.subscribe(late::add);
+        assertEquals(List.of("b"), late);
+
+        bus.publish("c");
+        unsubscribe.run();
+        bus.publish("d");
+        assertEquals(List.of("a", "b", "c", "d"), early);
+        assertEquals(List.of("b", "c"), late);
+        assertEquals(1, bus.subscriberCount());
+    }
+
+    @Test
+    public void subscriberGetsThePublishedWindowInProcess() {
+        ReadingSync sync = new ReadingSync(null, "http://localhost/api/readings");
+        long t0 = 1_767_261_600_000L;
+        for (int i = 0; i < ReadingSync.WINDOW_SIZE; i++) sync.restore(t0 + i * 300_000L, 100 + i, ReadingFrame.TREND_FLAT);
+
+        MonitorBus<ReadingWindow> bus = new MonitorBus<>();
+        List<ReadingWindow> received = new ArrayList<>();
+        bus.subscribe(received::add);
+        ReadingWindow window = sync.window(7, 0);
+        bus.publish(window);
+
+        assertEquals(1, received.size());
+        assertSame(window, received.get(0));
+        assertSame(window, bus.snapshot());
+        assertEquals(7, received.get(0).seq);
+        assertEquals(ReadingSync.WINDOW_SIZE, received.get(0).size());
+        assertEquals(100 + ReadingSync.WINDOW_SIZE - 1, received.get(0).glucoseAt(0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+public class MonitorMetricsTest {
+
+    @Test
+    public void traceSectionsAreBuiltOnce() {
+        List<String> sections = new ArrayList<>();
+        MonitorMetrics metrics = new MonitorMetrics(new MonitorMetrics.Tracer() {
+            @Override
+            public void begin(String section) {
+                sections.add(section);
+            }
+
+            @Override
+            public void end() {
+            }
+        });
+        for (int i = 0; i < 2; i++) metrics.end(MonitorMetrics.PARSE, metrics.begin(MonitorMetrics.PARSE));
+
+        assertEquals("BGG:parse", sections.get(0));
+        assertSame(sections.get(0), sections.get(1));
+    }
+
+    @Test
+    public void histogramPercentilesStayWithinBucketError() {
+        Histogram h = new Histogram();
+        Random random = new Random(7);
+        long[] values = new long[10_000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 20); // 1 .. ~5e8
+            h.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (int p : new int[]{50, 90, 99}) {
+            long exact = values[(int) Math.ceil(p / 100.0 * values.length) - 1];
+            long reported = h.percentile(p);
+            assertTrue(p + ": " + reported + " vs " + exact, reported >= exact && reported <= exact * 1.125 + 1);
+        }
+        assertEquals(values[values.length - 1], h.max());
+        assertEquals(values.length, h.count());
+    }
+
+    @Test
+    public void bucketBoundariesRoundTrip() {
+        for (long v : new long[]{0, 7, 8, 15, 16, 31, 1000, 123_456_789, Long.MAX_VALUE}) {
+            int i = Histogram.index(v);
+            assertTrue(v + " below its bucket", Histogram.lowerBound(i) <= v);
+            assertTrue(v + " above its bucket", i + 1 >= Histogram.BUCKETS || v < Histogram.lowerBound(i + 1));
+        }
+    }
+
+    @Test
+    public void eventListenerRecordsCallPhases() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/readings", exchange -> {
+            byte[] body = "[]".getBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        try {
+            MonitorMetrics metrics = new MonitorMetrics(null);
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .eventListenerFactory(MetricsEventListener.factory(metrics))
+                    .build();
+            String url = "http://localhost:" + server.getAddress().getPort() + "/api/readings";
+            for (int i = 0; i < 3; i++) {
+                try (Response response = client.newCall(new Request.Builder().url(url).build()).execute()) {
+                    response.body().string();
+                }
+            }
+            // One connection, reused: DNS and connect once, TTFB and download every call.
+            assertEquals(1, metrics.histogram(MonitorMetrics.DNS).count());
+            assertEquals(1, metrics.histogram(MonitorMetrics.CONNECT).count());
+            assertEquals(3, metrics.histogram(MonitorMetrics.TTFB).count());
+            assertEquals(3, metrics.histogram(MonitorMetrics.DOWNLOAD).count());
+
+            StringWriter dump = new StringWriter();
+            metrics.dump(new PrintWriter(dump));
+            assertTrue(dump.toString(), dump.toString().contains("ttfb"));
+            assertFalse(dump.toString(), dump.toString().contains("tts_start"));
+        } finally {
+            server.stop(0);
+        }
+    }
+}
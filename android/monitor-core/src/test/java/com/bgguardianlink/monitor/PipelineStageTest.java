@@ -0,0 +1,106 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class PipelineStageTest {
+
+    @Test
+    public void blockedStageMergesPerKeyWithoutBlockingOrDropping() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch drained = new CountDownLatch(1);
+        List<String> handled = new ArrayList<>();
+        PipelineStage<String> stage = new PipelineStage<>("test", 1, item -> item.charAt(0),
+                (older, newer) -> older + "+" + newer, item -> {
+            if (item.equals("a0")) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            synchronized (handled) {
+                handled.add(item);
+            }
+            if (item.startsWith("b")) drained.countDown();
+        });
+        stage.start();
+        stage.offer("a0");
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        for (String item : new String[] {"a1", "b1", "a2", "b2"}) assertTrue(stage.offer(item));
+        assertTrue("offer must not block", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(2, stage.depth());
+        assertEquals(2, stage.merged());
+        assertEquals(1, stage.overflowed());
+        assertTrue(stage.busyMs() >= 0);
+
+        release.countDown();
+        assertTrue(drained.await(1, TimeUnit.SECONDS));
+        synchronized (handled) {
+            assertEquals(Arrays.asList("a0", "a1+a2", "b1+b2"), handled);
+        }
+        stage.stop();
+        assertFalse(stage.offer("a3"));
+    }
+
+    @Test
+    public void afterQueuedRunsOnceEarlierItemsAreHandled() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch ran = new CountDownLatch(1);
+        List<String> handled = new ArrayList<>();
+        PipelineStage<String> stage = new PipelineStage<>("test", 4, item -> item, (older, newer) -> newer, item -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            synchronized (handled) {
+                handled.add(item);
+            }
+        });
+        stage.start();
+        stage.offer("a");
+        stage.offer("b");
+        stage.afterQueued(() -> {
+            synchronized (handled) {
+                handled.add("barrier");
+            }
+            ran.countDown();
+        });
+        stage.offer("c");
+
+        release.countDown();
+        assertTrue(ran.await(1, TimeUnit.SECONDS));
+        synchronized (handled) {
+            assertEquals(Arrays.asList("a", "b", "barrier"), handled.subList(0, 3));
+        }
+        stage.stop();
+        assertFalse(stage.afterQueued(() -> { }));
+    }
+
+    @Test
+    public void failingItemDoesNotStopTheStage() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        PipelineStage<String> stage = new PipelineStage<>("test", 4, item -> item, (older, newer) -> newer, item -> {
+            if (item.equals("bad")) throw new IllegalArgumentException(item);
+            done.countDown();
+        });
+        stage.start();
+        stage.offer("bad");
+        stage.offer("good");
+        assertTrue(done.await(1, TimeUnit.SECONDS));
+        assertEquals(1, stage.failed());
+        stage.stop();
+    }
+}
@@ -0,0 +1,86 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PollPlannerTest {
+
+    private static MonitorSource source(String id, long dueAt) {
+        MonitorSource s = new MonitorSource(new MonitorSource.Config(id, id, "https://example.com/api"), null);
+        s.dueAt = dueAt;
+        return s;
+    }
+
+    @Test
+    public void sourcesDueWithinWindowShareTheWakeup() {
+        MonitorSource a = source("a", 1_000);
+        MonitorSource b = source("b", 1_000 + PollPlanner.COALESCE_WINDOW_MS - 1);
+        MonitorSource c = source("c", 1_000 + PollPlanner.COALESCE_WINDOW_MS + 1);
+        List<MonitorSource> all = Arrays.asList(a, b, c);
+
+        assertEquals(1_000, PollPlanner.nextDelay(all, 0));
+        assertEquals(Arrays.asList(a, b), PollPlanner.due(all, 1_000));
+        assertEquals(0, PollPlanner.nextDelay(all, 5_000));
+    }
+
+    @Test
+    public void sourceStillPollingIsPassedOver() {
+        MonitorSource slow = source("slow", 0);
+        MonitorSource other = source("other", 60_000);
+        List<MonitorSource> all = Arrays.asList(slow, other);
+        slow.polling.set(true);
+
+        assertEquals(60_000, PollPlanner.nextDelay(all, 0));
+        assertEquals(Arrays.asList(other), PollPlanner.due(all, 60_000));
+        slow.polling.set(false);
+        assertEquals(Arrays.asList(slow, other), PollPlanner.due(all, 60_000));
+    }
+
+    @Test
+    public void dozensOfSourcesCollapseIntoFewWakeups() {
+        // 40 people on a 5-minute cadence, first polls spread over a minute.
+        List<MonitorSource> all = new ArrayList<>();
+        for (int i = 0; i < 40; i++) all.add(source("p" + i, i * 1_500L));
+        long now = 0;
+        int wakeups = 0;
+        int polls = 0;
+        while (now < 60 * 60_000L) {
+            now += PollPlanner.nextDelay(all, now);
+            wakeups++;
+            for (MonitorSource s : PollPlanner.due(all, now)) {
+                s.dueAt = now + PollScheduler.DEFAULT_CADENCE_MS;
+                polls++;
+            }
+        }
+        assertTrue(polls >= 40 * 12);
+        assertTrue("wakeups " + wakeups, wakeups <= 2 * 13);
+    }
+
+    @Test
+    public void sourceListRoundTripsAndRejectsDuplicates() throws Exception {
+        List<MonitorSource.Config> configs = MonitorSource.Config.parseList(
+                "[{\"id\":\"sam\",\"name\":\"Sam\",\"url\":\"https://a.example/api/\"},{\"id\":\"alex\",\"url\":\"https://b.example/api\"}]");
+        assertEquals("https://a.example/api", configs.get(0).apiBase);
+        assertEquals("alex", configs.get(1).name);
+        List<MonitorSource.Config> again = MonitorSource.Config.parseList(MonitorSource.Config.toJson(configs));
+        assertEquals("Sam", again.get(0).name);
+        assertEquals("https://b.example/api/readings", new MonitorSource(again.get(1), null).readingsUrl());
+
+        try {
+            MonitorSource.Config.parseList("[{\"id\":\"a\",\"url\":\"https://x/api\"},{\"id\":\"a\",\"url\":\"https://y/api\"}]");
+            fail();
+        } catch (JSONException expected) {
+        }
+        try {
+            MonitorSource.Config.parseList("[{\"id\":\"a b\",\"url\":\"https://x/api\"}]");
+            fail();
+        } catch (JSONException expected) {
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PollSchedulerTest {
+
+    private static final long MIN = 60_000L;
+    private final PollScheduler scheduler = new PollScheduler();
+
+    @Test
+    public void aimsJustAfterPredictedArrival() {
+        long t0 = 1_000_000_000L;
+        // Readings every 5 min, each seen 40 s after it was taken.
+        for (int i = 0; i < 6; i++) {
+            scheduler.onReading(t0 + i * 5 * MIN, t0 + i * 5 * MIN + 40_000, 120, ReadingFrame.TREND_FLAT);
+        }
+        long now = t0 + 25 * MIN + 40_000;
+
+        assertEquals(5 * MIN, scheduler.cadence());
+        assertEquals(5 * MIN - 40_000 + 40_000 + PollScheduler.GRACE_MS, scheduler.nextDelay(now, true));
+    }
+
+    @Test
+    public void pollsAimedByTheLearnedLagDoNotDriftLate() {
+        long t0 = 1_000_000_000L;
+        long uploadLag = 60_000;
+        long now = t0 + uploadLag;
+        scheduler.onReading(t0, now, 120, ReadingFrame.TREND_FLAT);
+        // A day of polls against a server where each reading lands a minute after it is taken.
+        long next = t0 + 5 * MIN;
+        boolean got = true;
+        long worst = 0;
+        for (int i = 0; i < 2_000 && next < t0 + 24 * 60 * MIN; i++) {
+            now += scheduler.nextDelay(now, got);
+            got = next + uploadLag <= now;
+            if (got) {
+                if (next > t0 + 12 * 60 * MIN) worst = Math.max(worst, now - next);
+                scheduler.onReading(next, now, 120, ReadingFrame.TREND_FLAT);
+                next += 5 * MIN;
+            }
+        }
+        assertTrue("seen " + worst / 1000 + " s after it was taken", worst <= uploadLag + 2 * PollScheduler.GRACE_MS);
+    }
+
+    @Test
+    public void overestimatedLagIsWorkedOffWithinAnHour() {
+        long t0 = 1_000_000_000L;
+        // Two readings that took four minutes to upload teach a lag far above the real one.
+        scheduler.onReading(t0, t0 + 4 * MIN, 120, ReadingFrame.TREND_FLAT);
+        scheduler.onReading(t0 + 5 * MIN, t0 + 9 * MIN, 120, ReadingFrame.TREND_FLAT);
+        long uploadLag = 40_000;
+        long now = t0 + 9 * MIN;
+        long next = t0 + 10 * MIN;
+        boolean got = true;
+        long lastLate = 0;
+        for (int i = 0; i < 200 && next < t0 + 4 * 60 * MIN; i++) {
+            now += scheduler.nextDelay(now, got);
+            got = next + uploadLag <= now;
+            if (got) {
+                if (now - next > uploadLag + 2 * PollScheduler.GRACE_MS) lastLate = next;
+                scheduler.onReading(next, now, 120, ReadingFrame.TREND_FLAT);
+                next += 5 * MIN;
+            }
+        }
+        // Worked off by a doubling probe within about ten cadences, where a 3:1 average took hours.
+        assertTrue("seen late until " + (lastLate - t0) / MIN + " min", lastLate <= t0 + 60 * MIN);
+    }
+
+    @Test
+    public void pastReadingsTeachTheCadenceButNoUploadLag() {
+        long t0 = 1_000_000_000L;
+        // A first sync four minutes after the newest reading.
+        for (int i = 0; i < 6; i++) {
+            scheduler.onPastReading(t0 + i * 5 * MIN, 120, ReadingFrame.TREND_FLAT);
+        }
+        long now = t0 + 29 * MIN;
+
+        assertEquals(5 * MIN, scheduler.cadence());
+        assertEquals(t0 + 30 * MIN, scheduler.expectedArrival());
+        assertEquals(MIN + PollScheduler.GRACE_MS, scheduler.nextDelay(now, true));
+    }
+
+    @Test
+    public void retriesQuicklyWhenExpectedReadingIsLate() {
+        long t0 = 1_000_000_000L;
+        for (int i = 0; i < 3; i++) {
+            scheduler.onReading(t0 + i * 5 * MIN, t0 + i * 5 * MIN, 120, ReadingFrame.TREND_FLAT);
+        }
+        long overdue = t0 + 15 * MIN + PollScheduler.GRACE_MS;
+
+        assertEquals(PollScheduler.RETRY_MS, scheduler.nextDelay(overdue, false));
+        assertEquals(2 * PollScheduler.RETRY_MS, scheduler.nextDelay(overdue + 20_000, false));
+    }
+
+    @Test
+    public void tightensNearLowOrWhenFalling() {
+        long t0 = 1_000_000_000L;
+        scheduler.onReading(t0, t0, 120, ReadingFrame.TREND_FLAT);
+        assertFalse(scheduler.isUrgent());
+
+        scheduler.onReading(t0 + 5 * MIN, t0 + 5 * MIN, 100, ReadingFrame.TREND_DOWN);
+        assertTrue(scheduler.isUrgent());
+        long overdue = t0 + 10 * MIN + PollScheduler.URGENT_GRACE_MS;
+        assertEquals(PollScheduler.URGENT_RETRY_MS, scheduler.nextDelay(overdue, false));
+    }
+
+    @Test
+    public void nearThresholdFollowsTheUsersSettings() throws Exception {
+        long t0 = 1_000_000_000L;
+        scheduler.onReading(t0, t0, 125, ReadingFrame.TREND_FLAT);
+        scheduler.onReading(t0 + 5 * MIN, t0 + 5 * MIN, 125, ReadingFrame.TREND_FLAT);
+        AlertSettings settings = AlertSettings.parse("{\"bg_unit\":\"mgdl\",\"high_threshold\":140}");
+
+        assertFalse(scheduler.isUrgent());
+        assertTrue(scheduler.isUrgent(settings));
+        long overdue = t0 + 10 * MIN + PollScheduler.GRACE_MS;
+        assertEquals(PollScheduler.URGENT_RETRY_MS, scheduler.nextDelay(overdue, false, settings));
+    }
+
+    @Test
+    public void fallsBackToDefaultCadenceWithoutHistory() {
+        assertEquals(PollScheduler.DEFAULT_CADENCE_MS, scheduler.nextDelay(0, false));
+    }
+}
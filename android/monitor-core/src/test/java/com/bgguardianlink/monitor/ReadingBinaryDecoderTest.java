@@ -0,0 +1,216 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.OkHttpClient;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Checks that the compact encoding decodes to the same readings as the JSON it stands in for, is
+ * smaller on the wire, and that {@link ReadingSync} asks for it and reads it.
+ */
+public class ReadingBinaryDecoderTest {
+
+    private static final String JSON = "["
+            + "{\"id\":\"r3\",\"timestamp\":\"2026-01-01T00:10:00.000Z\",\"glucose_value\":72,\"trend\":\"DOWN_DOUBLE\","
+            + "\"alert\":true,\"alert_type\":\"low\",\"alert_message\":\"Hey Sam, \\\"low\\\" \u00e9\",\"alert_volume\":0.8,"
+            + "\"pump_battery\":40,\"meta\":{\"a\":[1,2]}},"
+            + "{\"id\":\"r2\",\"timestamp\":\"2026-01-01T00:05:00.000Z\",\"glucose_value\":95,\"trend\":\"DOWN\",\"alert\":false},"
+            + "{\"id\":\"r1\",\"timestamp\":\"2026-01-01T00:00:00.000Z\",\"glucose_value\":101,\"pump_battery\":null}"
+            + "]";
+
+    @Test
+    public void truncatedBodyIsRejected() throws Exception {
+        byte[] encoded = ReadingBinaryEncoder.encode(JSON);
+        for (int cut = 0; cut < encoded.length; cut++) {
+            try {
+                new ReadingBinaryDecoder().parse(new Buffer().write(encoded, 0, cut), (frame, decoder) -> true);
+                fail("decoded a body cut at " + cut + " of " + encoded.length);
+            } catch (IOException expected) {
+                // EOFException or a count that exceeds the body
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void unknownVersionIsRejected() throws Exception {
+        byte[] encoded = ReadingBinaryEncoder.encode(JSON);
+        encoded[0] = 2;
+        new ReadingBinaryDecoder().parse(new Buffer().write(encoded), (frame, decoder) -> true);
+    }
+
+    @Test(expected = IOException.class)
+    public void oversizedCountIsRejectedBeforeAllocating() throws Exception {
+        // Version 1, then a count of Integer.MAX_VALUE, then a few bytes of garbage.
+        Buffer body = new Buffer().writeByte(1)
+                .write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07})
+                .writeUtf8("<html>");
+        new ReadingBinaryDecoder().parse(body, (frame, decoder) -> true);
+    }
+
+    @Test(expected = IOException.class)
+    public void oversizedFieldCountIsRejectedBeforeAllocating() throws Exception {
+        // Version 1, one reading (ts 0, glucose 0, trend, no alert), then Integer.MAX_VALUE fields.
+        Buffer body = new Buffer().write(new byte[] {1, 1, 0, 0, 0, 0})
+                .write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07});
+        new ReadingBinaryDecoder().parse(body, (frame, decoder) -> true);
+    }
+
+    @Test
+    public void decodesToTheSameReadingsAsJson() throws Exception {
+        List<ReadingFrame> fromJson = new ArrayList<>();
+        List<String> jsonRaw = new ArrayList<>();
+        new ReadingStreamParser().parse(new Buffer().writeUtf8(JSON), (frame, parser) -> {
+            fromJson.add(copy(frame));
+            jsonRaw.add(parser.rawJson());
+            return true;
+        });
+        List<ReadingFrame> fromBinary = new ArrayList<>();
+        List<String> binaryRaw = new ArrayList<>();
+        byte[] encoded = ReadingBinaryEncoder.encode(JSON);
+        assertEquals(3, new ReadingBinaryDecoder().parse(new Buffer().write(encoded), (frame, decoder) -> {
+            fromBinary.add(copy(frame));
+            binaryRaw.add(decoder.rawJson());
+            return true;
+        }));
+
+        for (int i = 0; i < 3; i++) {
+            assertFrameEquals(fromJson.get(i), fromBinary.get(i));
+            JSONObject a = new JSONObject(jsonRaw.get(i));
+            JSONObject b = new JSONObject(binaryRaw.get(i));
+            // "alert":false is always spelled out; every field the JSON had must survive.
+            assertTrue(b.keySet().containsAll(a.keySet()));
+            for (String key : a.keySet()) assertEquals(key, String.valueOf(a.get(key)), String.valueOf(b.get(key)));
+        }
+        assertEquals(new JSONObject("{\"a\":[1,2]}").toString(), new JSONObject(binaryRaw.get(0)).getJSONObject("meta").toString());
+        assertTrue(encoded.length < JSON.length() / 2);
+    }
+
+    @Test
+    public void compactEncodingIsSmallerOnTheWire() throws Exception {
+        // A day and a half of 5-minute readings in the server's shape, newest first.
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 499; i >= 0; i--) {
+            if (sb.length() > 1) sb.append(',');
+            int mgdl = 120 + (int) (60 * Math.sin(i / 12.0));
+            sb.append("{\"id\":").append(i).append(",\"glucose_value\":").append(mgdl)
+                    .append(",\"trend\":\"FLAT\",\"timestamp\":\"")
+                    .append(Instant.ofEpochMilli(1_767_261_600_000L + i * 300_000L))
+                    .append("\",\"source\":\"carelink\",\"alert\":").append(mgdl < 70).append('}');
+        }
+        byte[] json = sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+        byte[] binary = ReadingBinaryEncoder.encode(new String(json, StandardCharsets.UTF_8));
+
+        String sizes = "json " + json.length + " B (gzip " + gzipped(json) + " B), binary "
+                + binary.length + " B (gzip " + gzipped(binary) + " B)";
+        assertTrue(sizes, binary.length * 4 < json.length);
+        assertTrue(sizes, gzipped(binary) * 2 < gzipped(json));
+    }
+
+    @Test
+    public void decodesWhatTheServerEncodes() throws Exception {
+        // encodeReadings() from server/readingCodec.cjs for two readings, the newest carrying an alert.
+        byte[] body = ByteString.decodeHex("010280bff4fef962c0cf24f001133401025006486920e280a8"
+                + "02026964013301320c70756d705f6261747465727902353000").toByteArray();
+        List<ReadingFrame> frames = new ArrayList<>();
+        List<String> raw = new ArrayList<>();
+        new ReadingBinaryDecoder().parse(new Buffer().write(body), (frame, decoder) -> {
+            frames.add(copy(frame));
+            raw.add(decoder.rawJson());
+            return true;
+        });
+
+        assertEquals(2, frames.size());
+        assertEquals(1_700_000_600_000L, frames.get(0).timestampMs);
+        assertEquals(1_700_000_300_000L, frames.get(1).timestampMs);
+        assertEquals(120, frames.get(0).glucose);
+        assertEquals(110, frames.get(1).glucose);
+        assertEquals(ReadingFrame.TREND_UP, frames.get(0).trend);
+        assertEquals(ReadingFrame.TREND_FLAT, frames.get(1).trend);
+        assertTrue(frames.get(0).alert);
+        assertEquals(ReadingFrame.ALERT_HIGH, frames.get(0).alertType);
+        assertEquals("Hi \u2028", frames.get(0).alertMessage);
+        assertEquals(0.8f, frames.get(0).alertVolume, 1e-6);
+        assertFalse(frames.get(1).alert);
+        JSONObject newest = new JSONObject(raw.get(0));
+        assertEquals(3, newest.getInt("id"));
+        assertEquals(50, newest.getInt("pump_battery"));
+        assertFalse(new JSONObject(raw.get(1)).has("pump_battery"));
+    }
+
+    @Test
+    public void syncAsksForAndReadsTheCompactEncoding() throws Exception {
+        List<String> accepts = new ArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/readings", exchange -> {
+            accepts.add(exchange.getRequestHeaders().getFirst("Accept"));
+            byte[] bytes;
+            try {
+                bytes = ReadingBinaryEncoder.encode(JSON);
+            } catch (Exception e) {
+                throw new java.io.IOException(e);
+            }
+            exchange.getResponseHeaders().add("Content-Type", ReadingBinaryDecoder.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        try {
+            ReadingSync sync = new ReadingSync(new OkHttpClient(),
+                    "http://127.0.0.1:" + server.getAddress().getPort() + "/api/readings");
+            assertEquals(3, sync.poll());
+
+            assertEquals(ReadingSync.ACCEPT, accepts.get(0));
+            assertEquals(72, sync.latest().glucose);
+            assertEquals("low", ReadingFrame.alertTypeName(sync.latest().alertType));
+            JSONArray window = new JSONArray(sync.windowJson());
+            assertEquals("r3", window.getJSONObject(0).getString("id"));
+            assertEquals(101, window.getJSONObject(2).getInt("glucose_value"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static int gzipped(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+
+    private static ReadingFrame copy(ReadingFrame frame) {
+        ReadingFrame copy = new ReadingFrame();
+        copy.copyFrom(frame);
+        return copy;
+    }
+
+    private static void assertFrameEquals(ReadingFrame expected, ReadingFrame actual) {
+        assertEquals(expected.timestampMs, actual.timestampMs);
+        assertEquals(expected.glucose, actual.glucose);
+        assertEquals(expected.trend, actual.trend);
+        assertEquals(expected.alert, actual.alert);
+        assertEquals(expected.alertType, actual.alertType);
+        assertEquals(expected.alertMessage, actual.alertMessage);
+        assertEquals(expected.alertVolume, actual.alertVolume, 0.005f);
+    }
+}
@@ -0,0 +1,82 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ReadingHistoryTest {
+
+    private static final long T0 = 1_767_225_600_000L; // 2026-01-01T00:00:00Z, hour-aligned
+    private static final long FIVE_MIN = 5 * 60_000L;
+    private static final long HOUR = 60 * 60_000L;
+
+    @Test
+    public void rollsUpQuarterHoursAndHours() {
+        ReadingHistory history = new ReadingHistory();
+        int[] mgdl = {60, 100, 200, 120, 130, 140, 150, 160, 170, 180, 190, 65};
+        for (int i = 0; i < mgdl.length; i++) history.add(T0 + i * FIVE_MIN, mgdl[i]);
+
+        ReadingHistory.Range quarters = history.range(T0, T0 + HOUR, ReadingHistory.QUARTER_HOUR);
+        assertEquals(4, quarters.size);
+        assertEquals(T0, quarters.start[0]);
+        assertEquals(3, quarters.count[0]);
+        assertEquals(60, quarters.min[0]);
+        assertEquals(200, quarters.max[0]);
+        assertEquals(120.0, quarters.mean[0], 1e-9);
+
+        ReadingHistory.Range hours = history.range(T0, T0 + HOUR, ReadingHistory.HOUR);
+        assertEquals(1, hours.size);
+        assertEquals(12, hours.count[0]);
+        assertEquals(2, hours.below);
+        assertEquals(2, hours.above); // 180 itself is in range
+        assertEquals(8, hours.inRange);
+    }
+
+    @Test
+    public void rangeIsInclusiveAndIncludesTheBucketHoldingFrom() {
+        ReadingHistory history = new ReadingHistory();
+        for (int i = 0; i < 48; i++) history.add(T0 + i * FIVE_MIN, 100 + i);
+
+        ReadingHistory.Range raw = history.range(T0 + 10 * FIVE_MIN, T0 + 20 * FIVE_MIN, ReadingHistory.RAW);
+        assertEquals(11, raw.size);
+        assertEquals(110, raw.min[0]);
+        assertEquals(120, raw.max[10]);
+
+        // 00:50 falls in the 00:45 quarter, which is returned whole.
+        ReadingHistory.Range quarters = history.range(T0 + 10 * FIVE_MIN, T0 + 2 * HOUR, ReadingHistory.QUARTER_HOUR);
+        assertEquals(T0 + 45 * 60_000L, quarters.start[0]);
+        assertEquals(6, quarters.size);
+
+        assertEquals(0, history.range(T0 + 5 * HOUR, T0 + 6 * HOUR, ReadingHistory.RAW).size);
+    }
+
+    @Test
+    public void ignoresOutOfOrderReadingsAndEvictsTheOldest() {
+        ReadingHistory history = new ReadingHistory();
+        long days = 40;
+        for (long t = T0; t < T0 + days * 24 * HOUR; t += FIVE_MIN) history.add(t, 120);
+        history.add(T0 + HOUR, 50);
+
+        assertEquals(30 * 24 * 12, history.size(ReadingHistory.RAW));
+        assertEquals(40 * 24 * 4, history.size(ReadingHistory.QUARTER_HOUR));
+        assertEquals(40 * 24, history.size(ReadingHistory.HOUR));
+        ReadingHistory.Range all = history.range(T0, Long.MAX_VALUE, ReadingHistory.HOUR);
+        assertEquals(0, all.below);
+        assertEquals(T0, all.start[0]);
+        assertEquals(T0 + 10 * 24 * HOUR, history.range(T0, Long.MAX_VALUE, ReadingHistory.RAW).start[0]);
+    }
+
+    @Test
+    public void autoPicksTheFinestResolutionThatCoversTheRange() {
+        ReadingHistory history = new ReadingHistory();
+        long end = T0 + 40 * 24 * HOUR;
+        for (long t = T0; t < end; t += FIVE_MIN) history.add(t, 120);
+
+        assertEquals(ReadingHistory.RAW, history.autoResolution(end - 24 * HOUR, end));
+        assertEquals(ReadingHistory.QUARTER_HOUR, history.autoResolution(end - 5 * 24 * HOUR, end));
+        assertEquals(ReadingHistory.HOUR, history.autoResolution(end - 30 * 24 * HOUR, end));
+        // Raw would be few enough points but no longer reaches back that far.
+        assertEquals(ReadingHistory.QUARTER_HOUR, history.autoResolution(T0 + HOUR, T0 + 2 * HOUR));
+        assertEquals(-1, ReadingHistory.resolution("5m"));
+    }
+}
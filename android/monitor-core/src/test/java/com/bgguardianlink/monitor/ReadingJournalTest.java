@@ -0,0 +1,111 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReadingJournalTest {
+
+    private static final long T0 = 1_767_261_600_000L; // 2026-01-01T10:00:00Z
+    private static final long FIVE_MIN = 5 * 60_000L;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void readingsSurviveReopen() throws Exception {
+        File dir = tmp.newFolder("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir)) {
+            for (int i = 0; i < 10; i++) journal.append(T0 + i * FIVE_MIN + i, 100 + i, ReadingFrame.TREND_FLAT);
+            journal.append(T0, 999, ReadingFrame.TREND_UP); // older than the last one, ignored
+        }
+
+        List<long[]> read = new ArrayList<>();
+        try (ReadingJournal journal = new ReadingJournal(dir)) {
+            assertEquals(T0 + 9 * FIVE_MIN + 9, journal.lastTimestamp());
+            assertEquals(4, journal.readLatest(4, (ts, mgdl, trend) -> read.add(new long[]{ts, mgdl, trend})));
+        }
+        assertEquals(T0 + 6 * FIVE_MIN + 6, read.get(0)[0]);
+        assertEquals(109, read.get(3)[1]);
+        assertEquals(ReadingFrame.TREND_FLAT, read.get(3)[2]);
+    }
+
+    @Test
+    public void rehydrateLeavesThePollScheduleAlone() throws Exception {
+        File dir = tmp.newFolder("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir)) {
+            for (int i = 0; i < 8; i++) journal.append(T0 + i * FIVE_MIN, 120, ReadingFrame.TREND_FLAT);
+        }
+        MonitorSource source = new MonitorSource(new MonitorSource.Config("sam", "Sam", "https://example.com/api"), null);
+        try (ReadingJournal journal = new ReadingJournal(dir)) {
+            journal.readLatest(ReadingSync.WINDOW_SIZE, (ts, mgdl, trend) -> SourcePipeline.restored(source, ts, mgdl, trend));
+        }
+        // Restarted four minutes after the newest reading; that age must not be learned as upload lag.
+        long now = T0 + 7 * FIVE_MIN + 4 * 60_000L;
+
+        assertEquals(FIVE_MIN, source.cadence.cadence());
+        assertEquals(T0 + 8 * FIVE_MIN, source.cadence.expectedArrival());
+        assertEquals(60_000L + PollScheduler.GRACE_MS, source.cadence.nextDelay(now, true));
+    }
+
+    @Test
+    public void tornTailIsCutOffOnOpen() throws Exception {
+        File dir = tmp.newFolder("journal");
+        try (ReadingJournal journal = new ReadingJournal(dir)) {
+            for (int i = 0; i < 5; i++) journal.append(T0 + i * FIVE_MIN, 120, ReadingFrame.TREND_DOWN);
+        }
+        File segment = dir.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // Half of a sixth record, as if the process died mid-write.
+            file.seek(file.length());
+            file.write(new byte[]{(byte) 0xe0, (byte) 0xa7});
+        }
+
+        try (ReadingJournal journal = new ReadingJournal(dir)) {
+            assertEquals(T0 + 4 * FIVE_MIN, journal.lastTimestamp());
+            journal.append(T0 + 5 * FIVE_MIN, 110, ReadingFrame.TREND_DOWN);
+            int[] last = {0};
+            assertEquals(6, journal.readAll((ts, mgdl, trend) -> last[0] = mgdl));
+            assertEquals(110, last[0]);
+        }
+    }
+
+    @Test
+    public void rollsSegmentsAndDropsTheOldest() throws Exception {
+        File dir = tmp.newFolder("journal");
+        int total = 0;
+        try (ReadingJournal journal = new ReadingJournal(dir, 1024)) {
+            // Enough readings to fill more 1 KB segments than are kept.
+            for (long ts = T0; total < 2000; ts += FIVE_MIN + total % 7) {
+                journal.append(ts, 60 + total % 300, (byte) (total % 6));
+                total++;
+            }
+            assertEquals(ReadingJournal.MAX_SEGMENTS, dir.list().length);
+
+            long[] newest = {0};
+            assertEquals(ReadingSync.WINDOW_SIZE, journal.readLatest(ReadingSync.WINDOW_SIZE, (ts, mgdl, trend) -> newest[0] = ts));
+            assertEquals(journal.lastTimestamp(), newest[0]);
+
+            int kept = journal.readAll((ts, mgdl, trend) -> { });
+            double bytesPerReading = journal.bytesOnDisk() / (double) kept;
+            assertTrue(kept < total);
+            assertTrue("bytes/reading " + bytesPerReading, bytesPerReading < 8);
+        }
+    }
+
+    @Test
+    public void restoredJsonMatchesServerShape() {
+        assertEquals("{\"id\":\"j_" + T0 + "\",\"glucose_value\":104,\"trend\":\"UP\","
+                        + "\"timestamp\":\"2026-01-01T10:00:00.000Z\",\"alert\":false}",
+                ReadingSync.restoredJson(T0, 104, ReadingFrame.TREND_UP));
+        byte[] iso = ReadingStreamParser.formatIsoMillis(T0 + 12_345).getBytes();
+        assertEquals(T0 + 12_345, ReadingStreamParser.parseIsoMillis(iso, iso.length));
+    }
+}
@@ -0,0 +1,93 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okio.Buffer;
+
+public class ReadingStreamParserTest {
+
+    private final ReadingStreamParser parser = new ReadingStreamParser();
+
+    @Test
+    public void decodesPrimitiveFieldsAndRawJson() throws Exception {
+        String head = "{\"id\":\"r_1\",\"glucose_value\":62.4,\"trend\":\"DOWN_DOUBLE\","
+                + "\"meta\":{\"tags\":[1,\"}\"]},\"timestamp\":\"2026-01-01T10:05:00.250Z\","
+                + "\"alert\":true,\"alert_type\":\"low\",\"alert_message\":\"Hey \\\"Sam\\\", low\","
+                + "\"alert_volume\":0.5}";
+        String body = "[ " + head + " ,\n {\"glucose_value\":80,\"trend\":null,\"alert\":false,"
+                + "\"timestamp\":\"2026-01-01T05:00:00-05:00\"} ]";
+        List<String> raws = new ArrayList<>();
+        List<Long> timestamps = new ArrayList<>();
+        ReadingFrame first = new ReadingFrame();
+
+        int n = parser.parse(new Buffer().writeUtf8(body), (frame, p) -> {
+            if (raws.isEmpty()) first.copyFrom(frame);
+            raws.add(p.rawJson());
+            timestamps.add(frame.timestampMs);
+            return true;
+        });
+
+        assertEquals(2, n);
+        assertEquals(62, first.glucose);
+        assertEquals(ReadingFrame.TREND_DOWN_DOUBLE, first.trend);
+        assertTrue(first.alert);
+        assertEquals(ReadingFrame.ALERT_LOW, first.alertType);
+        assertEquals("Hey \"Sam\", low", first.alertMessage);
+        assertEquals(0.5f, first.alertVolume, 0f);
+        assertEquals(head, raws.get(0));
+        assertEquals(1767261900250L, (long) timestamps.get(0));
+        assertEquals(1767261600000L, (long) timestamps.get(1));
+    }
+
+    @Test
+    public void stopsAfterHeadReading() throws Exception {
+        Buffer body = new Buffer().writeUtf8("[{\"glucose_value\":101},{\"glucose_value\":102},");
+        ReadingFrame out = new ReadingFrame();
+
+        assertTrue(parser.parseHead(body, out));
+        assertEquals(101, out.glucose);
+        assertEquals(",{\"glucose_value\":102},", body.readUtf8());
+    }
+
+    @Test
+    public void emptyArrayDeliversNothing() throws Exception {
+        assertFalse(parser.parseHead(new Buffer().writeUtf8("[]"), new ReadingFrame()));
+    }
+
+    @Test
+    public void combinesEscapedSurrogatePairs() throws Exception {
+        String body = "[{\"alert_message\":\"low \\ud83d\\udea8 \\ud83d now\"}]";
+        ReadingFrame out = new ReadingFrame();
+
+        assertTrue(parser.parseHead(new Buffer().writeUtf8(body), out));
+        assertEquals("low \ud83d\udea8 \ufffd now", out.alertMessage);
+    }
+
+    @Test
+    public void rejectsMalformedUnicodeEscape() {
+        String body = "[{\"alert_message\":\"low \\u00zz\"}]";
+
+        try {
+            parser.parseHead(new Buffer().writeUtf8(body), new ReadingFrame());
+            fail("expected a syntax error");
+        } catch (IOException expected) {
+            assertEquals("Unexpected 'z' in readings payload", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void timestampDigitsStopAtTextLength() {
+        byte[] s = "2026-01-01T10:05:00Z".getBytes();
+        // Bytes past len are left over from a longer string, as in the parser's scratch.
+        assertEquals(Long.MIN_VALUE, ReadingStreamParser.parseIsoMillis(s, 17));
+        assertEquals(Long.MIN_VALUE, ReadingStreamParser.parseIsoMillis("2026-01-01T10:05+05:".getBytes(), 20));
+        assertEquals(1767261900000L - 5 * 3_600_000L,
+                ReadingStreamParser.parseIsoMillis("2026-01-01T10:05+05".getBytes(), 19));
+    }
+}
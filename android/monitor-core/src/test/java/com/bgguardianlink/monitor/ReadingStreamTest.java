@@ -0,0 +1,119 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs {@link ReadingStream} against a local stand-in for /api/readings/stream that emits readings.
+ */
+public class ReadingStreamTest {
+
+    private HttpServer server;
+    private final BlockingQueue<HttpExchange> connections = new LinkedBlockingQueue<>();
+    private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Boolean> states = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private ReadingSync sync;
+    private ReadingStream stream;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/api/readings/stream", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+            exchange.sendResponseHeaders(200, 0);
+            connections.add(exchange);
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/readings";
+        OkHttpClient client = new OkHttpClient();
+        sync = new ReadingSync(client, base);
+        stream = new ReadingStream(client, base + "/stream", sync::getCursor, timer, new ReadingStream.Listener() {
+            @Override
+            public void onReadings(String json) {
+                try {
+                    if (sync.ingest(json) > 0) received.add(json);
+                } catch (IOException e) {
+                    throw new AssertionError(e);
+                }
+            }
+
+            @Override
+            public void onConnectionChanged(boolean connected) {
+                states.add(connected);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        stream.stop();
+        timer.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void deliversPushedReadingWithinASecond() throws Exception {
+        stream.start();
+        HttpExchange connection = connections.poll(2, TimeUnit.SECONDS);
+        assertNotNull(connection);
+        assertEquals(Boolean.TRUE, states.poll(2, TimeUnit.SECONDS));
+
+        long sentAt = System.nanoTime();
+        emit(connection, reading(1, 55, true));
+        assertNotNull(received.poll(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - sentAt < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(55, sync.latest().glucose);
+        assertTrue(sync.latest().alert);
+    }
+
+    @Test
+    public void reconnectsWithCursorAfterDrop() throws Exception {
+        stream.start();
+        HttpExchange first = connections.poll(2, TimeUnit.SECONDS);
+        emit(first, reading(1, 120, false));
+        assertNotNull(received.poll(1, TimeUnit.SECONDS));
+        assertEquals(Boolean.TRUE, states.poll(2, TimeUnit.SECONDS));
+
+        first.close();
+        assertEquals(Boolean.FALSE, states.poll(2, TimeUnit.SECONDS));
+        assertFalse(stream.isConnected());
+
+        HttpExchange second = connections.poll(5, TimeUnit.SECONDS);
+        assertNotNull(second);
+        assertEquals("since=" + sync.getCursor(), second.getRequestURI().getQuery());
+        emit(second, reading(2, 118, false));
+        assertNotNull(received.poll(1, TimeUnit.SECONDS));
+        assertEquals(2, sync.size());
+    }
+
+    private static String reading(int minute, int glucose, boolean alert) {
+        return "[{\"id\":\"r" + minute + "\",\"glucose_value\":" + glucose + ",\"trend\":\"FLAT\","
+                + "\"timestamp\":\"2026-01-01T10:0" + minute + ":00.000Z\",\"alert\":" + alert + "}]";
+    }
+
+    private static void emit(HttpExchange exchange, String data) throws IOException {
+        OutputStream out = exchange.getResponseBody();
+        out.write(("event: reading\ndata: " + data + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+}
@@ -0,0 +1,227 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs {@link ReadingSync} against a local stand-in for /api/readings that honours ?since=.
+ */
+public class ReadingSyncTest {
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private HttpServer server;
+    private final List<String> readings = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    private long bytesServed;
+    /** Status the stand-in answers with; anything but 200 comes with an error page. */
+    private volatile int status = 200;
+    /** When set, the server holds each response until it is counted down. */
+    private volatile CountDownLatch hold;
+    private final CountDownLatch requested = new CountDownLatch(2);
+    private ReadingSync sync;
+
+    @Before
+    public void setUp() throws Exception {
+        for (int i = 0; i < 50; i++) addReading(i);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/readings", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            queries.add(query);
+            requested.countDown();
+            CountDownLatch gate = hold;
+            if (gate != null) {
+                try {
+                    gate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            long since = query != null && query.startsWith("since=")
+                    ? Long.parseLong(query.substring(6)) : Long.MIN_VALUE;
+            if (status != 200) {
+                byte[] page = "<html>Service Unavailable</html>".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(status, page.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(page);
+                }
+                return;
+            }
+            StringBuilder body = new StringBuilder("[");
+            synchronized (readings) {
+                for (int i = readings.size() - 1; i >= 0; i--) {
+                    String r = readings.get(i);
+                    if (millisOf(timestampOf(r)) <= since) break;
+                    if (body.length() > 1) body.append(',');
+                    body.append(r);
+                }
+            }
+            byte[] bytes = body.append(']').toString().getBytes(StandardCharsets.UTF_8);
+            bytesServed += bytes.length;
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        });
+        server.start();
+        sync = new ReadingSync(new OkHttpClient(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/api/readings");
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void onlyTheFullWindowGoesIntoTheHttpCache() throws Exception {
+        Cache cache = new Cache(tmp.newFolder("http"), 1024 * 1024);
+        sync = new ReadingSync(new OkHttpClient.Builder().cache(cache).build(),
+                "http://127.0.0.1:" + server.getAddress().getPort() + "/api/readings");
+        assertEquals(50, sync.poll());
+        addReading(50);
+        assertEquals(1, sync.poll());
+        addReading(51);
+        assertEquals(1, sync.poll());
+
+        assertEquals(1, cache.writeSuccessCount());
+        Iterator<String> urls = cache.urls();
+        assertFalse(urls.next().contains("since="));
+        assertFalse(urls.hasNext());
+    }
+
+    @Test
+    public void unreadableHeadTimestampStillAdvancesTheCursor() throws Exception {
+        assertEquals(50, sync.poll());
+        String pushed = "[{\"id\":\"r52\",\"glucose_value\":152,\"timestamp\":\"not a time\"},"
+                + "{\"id\":\"r51\",\"glucose_value\":151,\"timestamp\":\"" + timestamp(51) + "\"},"
+                + "{\"id\":\"r50\",\"glucose_value\":150,\"timestamp\":\"" + timestamp(50) + "\"}]";
+
+        assertEquals(3, sync.ingest(pushed));
+        assertEquals(millisOf(timestamp(51)), sync.getCursor());
+        sync.poll();
+        assertEquals("since=" + millisOf(timestamp(51)), queries.get(1));
+    }
+
+    @Test
+    public void firstPollFetchesWindowThenOnlyNewReadings() throws Exception {
+        assertEquals(50, sync.poll());
+        assertNull(queries.get(0));
+        assertEquals(millisOf(timestamp(49)), sync.getCursor());
+
+        addReading(50);
+        assertEquals(1, sync.poll());
+        assertEquals("since=" + millisOf(timestamp(49)), queries.get(1));
+        assertEquals(150, sync.latest().glucose);
+        assertTrue(sync.latest().alert);
+        assertEquals("low", sync.latest().alertMessage);
+
+        JSONArray window = new JSONArray(sync.windowJson());
+        assertEquals(ReadingSync.WINDOW_SIZE, window.length());
+        assertEquals("r50", window.getJSONObject(0).getString("id"));
+        assertEquals("r1", window.getJSONObject(49).getString("id"));
+        assertTrue(window.getJSONObject(0).has("alert_message"));
+        assertFalse(window.getJSONObject(1).has("alert_message"));
+        assertFalse(window.getJSONObject(1).getBoolean("alert"));
+        assertFalse(sync.window(0, 0).jsonAt(49).contains("alert_message"));
+        assertEquals(150, sync.glucoseAt(0));
+        assertEquals(101, sync.glucoseAt(49));
+    }
+
+    @Test
+    public void unchangedPollReturnsEmptyBodyAndKeepsWindow() throws Exception {
+        sync.poll();
+        long fullBytes = bytesServed;
+
+        assertEquals(0, sync.poll());
+        assertEquals(2, bytesServed - fullBytes);
+        assertEquals(50, sync.size());
+        assertEquals(millisOf(timestamp(49)), sync.getCursor());
+    }
+
+    @Test
+    public void serverErrorIsReportedNotTakenAsAnEmptyPoll() throws Exception {
+        sync.poll();
+        assertTrue(sync.lastPollOk());
+        assertEquals(200, sync.lastPollStatus());
+
+        status = 503;
+        addReading(50);
+        assertEquals(0, sync.poll());
+        assertFalse(sync.lastPollOk());
+        assertEquals(503, sync.lastPollStatus());
+        assertEquals(millisOf(timestamp(49)), sync.getCursor());
+
+        status = 200;
+        assertEquals(1, sync.poll());
+        assertTrue(sync.lastPollOk());
+    }
+
+    @Test
+    public void slowPollDoesNotBlockReaders() throws Exception {
+        sync.poll();
+        hold = new CountDownLatch(1);
+        addReading(50);
+        Thread poller = new Thread(() -> {
+            try {
+                sync.poll();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        poller.start();
+        assertTrue(requested.await(1, TimeUnit.SECONDS));
+
+        long start = System.nanoTime();
+        assertEquals(50, sync.window(1, 0).size());
+        assertEquals(millisOf(timestamp(49)), sync.getCursor());
+        assertEquals(50, sync.size());
+        assertTrue("readers must not wait on the poll", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+
+        hold.countDown();
+        poller.join(2000);
+        assertEquals(millisOf(timestamp(50)), sync.getCursor());
+    }
+
+    private void addReading(int i) {
+        synchronized (readings) {
+            readings.add("{\"id\":\"r" + i + "\",\"glucose_value\":" + (100 + i)
+                    + ",\"trend\":\"FLAT\",\"timestamp\":\"" + timestamp(i) + "\""
+                    + ",\"alert\":true,\"alert_message\":\"low\"}");
+        }
+    }
+
+    private static String timestamp(int i) {
+        return String.format("2026-01-01T%02d:%02d:00.000Z", (i * 5) / 60, (i * 5) % 60);
+    }
+
+    private static String timestampOf(String reading) {
+        int start = reading.indexOf("\"timestamp\":\"") + 13;
+        return reading.substring(start, reading.indexOf('"', start));
+    }
+
+    private static long millisOf(String iso) {
+        return java.time.Instant.parse(iso).toEpochMilli();
+    }
+}
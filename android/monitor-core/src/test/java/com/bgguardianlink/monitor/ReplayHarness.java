@@ -0,0 +1,383 @@
+package com.bgguardianlink.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Replays a {@link CgmTrace} through the service's fetch, parse and alert logic ({@link ReadingSync}
+ * and {@link SourcePipeline}) under a virtual clock. A local server plays the backend: a reading
+ * becomes visible {@link #UPLOAD_DELAY_MS} after its timestamp, and requests during an outage get a
+ * 503. Polls follow the source's own cadence and the watchdog ticks every minute, both in virtual
+ * time, so a week of monitoring takes seconds.
+ *
+ * <p>Polls go straight to the client rather than through {@link ReplicaCaller}, whose backoff sleeps
+ * in real time.
+ */
+final class ReplayHarness implements SourcePipeline.Alerts, Closeable {
+
+    static final long UPLOAD_DELAY_MS = 60_000;
+    /** As the service's watchdog timer. */
+    static final long WATCHDOG_PERIOD_MS = 60_000;
+    /** How long after an episode ends an alert for it still counts. */
+    static final long ALERT_GRACE_MS = 10 * 60_000L;
+    static final int SERVED_READINGS = 50;
+
+    /** One alert the pipeline raised. */
+    static final class Raised {
+        final byte type;
+        final long atMs;
+        /** {@link Long#MIN_VALUE} for a stale alert. */
+        final long readingTimestampMs;
+        final int mgdl;
+
+        Raised(byte type, long atMs, long readingTimestampMs, int mgdl) {
+            this.type = type;
+            this.atMs = atMs;
+            this.readingTimestampMs = readingTimestampMs;
+            this.mgdl = mgdl;
+        }
+
+        @Override
+        public String toString() {
+            return ReadingFrame.alertTypeName(type) + "/" + type + " at " + java.time.Instant.ofEpochMilli(atMs)
+                    + (mgdl > 0 ? " (" + mgdl + " mg/dL)" : "");
+        }
+    }
+
+    /** A spell in the trace that should alert: readings past a threshold, a fast drop, or no data. */
+    static final class Episode {
+        final byte type;
+        final long startMs;
+        final long endMs;
+        boolean alerted;
+
+        Episode(byte type, long startMs, long endMs) {
+            this.type = type;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+
+        boolean covers(long ms) {
+            return ms >= startMs && ms <= endMs + ALERT_GRACE_MS;
+        }
+
+        @Override
+        public String toString() {
+            return ReadingFrame.alertTypeName(type) + "/" + type + " " + java.time.Instant.ofEpochMilli(startMs)
+                    + ".." + java.time.Instant.ofEpochMilli(endMs);
+        }
+    }
+
+    /** What a run found. Latencies are in virtual ms, allocations in bytes per poll. */
+    static final class Report {
+        final List<Episode> missed = new ArrayList<>();
+        final List<Raised> duplicates = new ArrayList<>();
+        /** Alerts no episode accounts for; predicted lows are left out, having no ground truth. */
+        final List<Raised> unexpected = new ArrayList<>();
+        final Histogram readingToAlertMs = new Histogram();
+        Histogram allocatedPerPoll;
+        int episodes;
+        int alerts;
+        int polls;
+        int errorsServed;
+        long realMs;
+
+        @Override
+        public String toString() {
+            return String.format(java.util.Locale.US,
+                    "%d episodes, %d alerts, %d missed, %d duplicate, %d unexpected; %d polls (%d errors served) in %d ms; "
+                            + "reading-to-alert p50 %ds p95 %ds max %ds; allocated per poll p50 %d KB p95 %d KB",
+                    episodes, alerts, missed.size(), duplicates.size(), unexpected.size(), polls, errorsServed, realMs,
+                    readingToAlertMs.percentile(50) / 1000, readingToAlertMs.percentile(95) / 1000,
+                    readingToAlertMs.max() / 1000, allocatedPerPoll.percentile(50) / 1024,
+                    allocatedPerPoll.percentile(95) / 1024);
+        }
+    }
+
+    private final CgmTrace trace;
+    private final AlertSettings settings;
+    private final ServerSocket server;
+    private final MonitorSource source;
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final List<Raised> raised = new ArrayList<>();
+    private volatile long now;
+    private volatile int errorsServed;
+    private int polls;
+    private final Histogram allocated = new Histogram();
+
+    ReplayHarness(CgmTrace trace, AlertSettings settings, boolean binary) throws IOException {
+        this.trace = trace;
+        this.settings = settings;
+        server = new ServerSocket(0, 4, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "replay-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        String base = "http://127.0.0.1:" + server.getLocalPort() + "/api";
+        source = new MonitorSource(new MonitorSource.Config("replay", "Replay", base), new OkHttpClient());
+        source.sync.setCaller(null);
+        source.sync.setBinaryWireFormat(binary);
+        source.settings = settings;
+    }
+
+    /** Runs the whole trace, and a few minutes past its end so the last reading is seen. */
+    Report run() {
+        long realStart = System.nanoTime();
+        now = trace.start();
+        long end = trace.end() + UPLOAD_DELAY_MS + 5 * 60_000L;
+        long nextPoll = now;
+        long nextWatchdog = now + WATCHDOG_PERIOD_MS;
+        while (now < end) {
+            if (nextPoll <= nextWatchdog) {
+                now = nextPoll;
+                nextPoll = now + poll();
+            } else {
+                now = nextWatchdog;
+                SourcePipeline.watchdog(source, now, this);
+                nextWatchdog += WATCHDOG_PERIOD_MS;
+            }
+        }
+        Report report = grade();
+        report.realMs = (System.nanoTime() - realStart) / 1_000_000;
+        return report;
+    }
+
+    /** One poll as the service makes it; returns the delay to the next. */
+    private long poll() {
+        polls++;
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        try {
+            synchronized (source.fetchLock) {
+                boolean backfill = source.sync.getCursor() == Long.MIN_VALUE;
+                int added = source.sync.poll();
+                ReadingBatch batch = SourcePipeline.fetched(source, added, backfill, now, this);
+                if (batch != null) SourcePipeline.evaluate(source, batch, now, this, null);
+                return source.cadence.nextDelay(now, batch != null, source.settings);
+            }
+        } catch (IOException e) {
+            return source.cadence.afterFailure();
+        } finally {
+            allocated.record(threads.getThreadAllocatedBytes(thread) - before);
+        }
+    }
+
+    @Override
+    public void raise(MonitorSource source, AlertPayload payload, long readingTimestampMs) {
+        int i = readingTimestampMs != Long.MIN_VALUE ? trace.indexOf(readingTimestampMs) : -1;
+        raised.add(new Raised(payload.type, now, readingTimestampMs, i >= 0 ? trace.glucose[i] : 0));
+        source.shownAlert = payload;
+    }
+
+    @Override
+    public void clear(MonitorSource source) {
+        source.shownAlert = null;
+    }
+
+    /**
+     * A bare HTTP/1.1 server. The JDK's HttpServer writes headers and body separately, which costs
+     * a delayed-ACK stall (~40 ms) per request; here each response goes out in one write.
+     */
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "replay-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                return; // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                String accept = null;
+                for (String header = readLine(in); header != null && !header.isEmpty(); header = readLine(in)) {
+                    if (header.regionMatches(true, 0, "Accept:", 0, 7)) accept = header.substring(7).trim();
+                }
+                out.write(respond(requestLine.split(" ")[1], accept));
+                out.flush();
+            }
+        } catch (IOException ignored) {
+            // the client went away
+        }
+    }
+
+    private byte[] respond(String target, String accept) throws IOException {
+        long t = now;
+        if (trace.inOutage(t)) {
+            errorsServed++;
+            return "HTTP/1.1 503 Service Unavailable\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+        }
+        int q = target.indexOf("since=");
+        long since = q >= 0 ? Long.parseLong(target.substring(q + 6)) : Long.MIN_VALUE;
+        StringBuilder json = new StringBuilder("[");
+        int served = 0;
+        for (int i = trace.size() - 1; i >= 0 && served < SERVED_READINGS; i--) {
+            if (trace.timestamps[i] + UPLOAD_DELAY_MS > t) continue;
+            if (trace.timestamps[i] <= since) break;
+            if (served++ > 0) json.append(',');
+            json.append(trace.json(i));
+        }
+        byte[] body;
+        String type;
+        if (accept != null && accept.contains(ReadingBinaryDecoder.CONTENT_TYPE)) {
+            try {
+                body = ReadingBinaryEncoder.encode(json.append(']').toString());
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
+            type = ReadingBinaryDecoder.CONTENT_TYPE;
+        } else {
+            body = json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+            type = "application/json";
+        }
+        byte[] head = ("HTTP/1.1 200 OK\r\nContent-Type: " + type + "\r\nContent-Length: " + body.length + "\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] response = Arrays.copyOf(head, head.length + body.length);
+        System.arraycopy(body, 0, response, head.length, body.length);
+        return response;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c == -1) return null;
+            if (c != '\r') line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /** Matches the alerts raised against the episodes in the trace. */
+    private Report grade() {
+        Report report = new Report();
+        List<Episode> episodes = episodes();
+        report.episodes = episodes.size();
+        report.alerts = raised.size();
+        report.polls = polls;
+        report.errorsServed = errorsServed;
+        report.allocatedPerPoll = allocated;
+        for (int i = 0; i < raised.size(); i++) {
+            Raised r = raised.get(i);
+            long at = r.readingTimestampMs != Long.MIN_VALUE ? r.readingTimestampMs : r.atMs;
+            Episode episode = null;
+            for (Episode e : episodes) {
+                if (e.type == r.type && e.covers(at)) {
+                    episode = e;
+                    break;
+                }
+            }
+            if (r.readingTimestampMs != Long.MIN_VALUE) report.readingToAlertMs.record(r.atMs - r.readingTimestampMs);
+            if (episode == null) {
+                if (r.type != ReadingFrame.ALERT_PREDICTED_LOW) report.unexpected.add(r);
+                continue;
+            }
+            episode.alerted = true;
+            if (isDuplicate(r, episode, i)) report.duplicates.add(r);
+        }
+        for (Episode e : episodes) {
+            if (!e.alerted) report.missed.add(e);
+        }
+        return report;
+    }
+
+    /**
+     * True if {@code r} repeats an earlier alert for the same episode before it was due: sooner than
+     * the re-notify interval (the stale repeat for no data) and without escalating.
+     */
+    private boolean isDuplicate(Raised r, Episode episode, int index) {
+        for (int j = index - 1; j >= 0; j--) {
+            Raised prev = raised.get(j);
+            if (prev.type != r.type) continue;
+            long prevAt = prev.readingTimestampMs != Long.MIN_VALUE ? prev.readingTimestampMs : prev.atMs;
+            if (!episode.covers(prevAt)) return false;
+            long interval = r.type == ReadingFrame.ALERT_STALE ? StaleWatchdog.REPEAT_MS : settings.renotifyMs;
+            if (r.atMs - prev.atMs >= interval) return false;
+            if (r.type == ReadingFrame.ALERT_LOW && r.mgdl <= prev.mgdl - AlertTracker.LOW_ESCALATION_MGDL) return false;
+            if (r.type == ReadingFrame.ALERT_HIGH && r.mgdl >= prev.mgdl + AlertTracker.HIGH_ESCALATION_MGDL) return false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * The episodes a correct monitor alerts on, worked out from the trace alone: runs of readings
+     * past a threshold (split only where the reading re-arms the alert), falls steeper than the
+     * rapid-fall threshold over the engine's window, and gaps longer than the stale limit.
+     */
+    List<Episode> episodes() {
+        List<Episode> episodes = new ArrayList<>();
+        double low = settings.lowMgdl();
+        double high = settings.highMgdl();
+        Episode lowRun = null;
+        Episode highRun = null;
+        Episode fallRun = null;
+        int clear = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            long ts = trace.timestamps[i];
+            int g = trace.glucose[i];
+            if (settings.lowEnabled && g < low) {
+                lowRun = extend(episodes, lowRun, ReadingFrame.ALERT_LOW, ts);
+            } else if (g >= low + AlertTracker.REARM_MARGIN_MGDL) {
+                lowRun = null;
+            }
+            if (settings.highEnabled && g > high) {
+                highRun = extend(episodes, highRun, ReadingFrame.ALERT_HIGH, ts);
+            } else if (g <= high - AlertTracker.REARM_MARGIN_MGDL) {
+                highRun = null;
+            }
+            boolean inRange = !(settings.lowEnabled && g < low) && !(settings.highEnabled && g > high);
+            if (settings.rapidFallEnabled && inRange && fallsFast(i)) {
+                fallRun = extend(episodes, fallRun, ReadingFrame.ALERT_RAPID_FALL, ts);
+                clear = 0;
+            } else if (fallRun != null && ++clear >= AlertTracker.REARM_CLEAR_READINGS) {
+                fallRun = null;
+            }
+            if (settings.staleEnabled && i > 0 && ts - trace.timestamps[i - 1] > settings.staleMs) {
+                episodes.add(new Episode(ReadingFrame.ALERT_STALE, trace.timestamps[i - 1] + settings.staleMs, ts));
+            }
+        }
+        return episodes;
+    }
+
+    /** As the engine: the change since the newest reading at least 15 minutes older. */
+    private boolean fallsFast(int i) {
+        long cutoff = trace.timestamps[i] - AlertEngine.RAPID_WINDOW_MS;
+        for (int j = i - 1; j >= 0; j--) {
+            if (trace.timestamps[j] <= cutoff) return trace.glucose[i] - trace.glucose[j] <= -settings.rapidFallThreshold;
+        }
+        return false;
+    }
+
+    private static Episode extend(List<Episode> episodes, Episode run, byte type, long ts) {
+        Episode next = new Episode(type, run != null ? run.startMs : ts, ts);
+        if (run != null) episodes.set(episodes.indexOf(run), next);
+        else episodes.add(next);
+        return next;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
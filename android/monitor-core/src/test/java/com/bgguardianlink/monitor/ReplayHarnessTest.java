@@ -0,0 +1,68 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * A week of monitoring against a replayed backend, as a regression gate: every low, high, fast drop
+ * and data gap alerts, nothing alerts twice before it is due, alerts follow their readings within a
+ * poll or two, and a poll stays cheap. How fast the week replays is checked only on request
+ * ({@code ./gradlew :monitor-core:test -PreplayTimed}), as wall-clock time depends on the machine.
+ */
+public class ReplayHarnessTest {
+
+    private static final long T0 = 1_767_225_600_000L; // 2026-01-01T00:00:00Z
+    private static final String SETTINGS = "{\"bg_unit\":\"mgdl\",\"low_threshold\":70,\"high_threshold\":180,"
+            + "\"rapid_fall_enabled\":true,\"rapid_fall_threshold\":30,\"rapid_rise_enabled\":false,"
+            + "\"user_name\":\"Sam\",\"stale_data_minutes\":20}";
+
+    @Test
+    public void weekOfReadingsAlertsOnEveryEpisodeOnce() throws Exception {
+        for (boolean binary : new boolean[] {false, true}) {
+            try (ReplayHarness harness = new ReplayHarness(CgmTrace.week(T0, 7), AlertSettings.parse(SETTINGS), binary)) {
+                ReplayHarness.Report report = harness.run();
+                String summary = (binary ? "binary: " : "json: ") + report;
+
+                assertTrue(summary, report.episodes >= 7 + 7 + 4 + 2);
+                assertEquals("missed " + report.missed, 0, report.missed.size());
+                assertEquals("duplicates " + report.duplicates, 0, report.duplicates.size());
+                assertEquals("unexpected " + report.unexpected, 0, report.unexpected.size());
+                assertTrue(summary, report.errorsServed > 0);
+                // Readings land a minute after they are taken; the cadence should catch them on the next poll.
+                assertTrue(summary, report.readingToAlertMs.percentile(95) <= 3 * 60_000L);
+                assertTrue(summary, report.allocatedPerPoll.percentile(50) < 256 * 1024);
+            }
+        }
+    }
+
+    @Test
+    public void weekReplaysWithinRealTimeBudget() throws Exception {
+        Assume.assumeTrue("set -PreplayTimed to check", Boolean.getBoolean("replay.timed"));
+        try (ReplayHarness harness = new ReplayHarness(CgmTrace.week(T0, 7), AlertSettings.parse(SETTINGS), true)) {
+            ReplayHarness.Report report = harness.run();
+            assertTrue(report.toString(), report.realMs < 30_000);
+        }
+    }
+
+    @Test
+    public void replaysRecordedReadings() throws Exception {
+        // A recorded /api/readings body, newest first: a slide into a low.
+        StringBuilder json = new StringBuilder("[");
+        int[] mgdl = {64, 68, 72, 79, 88, 97, 104, 108, 110, 111};
+        for (int i = 0; i < mgdl.length; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"timestamp\":\"").append(java.time.Instant.ofEpochMilli(T0 - i * CgmTrace.FIVE_MIN))
+                    .append("\",\"glucose_value\":").append(mgdl[i]).append('}');
+        }
+        CgmTrace trace = CgmTrace.fromJson(json.append(']').toString());
+        try (ReplayHarness harness = new ReplayHarness(trace, AlertSettings.parse(SETTINGS), true)) {
+            ReplayHarness.Report report = harness.run();
+
+            assertEquals(report.toString(), 1, report.episodes);
+            assertTrue(report.toString(), report.missed.isEmpty());
+            assertTrue(report.toString(), report.duplicates.isEmpty());
+        }
+    }
+}
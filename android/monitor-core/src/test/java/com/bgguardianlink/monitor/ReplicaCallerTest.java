@@ -0,0 +1,160 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/** Drives {@link ReplicaCaller} against local stand-in replicas with injected delay and failures. */
+public class ReplicaCallerTest {
+
+    /** A stand-in replica: answers with its name after {@code delayMs}, or with {@code status}. */
+    private static final class Replica {
+        final HttpServer server;
+        final String name;
+        final AtomicInteger hits = new AtomicInteger();
+        volatile long delayMs;
+        volatile int status = 200;
+        /** The first this-many requests fail with 500, then {@link #status} applies. */
+        volatile int failFirst;
+        volatile String lastQuery;
+
+        Replica(String name) throws IOException {
+            this.name = name;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(java.util.concurrent.Executors.newCachedThreadPool());
+            server.createContext("/", exchange -> {
+                int n = hits.incrementAndGet();
+                lastQuery = exchange.getRequestURI().getRawPath() + "?" + exchange.getRequestURI().getRawQuery();
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException ignored) {
+                }
+                int code = n <= failFirst ? 500 : status;
+                byte[] body = name.getBytes(StandardCharsets.UTF_8);
+                try {
+                    exchange.sendResponseHeaders(code, body.length);
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                } catch (IOException ignored) {
+                    // the client gave up on us (lost hedge)
+                }
+            });
+            server.start();
+        }
+
+        String base(String path) {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final OkHttpClient client = new OkHttpClient();
+
+    private Replica replica(String name) throws IOException {
+        Replica r = new Replica(name);
+        replicas.add(r);
+        return r;
+    }
+
+    @After
+    public void tearDown() {
+        for (Replica r : replicas) r.server.stop(0);
+    }
+
+    private static String fetch(ReplicaCaller caller, String url, long budgetMs) throws IOException {
+        try (Response response = caller.execute(new Request.Builder().url(url).build(), budgetMs)) {
+            return response.body().string();
+        }
+    }
+
+    @Test
+    public void hedgeToSecondReplicaCutsTailLatency() throws Exception {
+        Replica a = replica("a");
+        Replica b = replica("b");
+        ReplicaCaller caller = new ReplicaCaller(client, Arrays.asList(a.base("/api"), b.base("/mirror/api")));
+        // Learn a's latency while it is healthy, so its p95 is small.
+        for (int i = 0; i < ReplicaCaller.MIN_SAMPLES; i++) assertEquals("a", fetch(caller, a.base("/api/readings"), 5_000));
+
+        a.delayMs = 3_000;
+        long start = System.nanoTime();
+        assertEquals("b", fetch(caller, a.base("/api/readings?since=42"), 5_000));
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 1_000);
+        assertEquals(1, caller.hedges());
+        assertEquals("path and query carried over", "/mirror/api/readings?since=42", b.lastQuery);
+    }
+
+    @Test
+    public void failingReplicaFailsOverAndTripsItsBreaker() throws Exception {
+        Replica a = replica("a");
+        Replica b = replica("b");
+        a.status = 503;
+        ReplicaCaller caller = new ReplicaCaller(client, Arrays.asList(a.base("/api"), b.base("/api")));
+
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) assertEquals("b", fetch(caller, a.base("/api/settings"), 5_000));
+        assertEquals(CircuitBreaker.OPEN, caller.endpoints().get(0).breaker.state());
+        assertEquals("each failure hedged to b", CircuitBreaker.FAILURE_THRESHOLD, caller.hedges());
+
+        int aHits = a.hits.get();
+        for (int i = 0; i < 5; i++) assertEquals("b", fetch(caller, a.base("/api/settings"), 5_000));
+        assertEquals("open breaker skips the replica", aHits, a.hits.get());
+        assertEquals(0, caller.retries());
+    }
+
+    @Test
+    public void transientFailuresAreRetriedWithinBudget() throws Exception {
+        Replica a = replica("a");
+        a.failFirst = 2;
+        ReplicaCaller caller = new ReplicaCaller(client, Arrays.asList(a.base("/api")));
+
+        assertEquals("a", fetch(caller, a.base("/api/readings"), 10_000));
+        assertEquals(2, caller.retries());
+        assertEquals(3, a.hits.get());
+    }
+
+    @Test
+    public void budgetBoundsEverything() throws Exception {
+        Replica a = replica("a");
+        Replica b = replica("b");
+        a.delayMs = 2_000;
+        b.delayMs = 2_000;
+        ReplicaCaller caller = new ReplicaCaller(client, Arrays.asList(a.base("/api"), b.base("/api")));
+
+        long start = System.nanoTime();
+        try {
+            fetch(caller, a.base("/api/readings"), 300);
+            fail("expected the budget to run out");
+        } catch (InterruptedIOException expected) {
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        assertTrue("took " + elapsedMs + "ms", elapsedMs < 1_000);
+    }
+
+    @Test
+    public void backoffIsJitteredAndCapped() {
+        for (int attempt = 1; attempt < 10; attempt++) {
+            long step = Math.min(ReplicaCaller.MAX_BACKOFF_MS, ReplicaCaller.BASE_BACKOFF_MS << (attempt - 1));
+            long b = ReplicaCaller.backoffMs(attempt);
+            assertTrue(b >= step / 2 && b <= step);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrentCallersShareOneCall() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        SingleFlight.Task<String> fetch = () -> {
+            runs.incrementAndGet();
+            release.await();
+            return "readings";
+        };
+        List<String> results = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(3);
+        SingleFlight.Callback<String> callback = (value, error) -> {
+            results.add(value);
+            delivered.countDown();
+        };
+
+        assertTrue(flight.submit("readings", fetch, executor, callback));
+        assertFalse(flight.submit("readings", fetch, executor, callback));
+        assertFalse(flight.submit("readings", fetch, executor, callback));
+        // A blocking caller joins the same call, as the service's own poll does.
+        Future<String> blocking = executor.submit(() -> flight.call("readings", fetch));
+        while (flight.joined() < 3) Thread.sleep(1);
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals("readings", blocking.get(5, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+        assertEquals(3, results.size());
+        assertEquals(1, flight.started());
+        assertEquals(3, flight.joined());
+
+        // Nothing is cached: the next caller fetches again.
+        assertEquals("readings", flight.call("readings", fetch));
+        assertEquals(2, runs.get());
+    }
+
+    @Test
+    public void keysAreIndependentAndErrorsReachEveryWaiter() throws Exception {
+        SingleFlight<String> flight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        SingleFlight.Task<String> failing = () -> {
+            release.await();
+            throw new IOException("503");
+        };
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(2);
+        SingleFlight.Callback<String> callback = (value, error) -> {
+            errors.add(error);
+            delivered.countDown();
+        };
+
+        flight.submit("a", failing, executor, callback);
+        flight.submit("a", failing, executor, callback);
+        assertEquals("b", flight.call("b", () -> "b"));
+        release.countDown();
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals(2, errors.size());
+        assertEquals("503", errors.get(0).getMessage());
+        assertEquals(2, flight.started());
+        assertEquals(1, flight.joined());
+        try {
+            flight.call("a", () -> {
+                throw new IOException("still down");
+            });
+            fail();
+        } catch (IOException expected) {
+            assertEquals("still down", expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StaleWatchdogTest {
+
+    private static final long T0 = 1_767_225_600_000L;
+    private static final long MIN = 60_000L;
+
+    @Test
+    public void alertsOnceWhenDataGoesStaleThenRepeatsAfterCooldown() {
+        StaleWatchdog watchdog = new StaleWatchdog();
+        assertEquals("nothing seen yet", StaleWatchdog.QUIET, watchdog.check(T0, null));
+
+        watchdog.onReading(T0);
+        assertEquals(StaleWatchdog.QUIET, watchdog.check(T0 + 19 * MIN, null));
+        assertEquals(StaleWatchdog.FIRE, watchdog.check(T0 + 20 * MIN, null));
+        assertEquals(StaleWatchdog.QUIET, watchdog.check(T0 + 21 * MIN, null));
+        assertEquals(StaleWatchdog.FIRE, watchdog.check(T0 + 50 * MIN, null));
+
+        watchdog.onReading(T0 + 51 * MIN);
+        assertEquals(StaleWatchdog.CLEARED, watchdog.check(T0 + 51 * MIN, null));
+        assertFalse(watchdog.isAlerting());
+        assertEquals(StaleWatchdog.QUIET, watchdog.check(T0 + 52 * MIN, null));
+    }
+
+    @Test
+    public void acknowledgeHoldsUntilDataReturnsAndSnoozeExpires() throws Exception {
+        AlertSettings settings = AlertSettings.parse("{\"stale_data_minutes\":10}");
+        StaleWatchdog watchdog = new StaleWatchdog();
+        watchdog.onReading(T0);
+        assertEquals(StaleWatchdog.FIRE, watchdog.check(T0 + 10 * MIN, settings));
+        watchdog.acknowledge();
+        assertEquals(StaleWatchdog.QUIET, watchdog.check(T0 + 120 * MIN, settings));
+
+        watchdog.onReading(T0 + 121 * MIN);
+        assertEquals(StaleWatchdog.CLEARED, watchdog.check(T0 + 121 * MIN, settings));
+        assertEquals(StaleWatchdog.FIRE, watchdog.check(T0 + 131 * MIN, settings));
+        watchdog.snooze(T0 + 131 * MIN, 5 * MIN);
+        assertEquals(StaleWatchdog.QUIET, watchdog.check(T0 + 135 * MIN, settings));
+        assertEquals(StaleWatchdog.FIRE, watchdog.check(T0 + 136 * MIN, settings));
+    }
+
+    @Test
+    public void disabledInSettings() throws Exception {
+        StaleWatchdog watchdog = new StaleWatchdog();
+        watchdog.onReading(T0);
+        assertEquals(StaleWatchdog.QUIET,
+                watchdog.check(T0 + 60 * MIN, AlertSettings.parse("{\"stale_data_enabled\":false}")));
+        assertEquals("Hey Sam, no new glucose reading. Please check your sensor.",
+                StaleWatchdog.payload(AlertSettings.parse("{\"user_name\":\"Sam\"}")).message);
+    }
+}
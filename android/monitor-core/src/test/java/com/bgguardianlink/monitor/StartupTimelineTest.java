@@ -0,0 +1,28 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StartupTimelineTest {
+
+    @Test
+    public void firstRequestAndFirstStampWin() {
+        StartupTimeline timeline = new StartupTimeline();
+        assertEquals(-1, timeline.at(StartupTimeline.FIRST_POLL));
+        assertEquals(-1, timeline.sinceRequest(StartupTimeline.FIRST_POLL));
+
+        timeline.mark(StartupTimeline.PROCESS_START, 9_000);
+        timeline.requested("boot", 9_500);
+        timeline.requested("activity", 40_000);
+        timeline.mark(StartupTimeline.SERVICE_CREATED, 10_000);
+        assertTrue(timeline.mark(StartupTimeline.FIRST_POLL, 12_300));
+        assertFalse(timeline.mark(StartupTimeline.FIRST_POLL, 20_000));
+
+        assertEquals("boot", timeline.reason());
+        assertEquals(12_300, timeline.at(StartupTimeline.FIRST_POLL));
+        assertEquals(2_800, timeline.sinceRequest(StartupTimeline.FIRST_POLL));
+        assertEquals("start (boot): processStart 9.0s startRequested 9.5s serviceCreated 10.0s firstPoll 12.3s after boot",
+                timeline.toString());
+    }
+}
@@ -0,0 +1,86 @@
+package com.bgguardianlink.monitor;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class WebViewDispatcherTest {
+
+    private final List<ReadingWindow> delivered = new ArrayList<>();
+    private final long[] now = {1000};
+    private final LatencyRecorder latency = new LatencyRecorder();
+    private final WebViewDispatcher dispatcher =
+            new WebViewDispatcher(delivered::add, () -> now[0], message -> { }, latency);
+
+    private ReadingWindow window(long seq) {
+        return new ReadingWindow(seq, now[0], new long[]{seq}, new int[]{100}, new byte[]{ReadingFrame.TREND_FLAT},
+                new String[]{"{\"id\":\"r_" + seq + "\"}"});
+    }
+
+    @Test
+    public void windowsBeforeSubscribeCollapseIntoOne() {
+        for (int i = 1; i <= 200; i++) dispatcher.offer(window(i));
+        assertTrue(delivered.isEmpty());
+
+        dispatcher.uiReady(() -> window(-1));
+        assertEquals(1, delivered.size());
+        assertEquals(200, delivered.get(0).seq);
+
+        now[0] += 42;
+        dispatcher.ack(200);
+        assertEquals(42, dispatcher.firstRenderMs());
+        assertEquals(42, latency.median());
+    }
+
+    @Test
+    public void currentWindowIsUsedWhenNothingIsQueued() {
+        dispatcher.uiReady(() -> window(7));
+        assertEquals(7, delivered.get(0).seq);
+    }
+
+    @Test
+    public void unacknowledgedUiKeepsOnlyTheNewestWindow() {
+        dispatcher.uiReady(null);
+        dispatcher.offer(window(1));
+        dispatcher.offer(window(2));
+        dispatcher.offer(window(3));
+        dispatcher.offer(window(2)); // stale, ignored
+        assertEquals(1, delivered.size());
+
+        dispatcher.ack(1);
+        assertEquals(2, delivered.size());
+        assertEquals(3, delivered.get(1).seq);
+
+        dispatcher.ack(1); // duplicate ack changes nothing
+        dispatcher.offer(window(4));
+        assertEquals(2, delivered.size());
+        dispatcher.ack(3);
+        assertEquals(4, delivered.get(2).seq);
+    }
+
+    @Test
+    public void lostAckIsGivenUpAfterTimeout() {
+        dispatcher.uiReady(null);
+        dispatcher.offer(window(1));
+        dispatcher.offer(window(2));
+        assertEquals(1, delivered.size());
+
+        now[0] += WebViewDispatcher.ACK_TIMEOUT_MS;
+        dispatcher.offer(window(3));
+        assertEquals(2, delivered.size());
+        assertEquals(3, delivered.get(1).seq);
+    }
+
+    @Test
+    public void resubscribeResendsCurrentState() {
+        dispatcher.uiReady(null);
+        dispatcher.offer(window(1));
+        // Page reloaded before acking: the new page gets the current window at once.
+        dispatcher.uiReady(() -> window(1));
+        assertEquals(2, delivered.size());
+        assertEquals(1, delivered.get(1).seq);
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Compact /api/readings encoding, sent instead of JSON to clients that ask for CONTENT_TYPE.
+ * Columnar and delta-encoded, newest reading first; the layout is documented on the Android side
+ * in ReadingBinaryDecoder.java. Fields other than the ones below travel as JSON text, so nothing
+ * the UI reads is lost.
+ */
+const CONTENT_TYPE = 'application/x-bgg-readings';
+const VERSION = 1;
+
+const TRENDS = { DOWN_DOUBLE: 1, DOWN: 2, FLAT: 3, UP: 4, UP_DOUBLE: 5 };
+const ALERT_TYPES = { low: 1, high: 2, rapid_rise: 3, rapid_fall: 4 };
+const KNOWN = new Set(['timestamp', 'glucose_value', 'trend', 'alert', 'alert_type', 'alert_message', 'alert_volume']);
+
+// Plain arithmetic rather than bit operators: epoch-ms timestamps do not fit in 32 bits.
+function zigzag(v) {
+    return v >= 0 ? v * 2 : -v * 2 - 1;
+}
+
+function writeVarint(out, v) {
+    while (v >= 128) {
+        out.push((v % 128) + 128);
+        v = Math.floor(v / 128);
+    }
+    out.push(v);
+}
+
+function writeText(out, text) {
+    const bytes = text ? Buffer.from(text, 'utf8') : [];
+    writeVarint(out, bytes.length);
+    for (const b of bytes) out.push(b);
+}
+
+function timestampMs(r) {
+    const ms = typeof r.timestamp === 'number' ? r.timestamp : Date.parse(r.timestamp);
+    return Number.isFinite(ms) ? Math.round(ms) : 0;
+}
+
+function encodeReadings(readings) {
+    const n = readings.length;
+    const out = [VERSION];
+    writeVarint(out, n);
+
+    let prevTs = 0;
+    readings.forEach((r, i) => {
+        const ts = timestampMs(r);
+        writeVarint(out, zigzag(i === 0 ? ts : prevTs - ts));
+        prevTs = ts;
+    });
+    let prevGlucose = 0;
+    readings.forEach((r, i) => {
+        const g = Math.round(Number(r.glucose_value)) || 0;
+        writeVarint(out, zigzag(i === 0 ? g : g - prevGlucose));
+        prevGlucose = g;
+    });
+    for (let i = 0; i < n; i += 2) {
+        const lo = TRENDS[readings[i].trend] || 0;
+        const hi = i + 1 < n ? TRENDS[readings[i + 1].trend] || 0 : 0;
+        out.push(lo | (hi << 4));
+    }
+    const flags = new Array((n + 7) >> 3).fill(0);
+    readings.forEach((r, i) => {
+        if (r.alert === true) flags[i >> 3] |= 1 << (i & 7);
+    });
+    out.push(...flags);
+    for (const r of readings) {
+        if (r.alert !== true) continue;
+        out.push(ALERT_TYPES[r.alert_type] || 0);
+        out.push(Math.max(0, Math.min(100, Math.round((r.alert_volume ?? 1) * 100))));
+        writeText(out, r.alert_message);
+    }
+
+    const other = [];
+    for (const r of readings) {
+        for (const key of Object.keys(r)) {
+            if (!KNOWN.has(key) && r[key] !== undefined && !other.includes(key)) other.push(key);
+        }
+    }
+    writeVarint(out, other.length);
+    for (const key of other) {
+        writeText(out, key);
+        for (const r of readings) writeText(out, r[key] === undefined ? '' : JSON.stringify(r[key]));
+    }
+    return Buffer.from(out);
+}
+
+module.exports = { CONTENT_TYPE, encodeReadings };
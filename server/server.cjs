@@ -2,9 +2,11 @@ const express = require('express');
 const cors = require('cors');
 const path = require('path');
 const fs = require('fs');
+const zlib = require('zlib');
 const storage = require('./storage.cjs');
 const { fetchCGM } = require('./fetch.cjs');
 const { checkStaleAlert } = require('./alertService.cjs');
+const readingCodec = require('./readingCodec.cjs');
 
 const MGDL_TO_MMOL = 1 / 18.0182;
 
@@ -81,16 +83,15 @@ const PORT = process.env.PORT || 8080;
 app.use(cors());
 app.use(express.json());
 
-// API: Readings - adds alert, alert_type, alert_message to latest reading when threshold crossed (for native app TTS)
-app.get('/api/readings', (req, res) => {
-    const limit = parseInt(req.query.limit) || 50;
+/** Latest readings with alert, alert_type, alert_message, alert_volume on the newest one (for native app TTS). */
+function getEnrichedReadings(limit) {
     const readings = storage.getReadings(limit);
     const settings = storage.getSettings();
     const { alert, alert_type, alert_message } = getAlertForLatestReading(readings, settings);
 
     const alertVolume = Math.max(0, Math.min(1, Number(settings?.alert_volume) || 1));
 
-    const enriched = readings.map((r, i) => {
+    return readings.map((r, i) => {
         if (i === 0) {
             return {
                 ...r,
@@ -102,10 +103,90 @@ app.get('/api/readings', (req, res) => {
         }
         return { ...r, alert: false };
     });
+}
+
+/**
+ * Gzips JSON bodies of 1 KB or more for clients that accept it (OkHttp on the phone always does),
+ * and marks them no-cache so clients keep a copy but revalidate it with If-None-Match each time.
+ */
+function gzipJson(req, res, next) {
+    res.set('Cache-Control', 'no-cache');
+    if (!/\bgzip\b/.test(req.headers['accept-encoding'] || '')) return next();
+    const json = res.json.bind(res);
+    res.json = (body) => {
+        const data = Buffer.from(JSON.stringify(body));
+        if (data.length < 1024) return json(body);
+        res.vary('Accept-Encoding');
+        res.set({ 'Content-Type': 'application/json; charset=utf-8', 'Content-Encoding': 'gzip' });
+        return res.send(zlib.gzipSync(data));
+    };
+    next();
+}
+
+function parseSince(since) {
+    return /^\d+$/.test(since || '') ? Number(since) : since ? new Date(since).getTime() : NaN;
+}
+
+function newerThan(readings, sinceMs) {
+    return readings.filter((r) => new Date(r.timestamp).getTime() > sinceMs);
+}
+
+// API: Readings - adds alert, alert_type, alert_message to latest reading when threshold crossed (for native app TTS)
+// Optional ?since=<epoch ms or ISO timestamp> returns only readings newer than the cursor (empty array when nothing changed).
+// Clients that list readingCodec.CONTENT_TYPE in Accept get the compact encoding; everyone else gets JSON.
+app.get('/api/readings', gzipJson, (req, res) => {
+    const limit = parseInt(req.query.limit) || 50;
+    const sinceMs = parseSince(req.query.since);
+    const enriched = getEnrichedReadings(limit);
+    const body = isNaN(sinceMs) ? enriched : newerThan(enriched, sinceMs);
+
+    res.vary('Accept');
+    if (req.accepts(['application/json', readingCodec.CONTENT_TYPE]) === readingCodec.CONTENT_TYPE) {
+        return res.type(readingCodec.CONTENT_TYPE).send(readingCodec.encodeReadings(body));
+    }
+    res.json(body);
+});
+
+// API: Reading stream (Server-Sent Events). Each 'reading' event carries a JSON array in the
+// /api/readings shape. With ?since=, readings missed while disconnected are sent first.
+const streamClients = new Set();
+const STREAM_PING_MS = 4 * 60 * 1000;
+
+function sendReadingEvent(res, readings) {
+    res.write(`event: reading\ndata: ${JSON.stringify(readings)}\n\n`);
+}
+
+app.get('/api/readings/stream', (req, res) => {
+    res.set({
+        'Content-Type': 'text/event-stream',
+        'Cache-Control': 'no-cache',
+        'Connection': 'keep-alive',
+        'X-Accel-Buffering': 'no',
+    });
+    res.flushHeaders();
 
-    res.json(enriched);
+    const sinceMs = parseSince(req.query.since);
+    if (!isNaN(sinceMs)) {
+        const missed = newerThan(getEnrichedReadings(50), sinceMs);
+        if (missed.length) sendReadingEvent(res, missed);
+    }
+
+    streamClients.add(res);
+    req.on('close', () => streamClients.delete(res));
+});
+
+storage.events.on('reading', () => {
+    if (!streamClients.size) return;
+    const [latest] = getEnrichedReadings(50);
+    if (!latest) return;
+    for (const res of streamClients) sendReadingEvent(res, [latest]);
 });
 
+// Comment line keeps idle proxies from dropping the stream; infrequent so the phone radio can sleep.
+setInterval(() => {
+    for (const res of streamClients) res.write(': ping\n\n');
+}, STREAM_PING_MS).unref();
+
 app.post('/api/readings', (req, res) => {
     try {
         const { glucose_value, trend, active_insulin, pump_battery, sensor_duration } = req.body;
@@ -126,7 +207,7 @@ app.post('/api/readings', (req, res) => {
 });
 
 // API: Settings
-app.get('/api/settings', (req, res) => {
+app.get('/api/settings', gzipJson, (req, res) => {
     const settings = storage.getSettings();
     res.json(settings || {
         bg_unit: 'mmol',
@@ -346,8 +427,11 @@ setInterval(() => {
     checkStaleAlert();
 }, 10 * 60 * 1000);
 
-app.listen(PORT, '0.0.0.0', () => {
+const server = app.listen(PORT, '0.0.0.0', () => {
     // Change localhost to 0.0.0.0 in the log so you know it's public
     console.log(`BG Guardian Link server running on http://0.0.0.0:${PORT}`);
     console.log(`Auto-fetch from CGM every 5 minutes`);
-});
\ No newline at end of file
+});
+// Keep idle connections across the phone's 5-minute polls (Node closes them after 5 s by default).
+server.keepAliveTimeout = 6 * 60 * 1000;
+server.headersTimeout = server.keepAliveTimeout + 5000;
\ No newline at end of file
@@ -1,11 +1,15 @@
 const fs = require('fs');
 const path = require('path');
+const { EventEmitter } = require('events');
 
 const DATA_DIR = process.env.DATA_DIR || path.join(process.cwd(), 'data');
 const READINGS_FILE = path.join(DATA_DIR, 'readings.json');
 const CONFIG_FILE = path.join(DATA_DIR, 'config.json');
 const SETTINGS_FILE = path.join(DATA_DIR, 'settings.json');
 
+/** Emits 'reading' with the stored reading after every addReading. */
+const events = new EventEmitter();
+
 function ensureDataDir() {
     if (!fs.existsSync(DATA_DIR)) {
         fs.mkdirSync(DATA_DIR, { recursive: true });
@@ -37,8 +41,10 @@ function getReadings(limit = 50) {
 function addReading(reading) {
     const readings = readJson(READINGS_FILE, []);
     const id = 'r_' + Date.now() + '_' + Math.random().toString(36).slice(2);
-    readings.unshift({ id, ...reading, timestamp: reading.timestamp || new Date().toISOString() });
+    const stored = { id, ...reading, timestamp: reading.timestamp || new Date().toISOString() };
+    readings.unshift(stored);
     writeJson(READINGS_FILE, readings);
+    events.emit('reading', stored);
     return { id, ...reading };
 }
 
@@ -65,6 +71,7 @@ function saveSettings(settings) {
 }
 
 module.exports = {
+    events,
     getReadings,
     addReading,
     getConfig,
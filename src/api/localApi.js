@@ -1,3 +1,5 @@
+import { Capacitor, registerPlugin } from '@capacitor/core';
+
 // API base URL logic:
 // - VITE_API_URL: set at build time for Capacitor/native app (e.g. http://192.168.1.10:3001/api or https://yourserver.com/api)
 // - Dev + tunnel: /api (Vite proxy)
@@ -15,6 +17,22 @@ function getApiBase() {
 }
 const API_BASE = getApiBase();
 
+// On native, reads of /readings go through the app's shared data source: answered from the
+// background service's readings when fresh, with concurrent identical requests collapsed.
+const ReadingSource = registerPlugin('ReadingSource');
+
+async function getReadings(limit) {
+    if (Capacitor.isNativePlatform()) {
+        try {
+            const { readings } = await ReadingSource.getReadings({ limit });
+            if (Array.isArray(readings)) return readings;
+        } catch (err) {
+            console.warn('[localApi] native readings unavailable, fetching:', err?.message ?? err);
+        }
+    }
+    return request(`/readings?limit=${limit}`);
+}
+
 async function request(path, options = {}) {
     const url = path.startsWith('/') ? `${API_BASE}${path}` : `${API_BASE}/${path}`;
     const res = await fetch(url, {
@@ -29,7 +47,7 @@ async function request(path, options = {}) {
 }
 
 export const api = {
-    getReadings: (limit = 50) => request(`/readings?limit=${limit}`),
+    getReadings: (limit = 50) => getReadings(limit),
     addReading: (reading) => request('/readings', { method: 'POST', body: JSON.stringify(reading) }),
     getSettings: () => request('/settings'),
     saveSettings: (settings) => request('/settings', { method: 'POST', body: JSON.stringify(settings) }),
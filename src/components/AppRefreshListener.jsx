@@ -1,5 +1,8 @@
 import { useEffect } from 'react';
 import { useQueryClient } from '@tanstack/react-query';
+import { Capacitor, registerPlugin } from '@capacitor/core';
+
+const BackgroundService = registerPlugin('BackgroundService');
 
 const refetchReadings = (queryClient) => {
   queryClient.refetchQueries({ queryKey: ['bgReadings'] });
@@ -11,7 +14,9 @@ const FIVE_MINUTES_MS = 5 * 60 * 1000;
  * Central listener for native background updates.
  * Capacitor resume/appStateChange are registered in main.jsx (before React mounts).
  * Here we handle:
- * - bgg-data-update: Readings from MainActivity (BackgroundService).
+ * - readings: Reading window pushed in-process by the native BackgroundService plugin.
+ *   Each event is acknowledged so the native side can send the next one.
+ * - bgg-data-update: Readings dispatched as a window event (web and older native builds).
  * - app-resume: Window event from MainActivity.onResume.
  * - 5-min timer: Fixed sync interval, never reset.
  */
@@ -38,6 +43,27 @@ export default function AppRefreshListener() {
 
     window.addEventListener('bgg-data-update', onBggDataUpdate);
 
+    let readingsHandle = null;
+    let unmounted = false;
+    if (Capacitor.isNativePlatform()) {
+      BackgroundService.addListener('readings', ({ seq, readings }) => {
+        if (Array.isArray(readings)) {
+          queryClient.setQueryData(['bgReadings'], readings);
+        }
+        BackgroundService.ackReadings({ seq }).catch(() => {});
+      })
+        .then((handle) => {
+          if (unmounted) {
+            handle.remove();
+            return;
+          }
+          readingsHandle = handle;
+          // Ask for the current window now rather than waiting for the next reading.
+          return BackgroundService.readingsReady();
+        })
+        .catch((err) => console.warn('[AppRefreshListener] readings listener failed:', err));
+    }
+
     const onAppResume = () => refetchReadings(queryClient);
 
     window.addEventListener('app-resume', onAppResume);
@@ -48,6 +74,8 @@ export default function AppRefreshListener() {
 
     return () => {
       window.removeEventListener('bgg-data-update', onBggDataUpdate);
+      unmounted = true;
+      readingsHandle?.remove();
       window.removeEventListener('app-resume', onAppResume);
       clearInterval(fiveMinInterval);
     };